@@ -164,6 +164,8 @@ function handleFileSelect(files_in) {
         var lines = all_lines.split('\n');
         var timestamp = 0;
         var plotter_index = 0;
+        var col_to_series = []; //csv column index -> index in temp_series
+        var last_vals = []; //most recent value of each series, for filling in skipped samples
 		
 		
         // Iterate over the lines and add categories or series
@@ -176,6 +178,7 @@ function handleFileSelect(files_in) {
                 $.each(items, function(itemNo, item) {
                     if(itemNo > 0) {
                         if(item.length > 1){
+                            col_to_series[itemNo] = plotter_index;
                             temp_series.push({name:item.replace(/ /g,''),
                                               data:[],
                                               visible:false,
@@ -233,16 +236,21 @@ function handleFileSelect(files_in) {
             }
             
             // the rest of the lines contain data with their name in the first 
-            // position
+            // position. Signals logged slower than the main loop leave their
+            // column empty on rows where they weren't sampled - fill those in
+            // with the previous value.
             else {
-                plotter_index = 0;
                 $.each(items, function(itemNo, item) {
                     if (itemNo == 0) {
                         timestamp = parseFloat(item);
-                    } else {
-                        if(item.length > 1){
-                            temp_series[plotter_index].data.push([timestamp, parseFloat(item)]);
-                            plotter_index++;
+                    } else if (itemNo in col_to_series) {
+                        var series_idx = col_to_series[itemNo];
+                        var val_str = item.trim();
+                        if(val_str.length > 0){
+                            last_vals[series_idx] = parseFloat(val_str);
+                        }
+                        if(series_idx in last_vals){
+                            temp_series[series_idx].data.push([timestamp, last_vals[series_idx]]);
                         }
                     }
                 });
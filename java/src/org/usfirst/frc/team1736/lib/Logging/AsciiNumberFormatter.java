@@ -0,0 +1,196 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Allocation-free conversion of numbers to text, for the text log writers. Double.toString() and
+ * string concatenation create several temporary objects per value, which adds up quickly at 50
+ * rows a second with dozens of fields. These methods instead write ASCII digits straight into a
+ * caller-owned byte array, rounded to a fixed number of decimal places with trailing zeros
+ * trimmed (so 1.5 at 4 decimals is written "1.5", not "1.5000"). <br>
+ * Rounding loses information, so it is always opt-in: asking for FULL_PRECISION writes exactly
+ * what Double.toString() would (the shortest text that reads back as the same double). That path
+ * still allocates, the same as the plain Double.toString() it replaces. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Keep a reusable byte[] line buffer around.</li>
+ * <li>Make sure at least MAX_CHARS bytes are free, then call formatDouble() with the present write
+ * position. It returns the new write position.</li>
+ * <li>Write the filled part of the buffer out in one go.</li>
+ * </ol>
+ * 
+ *
+ */
+public final class AsciiNumberFormatter {
+
+    /** Most bytes formatDouble() will ever write for one value */
+    public static final int MAX_CHARS = 40;
+
+    /** Pass as the number of decimals to write the value losslessly, as Double.toString() does */
+    public static final int FULL_PRECISION = -1;
+
+    /** Most decimal places supported. Anything asking for more gets this many. */
+    public static final int MAX_DECIMALS = 15;
+
+    private static final long[] POW10_LONG = new long[MAX_DECIMALS + 1];
+    private static final double[] POW10_DOUBLE = new double[MAX_DECIMALS + 1];
+    static {
+        long p = 1;
+        for (int i = 0; i <= MAX_DECIMALS; i++) {
+            POW10_LONG[i] = p;
+            POW10_DOUBLE[i] = p;
+            p *= 10;
+        }
+    }
+
+    // Beyond this, the scaled value won't fit in a long, so fall back to Double.toString()
+    private static final double MAX_SCALED = 9.0e18;
+
+    private static final byte[] NAN_TXT = {'N', 'a', 'N'};
+    private static final byte[] INF_TXT = {'I', 'n', 'f', 'i', 'n', 'i', 't', 'y'};
+
+    private AsciiNumberFormatter() {
+    }
+
+    /**
+     * Write a double as decimal text, rounded to the given number of places. NaN and infinities are
+     * written the same way Double.toString() does. Very large values fall back to Double.toString()
+     * (which allocates, but they should be rare in logs), as does FULL_PRECISION.
+     * 
+     * @param buf Buffer to write into. Must have at least MAX_CHARS bytes free past pos.
+     * @param pos Index in buf to start writing at
+     * @param value Number to write
+     * @param decimals Number of places after the decimal point to round to (0 to MAX_DECIMALS), or
+     *        FULL_PRECISION for no rounding at all
+     * @return Index in buf just past the last byte written
+     */
+    public static int formatDouble(byte[] buf, int pos, double value, int decimals) {
+        if (decimals < 0) {
+            return formatAscii(buf, pos, Double.toString(value));
+        }
+
+        if (value != value) {
+            return putBytes(buf, pos, NAN_TXT);
+        }
+
+        if (decimals > MAX_DECIMALS) {
+            decimals = MAX_DECIMALS;
+        }
+
+        boolean negative = value < 0;
+        double abs_val = negative ? -value : value;
+
+        if (abs_val == Double.POSITIVE_INFINITY) {
+            if (negative) {
+                buf[pos++] = '-';
+            }
+            return putBytes(buf, pos, INF_TXT);
+        }
+
+        double scaled_dbl = abs_val * POW10_DOUBLE[decimals] + 0.5;
+        if (scaled_dbl >= MAX_SCALED) {
+            return formatAscii(buf, pos, Double.toString(value));
+        }
+
+        long scaled = (long) scaled_dbl;
+        long int_part = scaled / POW10_LONG[decimals];
+        long frac_part = scaled - int_part * POW10_LONG[decimals];
+
+        // Don't write "-0" for tiny negative values which round to zero
+        if (negative && scaled != 0) {
+            buf[pos++] = '-';
+        }
+
+        pos = formatLong(buf, pos, int_part);
+
+        if (frac_part != 0) {
+            int frac_digits = decimals;
+            while (frac_part % 10 == 0) {
+                frac_part /= 10;
+                frac_digits--;
+            }
+            buf[pos++] = '.';
+            // Fill fractional digits from the right, zero-padding on the left
+            for (int i = pos + frac_digits - 1; i >= pos; i--) {
+                buf[i] = (byte) ('0' + (frac_part % 10));
+                frac_part /= 10;
+            }
+            pos += frac_digits;
+        }
+
+        return pos;
+    }
+
+    /**
+     * Write a long as decimal text.
+     * 
+     * @param buf Buffer to write into. Must have at least 20 bytes free past pos.
+     * @param pos Index in buf to start writing at
+     * @param value Number to write
+     * @return Index in buf just past the last byte written
+     */
+    public static int formatLong(byte[] buf, int pos, long value) {
+        if (value == Long.MIN_VALUE) {
+            return formatAscii(buf, pos, Long.toString(value));
+        }
+        if (value < 0) {
+            buf[pos++] = '-';
+            value = -value;
+        }
+
+        int num_digits = 1;
+        for (long v = value / 10; v != 0; v /= 10) {
+            num_digits++;
+        }
+
+        for (int i = pos + num_digits - 1; i >= pos; i--) {
+            buf[i] = (byte) ('0' + (value % 10));
+            value /= 10;
+        }
+        return pos + num_digits;
+    }
+
+    /**
+     * Copy a string into the buffer one byte per character. Anything outside of plain ASCII is
+     * written as '?'.
+     * 
+     * @param buf Buffer to write into. Must have at least str.length() bytes free past pos.
+     * @param pos Index in buf to start writing at
+     * @param str Text to write
+     * @return Index in buf just past the last byte written
+     */
+    public static int formatAscii(byte[] buf, int pos, String str) {
+        int len = str.length();
+        for (int i = 0; i < len; i++) {
+            char c = str.charAt(i);
+            buf[pos++] = (byte) (c < 128 ? c : '?');
+        }
+        return pos;
+    }
+
+    private static int putBytes(byte[] buf, int pos, byte[] src) {
+        System.arraycopy(src, 0, buf, pos, src.length);
+        return pos + src.length;
+    }
+
+}
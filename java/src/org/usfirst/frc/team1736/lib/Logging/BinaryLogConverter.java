@@ -0,0 +1,148 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+
+/**
+ * DESCRIPTION: <br>
+ * Standalone utility to turn Casserole binary and compressed log files (as written by CsvLogger in
+ * one of the non-CSV formats) back into the .csv layout which Data Viewer 2 and excel expect. Only depends on
+ * the standard Java libraries, so it can be run on any laptop. <br>
+ * <br>
+ * USAGE: <br>
+ * java -cp &lt;classpath&gt; org.usfirst.frc.team1736.lib.Logging.BinaryLogConverter &lt;file or
+ * directory&gt; ... <br>
+ * Each .clog or .clogz file given (or found in a given directory) is converted to a .csv file of the same
+ * name, right next to it.
+ * 
+ *
+ */
+public class BinaryLogConverter {
+
+    /**
+     * Convert each binary log given on the command line to .csv.
+     * 
+     * @param args list of files or directories to convert
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: BinaryLogConverter <file or directory> ...");
+            return;
+        }
+
+        int errors = 0;
+        for (String arg : args) {
+            File in = new File(arg);
+            File[] files;
+            if (in.isDirectory()) {
+                files = in.listFiles();
+            } else {
+                files = new File[] {in};
+            }
+            if (files == null) {
+                continue;
+            }
+            for (File f : files) {
+                if (!isBinaryLog(f)) {
+                    continue;
+                }
+                File out = getCsvFileFor(f);
+                try {
+                    int rows = convert(f, out);
+                    System.out.println("Converted " + f.getName() + " -> " + out.getName() + " (" + rows + " rows)");
+                } catch (IOException e) {
+                    System.out.println("ERROR: could not convert " + f.getName() + ": " + e.getMessage());
+                    errors++;
+                }
+            }
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * @param f any file
+     * @return true if the file name looks like a binary or compressed log
+     */
+    public static boolean isBinaryLog(File f) {
+        return f.getName().endsWith(BinaryLogFormat.FILE_EXTENSION)
+                || f.getName().endsWith(BinaryLogFormat.COMPRESSED_FILE_EXTENSION);
+    }
+
+    /**
+     * @param bin_file Binary or compressed log file
+     * @return .csv file with the same name, in the same directory
+     */
+    public static File getCsvFileFor(File bin_file) {
+        String name = bin_file.getName();
+        name = name.substring(0, name.lastIndexOf('.')) + ".csv";
+        return new File(bin_file.getParentFile(), name);
+    }
+
+    /**
+     * Converts one binary or compressed log into .csv format.
+     * 
+     * @param bin_file Log to read
+     * @param csv_file .csv file to write. Overwritten if it exists.
+     * @return number of rows converted
+     */
+    public static int convert(File bin_file, File csv_file) throws IOException {
+        LogReader reader = LogReader.open(bin_file);
+        BufferedWriter out = null;
+        int row_count = 0;
+        try {
+            out = new BufferedWriter(new FileWriter(csv_file, false));
+            boolean floats = (reader instanceof BinaryLogReader)
+                    && ((BinaryLogReader) reader).getValueSizeBytes() == 4;
+
+            for (String name : reader.getFieldNames()) {
+                out.write(name + ", ");
+            }
+            out.write("\n");
+            for (String unit : reader.getUnitNames()) {
+                out.write(unit + ", ");
+            }
+            out.write("\n");
+
+            double[] row = new double[reader.getFieldCount()];
+            while (reader.readRow(row)) {
+                for (double val : row) {
+                    // Print floats as floats, so 0.1f doesn't come out as 0.10000000149011612
+                    out.write((floats ? Float.toString((float) val) : Double.toString(val)) + ", ");
+                }
+                out.write("\n");
+                row_count++;
+            }
+        } finally {
+            reader.close();
+            if (out != null) {
+                out.close();
+            }
+        }
+        return row_count;
+    }
+
+}
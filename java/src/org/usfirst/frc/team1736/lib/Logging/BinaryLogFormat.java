@@ -0,0 +1,115 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Constants describing the layout of Casserole binary log files. Everything is little-endian, since
+ * that's what both the roboRIO and our laptops are natively. <br>
+ * <br>
+ * FILE LAYOUT:
+ * <ol>
+ * <li>Magic number: the four ASCII bytes "CLOG"</li>
+ * <li>u16 format version</li>
+ * <li>u8 bytes per value (8 for float64, 4 for float32)</li>
+ * <li>u8 flags (reserved, 0)</li>
+ * <li>u32 total header length in bytes, including these fixed fields. Rows start at this offset.</li>
+ * <li>u32 number of fields</li>
+ * <li>For each field: u16 length + UTF-8 bytes of the name, then u16 length + UTF-8 bytes of the
+ * units</li>
+ * <li>Rows: (number of fields) values, each (bytes per value) wide, repeated until end of file</li>
+ * </ol>
+ * Since rows are fixed width, a file cut short by a brownout only loses its last partial row. <br>
+ * <br>
+ * COMPRESSED LAYOUT: <br>
+ * Compressed files use the same header, but start with "CLGZ" and have a bytes-per-value of 0.
+ * After the header come self-contained blocks of rows:
+ * <ol>
+ * <li>u32 block sync word (BLOCK_SYNC)</li>
+ * <li>u32 number of rows in the block</li>
+ * <li>u32 payload length in bytes</li>
+ * <li>u32 CRC32 of the payload</li>
+ * <li>payload, as encoded by XorBlockCodec</li>
+ * </ol>
+ * A file cut short by a brownout can be read up to the end of its last complete block. <br>
+ * <br>
+ * TIME INDEX SIDECAR LAYOUT: <br>
+ * Any log (.csv, .clog or .clogz) may have an index file next to it, named the same with ".cidx"
+ * tacked on the end. It starts with a 16 byte header:
+ * <ol>
+ * <li>Magic number: the four ASCII bytes "CIDX"</li>
+ * <li>u16 format version</li>
+ * <li>u16 flags (reserved, 0)</li>
+ * <li>u32 number of fields</li>
+ * <li>u32 rows per index entry</li>
+ * </ol>
+ * Then fixed-width entries, one per run of rows, in time order:
+ * <ol>
+ * <li>f64 time (first field) of the first row, then f64 time of the last row</li>
+ * <li>u64 offset in the log file to seek to</li>
+ * <li>u32 rows to skip after seeking, to reach the first row of the run</li>
+ * <li>u32 rows in the run</li>
+ * <li>u64 row number (from the start of the file) of the first row of the run</li>
+ * <li>For each field: f64 min, f64 max over the run</li>
+ * </ol>
+ *
+ */
+public class BinaryLogFormat {
+
+    /** "CLOG" */
+    public static final byte[] MAGIC = {0x43, 0x4C, 0x4F, 0x47};
+    public static final int VERSION = 1;
+
+    /** Offsets of the fixed part of the header */
+    public static final int OFFSET_VERSION = 4;
+    public static final int OFFSET_VALUE_SIZE = 6;
+    public static final int OFFSET_FLAGS = 7;
+    public static final int OFFSET_HEADER_LEN = 8;
+    public static final int OFFSET_FIELD_COUNT = 12;
+    public static final int FIXED_HEADER_LEN = 16;
+
+    /** File extension used for binary logs */
+    public static final String FILE_EXTENSION = ".clog";
+
+    /** "CLGZ" */
+    public static final byte[] MAGIC_COMPRESSED = {0x43, 0x4C, 0x47, 0x5A};
+    /** File extension used for compressed logs */
+    public static final String COMPRESSED_FILE_EXTENSION = ".clogz";
+
+    /** Marks the start of each compressed block ("CBLK" read as a little-endian int) */
+    public static final int BLOCK_SYNC = 0x4B4C4243;
+    public static final int BLOCK_HEADER_LEN = 16;
+    /** Rows per compressed block. At 50Hz, a brownout loses at most ~2.5 seconds. */
+    public static final int DEFAULT_ROWS_PER_BLOCK = 128;
+    /** Anything bigger than this in a block header means the block is garbage */
+    public static final int MAX_ROWS_PER_BLOCK = 65536;
+
+    /** "CIDX" */
+    public static final byte[] MAGIC_INDEX = {0x43, 0x49, 0x44, 0x58};
+    /** Added to the full name of a log file to get the name of its time index */
+    public static final String INDEX_FILE_EXTENSION = ".cidx";
+    public static final int INDEX_HEADER_LEN = 16;
+    /** Size of an index entry, not counting the per-field min/max */
+    public static final int INDEX_ENTRY_FIXED_LEN = 40;
+    /** Rows per index entry. At 50Hz, about one entry a second. */
+    public static final int DEFAULT_INDEX_INTERVAL_ROWS = 50;
+
+}
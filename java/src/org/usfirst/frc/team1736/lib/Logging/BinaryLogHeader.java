@@ -0,0 +1,193 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Header of a Casserole binary or compressed log file, plus the code to write it out and read it
+ * back. See BinaryLogFormat for the layout.
+ *
+ */
+class BinaryLogHeader {
+
+    byte[] magic;
+    int value_size;
+    int header_len;
+    String[] field_names;
+    String[] unit_names;
+
+    /**
+     * Build up a header for a new file
+     * 
+     * @param magic_in Magic number identifying the file type
+     * @param value_size_in bytes per value (0 for variable-width/compressed)
+     * @param field_names_in Name of each column
+     * @param unit_names_in Units of each column
+     */
+    BinaryLogHeader(byte[] magic_in, int value_size_in, String[] field_names_in, String[] unit_names_in) {
+        magic = magic_in;
+        value_size = value_size_in;
+        field_names = field_names_in;
+        unit_names = new String[field_names_in.length];
+        for (int i = 0; i < field_names_in.length; i++) {
+            unit_names[i] = (i < unit_names_in.length) ? unit_names_in[i] : "";
+        }
+    }
+
+    private BinaryLogHeader() {}
+
+    /**
+     * Serialize the header and write it to the current position of the channel.
+     */
+    void write(FileChannel channel) throws IOException {
+        // Figure out how long the header is going to be
+        header_len = BinaryLogFormat.FIXED_HEADER_LEN;
+        byte[][] name_bytes = new byte[field_names.length][];
+        byte[][] unit_bytes = new byte[field_names.length][];
+        for (int i = 0; i < field_names.length; i++) {
+            name_bytes[i] = field_names[i].getBytes(StandardCharsets.UTF_8);
+            unit_bytes[i] = unit_names[i].getBytes(StandardCharsets.UTF_8);
+            header_len += 2 + name_bytes[i].length + 2 + unit_bytes[i].length;
+        }
+
+        ByteBuffer header = ByteBuffer.allocate(header_len);
+        header.order(ByteOrder.LITTLE_ENDIAN);
+        header.put(magic);
+        header.putShort((short) BinaryLogFormat.VERSION);
+        header.put((byte) value_size);
+        header.put((byte) 0);
+        header.putInt(header_len);
+        header.putInt(field_names.length);
+        for (int i = 0; i < field_names.length; i++) {
+            header.putShort((short) name_bytes[i].length);
+            header.put(name_bytes[i]);
+            header.putShort((short) unit_bytes[i].length);
+            header.put(unit_bytes[i]);
+        }
+        header.flip();
+        while (header.hasRemaining()) {
+            channel.write(header);
+        }
+    }
+
+    /**
+     * Read and validate the header from the start of a file. Leaves the channel positioned at the
+     * first byte after the header.
+     * 
+     * @param channel file to read
+     * @param expected_magic magic number the file must start with
+     * @return parsed header
+     * @throws IOException if the file can't be read or is not the expected type
+     */
+    static BinaryLogHeader read(FileChannel channel, byte[] expected_magic) throws IOException {
+        BinaryLogHeader hdr = new BinaryLogHeader();
+
+        ByteBuffer fixed = ByteBuffer.allocate(BinaryLogFormat.FIXED_HEADER_LEN);
+        fixed.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, fixed, 0);
+
+        hdr.magic = new byte[expected_magic.length];
+        for (int i = 0; i < expected_magic.length; i++) {
+            hdr.magic[i] = fixed.get(i);
+            if (hdr.magic[i] != expected_magic[i]) {
+                throw new IOException("Not the expected kind of Casserole log (bad magic number)");
+            }
+        }
+        int version = fixed.getShort(BinaryLogFormat.OFFSET_VERSION) & 0xFFFF;
+        if (version != BinaryLogFormat.VERSION) {
+            throw new IOException("Unsupported binary log version " + version);
+        }
+        hdr.value_size = fixed.get(BinaryLogFormat.OFFSET_VALUE_SIZE);
+        hdr.header_len = fixed.getInt(BinaryLogFormat.OFFSET_HEADER_LEN);
+        int field_count = fixed.getInt(BinaryLogFormat.OFFSET_FIELD_COUNT);
+        if (hdr.header_len < BinaryLogFormat.FIXED_HEADER_LEN || field_count < 0) {
+            throw new IOException("Binary log header is corrupt");
+        }
+        // Check sizes against the file before allocating anything, so a damaged length can't ask
+        // for gigabytes. Every field takes at least two 2-byte string lengths.
+        int strings_len = hdr.header_len - BinaryLogFormat.FIXED_HEADER_LEN;
+        if (hdr.header_len > channel.size() || field_count > strings_len / 4) {
+            throw new IOException("Binary log header is corrupt");
+        }
+
+        ByteBuffer strings = ByteBuffer.allocate(strings_len);
+        strings.order(ByteOrder.LITTLE_ENDIAN);
+        readFully(channel, strings, BinaryLogFormat.FIXED_HEADER_LEN);
+
+        hdr.field_names = new String[field_count];
+        hdr.unit_names = new String[field_count];
+        try {
+            for (int i = 0; i < field_count; i++) {
+                hdr.field_names[i] = readString(strings);
+                hdr.unit_names[i] = readString(strings);
+            }
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Binary log header is corrupt");
+        }
+
+        channel.position(hdr.header_len);
+        return hdr;
+    }
+
+    /**
+     * Peek at the magic number at the start of a file.
+     * 
+     * @return true if the file starts with the given magic number
+     */
+    static boolean hasMagic(FileChannel channel, byte[] magic) throws IOException {
+        ByteBuffer start = ByteBuffer.allocate(magic.length);
+        while (start.hasRemaining()) {
+            if (channel.read(start, start.position()) < 0) {
+                return false;
+            }
+        }
+        for (int i = 0; i < magic.length; i++) {
+            if (start.get(i) != magic[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int read = channel.read(dst, position + dst.position());
+            if (read < 0) {
+                throw new IOException("Binary log header is truncated");
+            }
+        }
+        dst.flip();
+    }
+
+    private static String readString(ByteBuffer src) {
+        int len = src.getShort() & 0xFFFF;
+        byte[] bytes = new byte[len];
+        src.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+}
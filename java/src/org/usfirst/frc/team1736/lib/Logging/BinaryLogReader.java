@@ -0,0 +1,183 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DESCRIPTION: <br>
+ * Reads Casserole binary log files (see BinaryLogFormat) back into rows of doubles. Has no robot
+ * dependencies, so it can run on a laptop for offline analysis. <br>
+ * USAGE:
+ * <ol>
+ * <li>Instantiate with the file to read. The header is parsed right away.</li>
+ * <li>Use getFieldNames() and getUnitNames() to see what's in the file.</li>
+ * <li>Call readRow() repeatedly until it returns false.</li>
+ * <li>Call close() when done.</li>
+ * </ol>
+ * 
+ *
+ */
+public class BinaryLogReader implements LogReader {
+
+    static final int READ_BUFFER_SIZE_BYTES = 65536;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private String[] field_names;
+    private String[] unit_names;
+    private int value_size;
+    private int header_len;
+
+    /**
+     * Opens the file and parses its header.
+     * 
+     * @param file Binary log file to read
+     * @throws IOException if the file can't be read or isn't a Casserole binary log
+     */
+    public BinaryLogReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            readHeader();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    private void readHeader() throws IOException {
+        BinaryLogHeader hdr = BinaryLogHeader.read(channel, BinaryLogFormat.MAGIC);
+        value_size = hdr.value_size;
+        if (value_size != 4 && value_size != 8) {
+            throw new IOException("Unsupported value size " + value_size);
+        }
+        header_len = hdr.header_len;
+        field_names = hdr.field_names;
+        unit_names = hdr.unit_names;
+
+        // Rows start right after the header
+        int row_size = Math.max(1, getRowSizeBytes());
+        buffer = ByteBuffer.allocate(Math.max(READ_BUFFER_SIZE_BYTES - READ_BUFFER_SIZE_BYTES % row_size, row_size));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.flip(); // Start out empty
+    }
+
+    /**
+     * Read the next complete row from the file. A partial row at the end of the file (ex: from a
+     * brownout during writing) is ignored.
+     * 
+     * @param row_out array to fill with values. Must be at least getFieldCount() long.
+     * @return true if a row was read, false at end of file
+     */
+    @Override
+    public boolean readRow(double[] row_out) throws IOException {
+        int row_size = getRowSizeBytes();
+        if (row_size == 0) {
+            return false;
+        }
+        if (buffer.remaining() < row_size) {
+            buffer.compact();
+            while (buffer.position() < row_size) {
+                if (channel.read(buffer) < 0) {
+                    buffer.flip();
+                    return false;
+                }
+            }
+            buffer.flip();
+        }
+        if (value_size == 4) {
+            for (int i = 0; i < field_names.length; i++) {
+                row_out[i] = buffer.getFloat();
+            }
+        } else {
+            for (int i = 0; i < field_names.length; i++) {
+                row_out[i] = buffer.getDouble();
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return Names of all fields, in column order
+     */
+    @Override
+    public String[] getFieldNames() {
+        return field_names;
+    }
+
+    /**
+     * @return Units of all fields, in column order
+     */
+    @Override
+    public String[] getUnitNames() {
+        return unit_names;
+    }
+
+    /**
+     * @return Number of fields (columns) in each row
+     */
+    @Override
+    public int getFieldCount() {
+        return field_names.length;
+    }
+
+    /**
+     * @return 4 if values are stored as floats, 8 if stored as doubles
+     */
+    public int getValueSizeBytes() {
+        return value_size;
+    }
+
+    /**
+     * @return Number of bytes in the header. The first row starts at this file offset.
+     */
+    public int getHeaderLengthBytes() {
+        return header_len;
+    }
+
+    /**
+     * @return Number of bytes in one row
+     */
+    public int getRowSizeBytes() {
+        return field_names.length * value_size;
+    }
+
+    @Override
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+        buffer.clear();
+        buffer.flip(); // Start out empty again
+    }
+
+    /**
+     * Close the underlying file
+     */
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,140 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DESCRIPTION: <br>
+ * Writes log rows in the Casserole binary format (see BinaryLogFormat). Values are packed into a
+ * preallocated direct buffer and handed to a FileChannel in large chunks, so there is no text
+ * formatting and no per-row allocation. <br>
+ *
+ */
+class BinaryLogWriter implements LogRowWriter {
+
+    /** Size of the in-memory staging buffer. Rows are written to the channel once this fills up. */
+    static final int BUFFER_SIZE_BYTES = 32768;
+
+    private FileChannel channel;
+    private ByteBuffer buffer;
+    private boolean use_float32;
+    private int row_size_bytes = 0;
+    private long bytes_written = 0;
+
+    /**
+     * Creates (or overwrites) the given file.
+     * 
+     * @param file_name full path to the file to open
+     * @param float32 true to store values as 4-byte floats, false for 8-byte doubles
+     */
+    BinaryLogWriter(String file_name, boolean float32) throws IOException {
+        channel = FileChannel.open(Paths.get(file_name), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        buffer = ByteBuffer.allocateDirect(BUFFER_SIZE_BYTES);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        use_float32 = float32;
+    }
+
+    @Override
+    public void writeHeader(String[] field_names, String[] unit_names) throws IOException {
+        int value_size = use_float32 ? 4 : 8;
+        BinaryLogHeader header = new BinaryLogHeader(BinaryLogFormat.MAGIC, value_size, field_names, unit_names);
+        header.write(channel);
+        bytes_written = header.header_len;
+
+        row_size_bytes = field_names.length * value_size;
+        if (row_size_bytes > buffer.capacity()) {
+            // Very wide rows - make sure at least one fits in the staging buffer
+            buffer = ByteBuffer.allocateDirect(row_size_bytes);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+        }
+    }
+
+    @Override
+    public void writeRow(double[] row, long row_index) throws IOException {
+        if (buffer.remaining() < row_size_bytes) {
+            drainBuffer();
+        }
+        if (use_float32) {
+            for (int i = 0; i < row.length; i++) {
+                buffer.putFloat((float) row[i]);
+            }
+        } else {
+            for (int i = 0; i < row.length; i++) {
+                buffer.putDouble(row[i]);
+            }
+        }
+        bytes_written += row_size_bytes;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytes_written;
+    }
+
+    @Override
+    public long getSeekOffset() {
+        return getBytesWritten();
+    }
+
+    @Override
+    public int getSeekSkipRows() {
+        return 0;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drainBuffer();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        drainBuffer();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /*
+     * Hands everything in the staging buffer to the file channel
+     */
+    private void drainBuffer() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+}
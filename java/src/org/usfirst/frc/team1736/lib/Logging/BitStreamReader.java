@@ -0,0 +1,77 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * Reads back values written by BitStreamWriter, most significant bit first.
+ *
+ */
+class BitStreamReader {
+
+    private byte[] buf;
+    private int length;
+    private int byte_pos;
+    private int bit_pos; // bits already consumed from buf[byte_pos]
+
+    /**
+     * Point the reader at a new stream.
+     * 
+     * @param buf_in bytes to read
+     * @param length_in Number of valid bytes in buf_in
+     */
+    void reset(byte[] buf_in, int length_in) {
+        buf = buf_in;
+        length = length_in;
+        byte_pos = 0;
+        bit_pos = 0;
+    }
+
+    boolean readBit() {
+        return readBits(1) != 0;
+    }
+
+    /**
+     * Read num_bits bits as an unsigned value.
+     * 
+     * @param num_bits Number of bits to read, 0 to 64
+     * @throws IllegalStateException if the stream runs out of bits
+     */
+    long readBits(int num_bits) {
+        long result = 0;
+        while (num_bits > 0) {
+            if (byte_pos >= length) {
+                throw new IllegalStateException("Ran off the end of the bit stream");
+            }
+            int avail = 8 - bit_pos;
+            int take = Math.min(avail, num_bits);
+            int chunk = ((buf[byte_pos] & 0xFF) >>> (avail - take)) & ((1 << take) - 1);
+            result = (result << take) | chunk;
+            bit_pos += take;
+            num_bits -= take;
+            if (bit_pos == 8) {
+                byte_pos++;
+                bit_pos = 0;
+            }
+        }
+        return result;
+    }
+
+}
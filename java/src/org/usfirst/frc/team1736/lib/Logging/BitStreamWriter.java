@@ -0,0 +1,111 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * Packs values of arbitrary bit width, most significant bit first, into a reusable byte array. The
+ * array grows as needed, but once it's big enough for a block it's never reallocated.
+ *
+ */
+class BitStreamWriter {
+
+    private byte[] buf;
+    private int byte_pos = 0;
+    private int cur_byte = 0;
+    private int bit_pos = 0; // bits already used in cur_byte
+
+    BitStreamWriter(int initial_size_bytes) {
+        buf = new byte[Math.max(16, initial_size_bytes)];
+    }
+
+    /**
+     * Forget everything written so far, keeping the storage.
+     */
+    void reset() {
+        byte_pos = 0;
+        cur_byte = 0;
+        bit_pos = 0;
+    }
+
+    /**
+     * Append a single bit
+     */
+    void writeBit(boolean bit) {
+        writeBits(bit ? 1 : 0, 1);
+    }
+
+    /**
+     * Append the low num_bits bits of value, MSB first.
+     * 
+     * @param value Bits to write
+     * @param num_bits Number of bits to write, 0 to 64
+     */
+    void writeBits(long value, int num_bits) {
+        while (num_bits > 0) {
+            int free = 8 - bit_pos;
+            int take = Math.min(free, num_bits);
+            int chunk = (int) ((value >>> (num_bits - take)) & ((1L << take) - 1));
+            cur_byte |= chunk << (free - take);
+            bit_pos += take;
+            num_bits -= take;
+            if (bit_pos == 8) {
+                putByte(cur_byte);
+                cur_byte = 0;
+                bit_pos = 0;
+            }
+        }
+    }
+
+    /**
+     * Pad the last partial byte with zeros so the whole stream can be copied out.
+     */
+    void finish() {
+        if (bit_pos > 0) {
+            putByte(cur_byte);
+            cur_byte = 0;
+            bit_pos = 0;
+        }
+    }
+
+    /**
+     * @return backing array. Only the first getLengthBytes() bytes are valid.
+     */
+    byte[] getBuffer() {
+        return buf;
+    }
+
+    /**
+     * @return Number of whole bytes written (call finish() first to include a partial byte)
+     */
+    int getLengthBytes() {
+        return byte_pos;
+    }
+
+    private void putByte(int b) {
+        if (byte_pos == buf.length) {
+            byte[] bigger = new byte[buf.length * 2];
+            System.arraycopy(buf, 0, bigger, 0, buf.length);
+            buf = bigger;
+        }
+        buf[byte_pos++] = (byte) b;
+    }
+
+}
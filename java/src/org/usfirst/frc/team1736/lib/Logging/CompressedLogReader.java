@@ -0,0 +1,211 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * DESCRIPTION: <br>
+ * Reads Casserole compressed log files (see BinaryLogFormat) back into rows of doubles. Blocks are
+ * checked against their CRC as they're read. Reading stops cleanly at the first truncated or
+ * damaged block, so a file cut short by a brownout gives back everything up to its last complete
+ * block. Has no robot dependencies, so it can run on a laptop for offline analysis. <br>
+ * 
+ *
+ */
+public class CompressedLogReader implements LogReader {
+
+    private FileChannel channel;
+    private String[] field_names;
+    private String[] unit_names;
+    private int header_len;
+
+    private ByteBuffer block_header;
+    private ByteBuffer payload;
+    private BitStreamReader bits = new BitStreamReader();
+    private CRC32 crc = new CRC32();
+
+    private double[][] block_cols;
+    private int block_rows = 0;
+    private int block_read_idx = 0;
+    private boolean end_reached = false;
+    private long good_data_end;
+
+    /**
+     * Opens the file and parses its header.
+     * 
+     * @param file Compressed log file to read
+     * @throws IOException if the file can't be read or isn't a Casserole compressed log
+     */
+    public CompressedLogReader(File file) throws IOException {
+        channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        try {
+            BinaryLogHeader hdr = BinaryLogHeader.read(channel, BinaryLogFormat.MAGIC_COMPRESSED);
+            field_names = hdr.field_names;
+            unit_names = hdr.unit_names;
+            header_len = hdr.header_len;
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        good_data_end = header_len;
+        block_header = ByteBuffer.allocate(BinaryLogFormat.BLOCK_HEADER_LEN);
+        block_header.order(ByteOrder.LITTLE_ENDIAN);
+        payload = ByteBuffer.allocate(1024);
+        block_cols = new double[field_names.length][0];
+    }
+
+    @Override
+    public boolean readRow(double[] row_out) throws IOException {
+        if (block_read_idx >= block_rows) {
+            if (!readNextBlock()) {
+                return false;
+            }
+        }
+        for (int c = 0; c < block_cols.length; c++) {
+            row_out[c] = block_cols[c][block_read_idx];
+        }
+        block_read_idx++;
+        return true;
+    }
+
+    /*
+     * Load and decode the next block. Returns false at end of file, or if the next block is
+     * incomplete or damaged.
+     */
+    private boolean readNextBlock() throws IOException {
+        if (end_reached) {
+            return false;
+        }
+
+        block_header.clear();
+        if (!readFully(block_header)) {
+            return endOfData();
+        }
+        block_header.flip();
+        int sync = block_header.getInt();
+        int num_rows = block_header.getInt();
+        int payload_len = block_header.getInt();
+        int expected_crc = block_header.getInt();
+        if (sync != BinaryLogFormat.BLOCK_SYNC || num_rows <= 0 || num_rows > BinaryLogFormat.MAX_ROWS_PER_BLOCK
+                || payload_len < 0) {
+            return endOfData();
+        }
+        // A damaged length could ask for gigabytes. No real block is bigger than its worst-case
+        // encoding, or runs past the end of the file.
+        if (payload_len > XorBlockCodec.maxEncodedBytes(field_names.length, num_rows)
+                || payload_len > channel.size() - channel.position()) {
+            return endOfData();
+        }
+
+        if (payload.capacity() < payload_len) {
+            payload = ByteBuffer.allocate(payload_len);
+        }
+        payload.clear();
+        payload.limit(payload_len);
+        if (!readFully(payload)) {
+            return endOfData();
+        }
+
+        crc.reset();
+        crc.update(payload.array(), 0, payload_len);
+        if ((int) crc.getValue() != expected_crc) {
+            return endOfData();
+        }
+
+        if (block_cols.length > 0 && block_cols[0].length < num_rows) {
+            block_cols = new double[field_names.length][num_rows];
+        }
+        bits.reset(payload.array(), payload_len);
+        try {
+            XorBlockCodec.decodeBlock(bits, block_cols, num_rows);
+        } catch (IllegalStateException e) {
+            return endOfData();
+        }
+
+        block_rows = num_rows;
+        block_read_idx = 0;
+        good_data_end = channel.position();
+        return true;
+    }
+
+    private boolean endOfData() {
+        end_reached = true;
+        block_rows = 0;
+        block_read_idx = 0;
+        return false;
+    }
+
+    private boolean readFully(ByteBuffer dst) throws IOException {
+        while (dst.hasRemaining()) {
+            if (channel.read(dst) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return File offset just past the last complete, valid block read so far. Once readRow() has
+     *         returned false, everything after this offset is garbage.
+     */
+    public long getGoodDataEnd() {
+        return good_data_end;
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return field_names;
+    }
+
+    @Override
+    public String[] getUnitNames() {
+        return unit_names;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return field_names.length;
+    }
+
+    /**
+     * Jump to the start of a block. Offsets come from the time index.
+     */
+    @Override
+    public void seek(long offset) throws IOException {
+        channel.position(offset);
+        block_rows = 0;
+        block_read_idx = 0;
+        end_reached = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
@@ -0,0 +1,158 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * DESCRIPTION: <br>
+ * Writes log rows in the Casserole compressed block format (see BinaryLogFormat and
+ * XorBlockCodec). Rows are collected column-wise into a preallocated block, and each full block is
+ * compressed and written in one go. flush() writes out whatever partial block is pending, so
+ * flushing often makes for smaller blocks and slightly worse compression. <br>
+ *
+ */
+class CompressedLogWriter implements LogRowWriter {
+
+    private FileChannel channel;
+    private int rows_per_block;
+    private double[][] block_cols;
+    private int block_rows = 0;
+
+    private BitStreamWriter bits;
+    private ByteBuffer block_header;
+    private CRC32 crc = new CRC32();
+    private long bytes_written = 0;
+
+    /**
+     * Creates (or overwrites) the given file.
+     * 
+     * @param file_name full path to the file to open
+     * @param rows_per_block_in Number of rows to put in each compressed block
+     */
+    CompressedLogWriter(String file_name, int rows_per_block_in) throws IOException {
+        channel = FileChannel.open(Paths.get(file_name), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+        rows_per_block = Math.max(1, Math.min(rows_per_block_in, BinaryLogFormat.MAX_ROWS_PER_BLOCK));
+        block_header = ByteBuffer.allocate(BinaryLogFormat.BLOCK_HEADER_LEN);
+        block_header.order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void writeHeader(String[] field_names, String[] unit_names) throws IOException {
+        BinaryLogHeader header = new BinaryLogHeader(BinaryLogFormat.MAGIC_COMPRESSED, 0, field_names, unit_names);
+        header.write(channel);
+        bytes_written = header.header_len;
+        block_cols = new double[field_names.length][rows_per_block];
+        // Worst case is 78 bits per value (2 bit control, 6+6 bit window, 64 bit xor) - just under 10
+        // bytes, so start with 10 per value and we never grow
+        bits = new BitStreamWriter(field_names.length * rows_per_block * 10 + 16);
+    }
+
+    @Override
+    public void writeRow(double[] row, long row_index) throws IOException {
+        for (int c = 0; c < block_cols.length; c++) {
+            block_cols[c][block_rows] = row[c];
+        }
+        block_rows++;
+        if (block_rows == rows_per_block) {
+            writeBlock();
+        }
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytes_written;
+    }
+
+    @Override
+    public long getSeekOffset() {
+        // Pending rows will be written as one block, right after everything written so far
+        return bytes_written;
+    }
+
+    @Override
+    public int getSeekSkipRows() {
+        return block_rows;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        writeBlock();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writeBlock();
+        } finally {
+            channel.close();
+        }
+    }
+
+    /*
+     * Compress the pending rows and write them out as one block
+     */
+    private void writeBlock() throws IOException {
+        if (block_rows == 0) {
+            return;
+        }
+
+        bits.reset();
+        XorBlockCodec.encodeBlock(block_cols, block_rows, bits);
+        bits.finish();
+        int payload_len = bits.getLengthBytes();
+
+        crc.reset();
+        crc.update(bits.getBuffer(), 0, payload_len);
+
+        block_header.clear();
+        block_header.putInt(BinaryLogFormat.BLOCK_SYNC);
+        block_header.putInt(block_rows);
+        block_header.putInt(payload_len);
+        block_header.putInt((int) crc.getValue());
+        block_header.flip();
+
+        ByteBuffer payload = ByteBuffer.wrap(bits.getBuffer(), 0, payload_len);
+        while (block_header.hasRemaining()) {
+            channel.write(block_header);
+        }
+        while (payload.hasRemaining()) {
+            channel.write(payload);
+        }
+
+        bytes_written += BinaryLogFormat.BLOCK_HEADER_LEN + payload_len;
+        block_rows = 0;
+    }
+
+}
@@ -0,0 +1,235 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * DESCRIPTION: <br>
+ * Reads back .csv logs written by CsvLogger or simpleCsvLogger: a line of field names, a line of
+ * units, then one line of values per row. Empty cells (from fields logged slower than every loop)
+ * are filled in with the field's previous value, like Data Viewer 2 does. A partial last line is
+ * ignored. Files ending in .gz (as left by LogRetentionManager) are read through gzip, but can't be
+ * seeked in. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Instantiate with the file to read, or use LogReader.open().</li>
+ * <li>Call readRow() until it returns false.</li>
+ * <li>Call close().</li>
+ * </ol>
+ * 
+ *
+ */
+public class CsvLogReader implements LogReader {
+
+    static final int READ_BUFFER_SIZE_BYTES = 65536;
+
+    private ReadableByteChannel channel;
+    private ByteBuffer buffer;
+    private byte[] line = new byte[256];
+    private String[] field_names;
+    private String[] unit_names;
+    private double[] held_values;
+    private boolean[] columns_needed = null;
+
+    /**
+     * Opens the file and parses its two header lines.
+     * 
+     * @param file .csv (or .csv.gz) log file to read
+     * @throws IOException if the file can't be read or doesn't have a header
+     */
+    public CsvLogReader(File file) throws IOException {
+        if (file.getName().endsWith(".gz")) {
+            FileInputStream file_in = new FileInputStream(file);
+            try {
+                channel = Channels.newChannel(new GZIPInputStream(file_in, READ_BUFFER_SIZE_BYTES));
+            } catch (IOException e) {
+                file_in.close();
+                throw e;
+            }
+        } else {
+            channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        }
+        buffer = ByteBuffer.allocate(READ_BUFFER_SIZE_BYTES);
+        buffer.flip(); // Start out empty
+        try {
+            field_names = readHeaderLine();
+            unit_names = readHeaderLine();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        if (unit_names.length < field_names.length) {
+            unit_names = Arrays.copyOf(unit_names, field_names.length);
+            for (int i = 0; i < unit_names.length; i++) {
+                if (unit_names[i] == null) {
+                    unit_names[i] = "";
+                }
+            }
+        }
+        held_values = new double[field_names.length];
+        Arrays.fill(held_values, Double.NaN);
+    }
+
+    private String[] readHeaderLine() throws IOException {
+        int len = readLine();
+        if (len < 0) {
+            throw new IOException("Missing header line");
+        }
+        ArrayList<String> cells = new ArrayList<String>();
+        for (String cell : new String(line, 0, len, StandardCharsets.UTF_8).split(",", -1)) {
+            cells.add(cell.trim());
+        }
+        // Every cell is followed by ", ", so the last one is always empty
+        if (cells.size() > 0 && cells.get(cells.size() - 1).isEmpty()) {
+            cells.remove(cells.size() - 1);
+        }
+        return cells.toArray(new String[cells.size()]);
+    }
+
+    /*
+     * Read one full line into the line buffer, without the newline. Returns its length, or -1 if
+     * there are no more complete lines.
+     */
+    private int readLine() throws IOException {
+        int len = 0;
+        while (true) {
+            if (!buffer.hasRemaining()) {
+                buffer.clear();
+                int n = channel.read(buffer);
+                buffer.flip();
+                if (n < 0) {
+                    return -1;
+                }
+                continue;
+            }
+            byte b = buffer.get();
+            if (b == '\n') {
+                return len;
+            }
+            if (len == line.length) {
+                line = Arrays.copyOf(line, line.length * 2);
+            }
+            line[len++] = b;
+        }
+    }
+
+    /**
+     * Only parse the columns which are actually wanted. Others read back as NaN. Parsing text is
+     * most of the cost of reading a .csv, so this helps a lot when only a few columns are needed.
+     * 
+     * @param needed true for each column to parse, or null to parse them all
+     */
+    void setColumnsNeeded(boolean[] needed) {
+        columns_needed = needed;
+    }
+
+    @Override
+    public boolean readRow(double[] row_out) throws IOException {
+        int len = readLine();
+        if (len < 0) {
+            return false;
+        }
+
+        int col = 0;
+        int cell_start = 0;
+        for (int i = 0; i <= len && col < held_values.length; i++) {
+            if (i == len || line[i] == ',') {
+                parseCell(col, cell_start, i);
+                col++;
+                cell_start = i + 1;
+            }
+        }
+
+        System.arraycopy(held_values, 0, row_out, 0, held_values.length);
+        return true;
+    }
+
+    private void parseCell(int col, int start, int end) {
+        if (columns_needed != null && (col >= columns_needed.length || !columns_needed[col])) {
+            held_values[col] = Double.NaN;
+            return;
+        }
+        while (start < end && line[start] <= ' ') {
+            start++;
+        }
+        while (end > start && line[end - 1] <= ' ') {
+            end--;
+        }
+        if (start == end) {
+            // Not sampled this row - keep the previous value
+            return;
+        }
+        try {
+            held_values[col] = Double.parseDouble(new String(line, start, end - start, StandardCharsets.US_ASCII));
+        } catch (NumberFormatException e) {
+            held_values[col] = Double.NaN;
+        }
+    }
+
+    /**
+     * Jump to the start of a row. Fields which were left empty in the row seeked to will read as NaN
+     * until they are next logged.
+     */
+    @Override
+    public void seek(long offset) throws IOException {
+        if (!(channel instanceof FileChannel)) {
+            throw new IOException("Can't seek in a gzipped log");
+        }
+        ((FileChannel) channel).position(offset);
+        buffer.clear();
+        buffer.flip();
+        Arrays.fill(held_values, Double.NaN);
+    }
+
+    @Override
+    public String[] getFieldNames() {
+        return field_names;
+    }
+
+    @Override
+    public String[] getUnitNames() {
+        return unit_names;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return field_names.length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+}
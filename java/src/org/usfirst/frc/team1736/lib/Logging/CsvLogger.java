@@ -1,17 +1,18 @@
 package org.usfirst.frc.team1736.lib.Logging;
 
-import java.io.FileWriter;
 import java.io.IOException;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.TimeZone;
 import java.util.Vector;
+import java.util.function.BooleanSupplier;
+import java.util.function.DoubleSupplier;
 
 import edu.wpi.first.wpilibj.DriverStation;
 import edu.wpi.first.wpilibj.RobotState;
 
-import java.io.BufferedWriter;
 import java.io.File;
 import java.lang.invoke.MethodHandles;
 import java.lang.invoke.MethodType;
@@ -44,20 +45,61 @@ import static java.lang.invoke.MethodType.*;
  * Provides an API for FRC 1736 Robot Casserole datalogging on the robot during testing or matches.
  * Will write lines into a CSV file with a unique name between calls to init() and close().
  * output_dir is hardcoded to point to a specific 2016 folder on a flash drive connected to the
- * roboRIO. This implementation utilizes java's "methodHandles" libraries to refer to the data which
- * is to be put into the log. It is also a static class, which needs no instantiation. <br>
+ * roboRIO. Fields are read through DoubleSupplier/BooleanSupplier objects (lambdas work nicely), or
+ * for older code, through java's "methodHandles" libraries. It is also a static class, which needs
+ * no instantiation. <br>
  * <br>
  * USAGE:
  * <ol>
- * <li>During init, call addLoggingFieldDouble method for each field to be logged.</li>
+ * <li>During init, call addLoggingFieldDouble or addLoggingFieldBoolean method for each field to be
+ * logged. The supplier-based versions are the cheapest to sample each loop.</li>
  * <li>During teleop init or autonomous init, call the init() function to start logging data to a
  * new file.</li>
- * <li>Each loop, call the logData</li>
+ * <li>Each loop, call the logData. Fields added with a rate divisor are only sampled every few
+ * loops.</li>
  * <li>During DisabledInit, call the close() method to close out any file which was being written to
  * while the robot was doing something.</li>
  * <li>Post-match or -practice, extract the data logs from the USB drive(maybe using FTP?) and view
  * with excel or your favourite software.</li>
  * </ol>
+ * <br>
+ * BINARY FORMAT: <br>
+ * Calling setOutputFormat() with one of the binary LogFormats before init() writes a compact
+ * fixed-width binary file (.clog) instead of text. LogFormat.COMPRESSED writes delta/XOR compressed
+ * blocks (.clogz), which are smaller still and need less USB bandwidth. Use BinaryLogConverter on a
+ * laptop to turn either back into .csv files for viewing.
+ * <br>
+ * CSV PRECISION: <br>
+ * CSV values are written at full precision by default, exactly as Double.toString() would.
+ * setFieldPrecision() and setDefaultPrecision() opt in to rounding to fixed decimal places, which
+ * makes smaller files and keeps number formatting from allocating.
+ * <br>
+ * ASYNCHRONOUS MODE: <br>
+ * By default, logData() formats and writes each line on the caller's thread, which puts file IO
+ * latency right into the robot loop. Calling setAsyncMode(true, depth) before init() changes this:
+ * logData() only samples values into a preallocated ring of rows, and a low-priority background
+ * thread formats and writes them. If the writer falls more than depth rows behind, new rows are
+ * dropped (and counted) rather than stalling the robot loop. close() waits for the writer to drain
+ * every queued row before closing the file.
+ * <br>
+ * SEGMENTS AND RETENTION: <br>
+ * Calling setSegmentLimits() before init() makes the logger close the current file and start a
+ * new numbered segment (name_seg1.csv, name_seg2.csv...) whenever it gets too big or too old, so a
+ * crash only ever costs part of one small file. Pair it with a LogRetentionManager to keep the USB
+ * drive from filling up.
+ * <br>
+ * DURABILITY: <br>
+ * By default, rows sit in memory until a buffer fills or forceSync() is called, so a brownout or
+ * power cut loses an unknown amount of data. setDurabilityPolicy() bounds that loss: rows are
+ * flushed to the OS every N rows or M milliseconds, and optionally forced all the way to the USB
+ * drive no more often than a set interval. In async mode all of this happens on the writer thread,
+ * so the robot loop never waits on the drive. After a crash, LogRecovery trims off any half-written
+ * row or block.
+ * <br>
+ * TIME INDEX: <br>
+ * Calling setTimeIndexInterval() before init() makes the logger also write a small .cidx index
+ * file next to each log, so IndexedLogReader can pull a time window or check min/max values
+ * without reading the whole log.
  * 
  * 
  */
@@ -66,16 +108,68 @@ public class CsvLogger {
     static long log_write_index;
     static String log_name = null;
     static String output_dir = "/U/data_captures/"; // USB drive is mounted to /U on roboRIO
-    static BufferedWriter log_file = null;
-    static boolean log_open = false;
+    static LogRowWriter log_file = null;
+    static LogFormat output_format = LogFormat.CSV;
+    static volatile boolean log_open = false;
 
     static Vector<String> dataFieldNames = new Vector<String>();
     static Vector<String> unitNames = new Vector<String>();
-    static Vector<MethodHandle> methodHandles = new Vector<MethodHandle>();
-    static Vector<Vector<Object>> mhReferenceObjects = new Vector<Vector<Object>>();
+    static Vector<DoubleSupplier> fieldSamplers = new Vector<DoubleSupplier>();
+    static Vector<Integer> fieldRateDivisors = new Vector<Integer>();
+    // Flattened copies of the above, rebuilt each init() so the per-loop sampling is a plain array walk
+    static DoubleSupplier[] samplerArray = new DoubleSupplier[0];
+    static int[] divisorArray = new int[0];
+    static int[] decimalsArray = new int[0];
+    // Decimal places to write each field with in CSV files, by name. Unlisted fields get the default.
+    static HashMap<String, Integer> fieldDecimals = new HashMap<String, Integer>();
+    static int default_decimals = CsvRowWriter.DEFAULT_DECIMALS;
+    // Most recent sample of each field, held over loops where a slow field isn't sampled
+    static double[] heldValues = new double[0];
     static double lastLeftMotorCurrent = 0;
     static double lastRightMotorCurrent = 0;
 
+    /** Default number of rows which may be queued up for the background writer in async mode */
+    public static final int DEFAULT_ASYNC_QUEUE_DEPTH = 64;
+    /** Time the background writer sleeps when it has nothing to do */
+    static final int WRITER_IDLE_SLEEP_MS = 10;
+    /** Max time close() will wait for the background writer to finish draining queued rows */
+    static final int WRITER_DRAIN_TIMEOUT_MS = 2000;
+
+    static boolean async_mode = false;
+    static int async_queue_depth = DEFAULT_ASYNC_QUEUE_DEPTH;
+    static LogRowRing row_ring = null;
+    static Thread writer_thread = null;
+    static volatile boolean writer_running = false;
+    static volatile boolean writer_flush_requested = false;
+    // Set by the writer thread if it hit a file error and gave up. The log is closed on the next logData().
+    static volatile boolean writer_failed = false;
+    // Guards the hand-off of the log file between close() and a writer thread which wouldn't stop
+    static final Object writer_lock = new Object();
+    static boolean writer_exited = true;
+    static boolean writer_closes_file = false;
+    static double[] sample_buffer = null;
+
+    // Segment rotation. Zero means no limit.
+    static long max_segment_bytes = 0;
+    static long max_segment_ms = 0;
+    static int segment_index = 0;
+    static long segment_start_ms = 0;
+    static volatile String active_file_name = null;
+    static String[] header_field_names = null;
+    static String[] header_unit_names = null;
+
+    // Durability policy. Zero means disabled.
+    static int flush_every_rows = 0;
+    static long flush_every_ms = 0;
+    static long min_force_interval_ms = 0;
+    static int rows_since_flush = 0;
+    static long last_flush_ms = 0;
+    static long last_force_ms = 0;
+    static volatile long force_count = 0;
+
+    // Rows per time index entry. Zero means no index.
+    static int index_interval_rows = 0;
+
 
     /**
      * Clears the IO buffer in memory and forces things to file. Generally a good idea to use this
@@ -90,8 +184,13 @@ public class CsvLogger {
             DriverStation.reportError("Error - Log is not yet opened, cannot sync!", false);
             return -1;
         }
+        if (async_mode) {
+            // The writer thread owns the file. Ask it to flush once it's caught up.
+            writer_flush_requested = true;
+            return 0;
+        }
         try {
-            log_file.flush();
+            applyDurabilityPolicy(true);
         }
         // Catch ALL the errors!!!
         catch (IOException e) {
@@ -107,7 +206,9 @@ public class CsvLogger {
 
     /**
      * Closes the log file and ensures everything is written to disk. init() must be called again in
-     * order to write to the file.
+     * order to write to the file. In async mode, this blocks until all queued rows have been
+     * written (or a timeout expires). If the writer thread is stuck and won't stop, it is left to
+     * close the file itself whenever it finishes, and init() fails until then.
      * 
      * @return -1 on failure to close, 0 on success
      */
@@ -117,9 +218,28 @@ public class CsvLogger {
             return 0;
         }
 
+        if (async_mode && !stopWriterThread()) {
+            synchronized (writer_lock) {
+                if (!writer_exited) {
+                    // Writer is stuck in a file call. It still owns the file, and will close it
+                    // whenever it gets out. init() won't start a new log until then.
+                    writer_closes_file = true;
+                    log_open = false;
+                    return -1;
+                }
+            }
+        }
+        if (writer_failed) {
+            // Writer already closed the file when it gave up
+            log_open = false;
+            active_file_name = null;
+            return 0;
+        }
+
         try {
             log_file.close();
             log_open = false;
+            active_file_name = null;
         }
         // Catch ALL the errors!!!
         catch (IOException e) {
@@ -138,6 +258,197 @@ public class CsvLogger {
     	return log_open;
     }
 
+    /**
+     * Select whether logData() writes to file on the caller's thread (the default), or only
+     * samples values and hands them off to a background writer thread. Must be called while the
+     * log is closed. Takes effect on the next call to init().
+     * 
+     * @param enable true to write from a background thread, false to write from logData() directly
+     * @param queue_depth Number of rows which may be waiting for the writer before new rows are
+     *        dropped. At 50Hz, 64 rows covers a bit over a second of the flash drive stalling.
+     */
+    public static void setAsyncMode(boolean enable, int queue_depth) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change async mode while log file is open", false);
+            return;
+        }
+        async_mode = enable;
+        async_queue_depth = Math.max(1, queue_depth);
+    }
+
+    /**
+     * Select the on-disk format for log files. CSV (the default) can be viewed right away. The
+     * binary formats are 3-4x smaller and much cheaper to write on the RIO, and the compressed
+     * format is usually several times smaller again. Both must be converted with
+     * BinaryLogConverter before viewing. The compressed format assumes the first field is time. Must be called while the log is closed. Takes effect
+     * on the next call to init().
+     * 
+     * @param format Format to write new log files in
+     */
+    public static void setOutputFormat(LogFormat format) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change log format while log file is open", false);
+            return;
+        }
+        output_format = format;
+    }
+
+    /**
+     * Round values of one field to a fixed number of decimal places in CSV logs, rather than writing
+     * them at full precision (the default). Fewer places make smaller files, and any fixed precision
+     * avoids allocating while formatting. Anything smaller than half the last place is written as 0.
+     * Binary formats always store full precision. May be called before or after the field is added,
+     * but must be called while the log is closed.
+     * 
+     * @param dataFieldName Name of the field
+     * @param decimals Places after the decimal point (0 to AsciiNumberFormatter.MAX_DECIMALS), or
+     *        AsciiNumberFormatter.FULL_PRECISION
+     */
+    public static void setFieldPrecision(String dataFieldName, int decimals) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change field precision while log file is open", false);
+            return;
+        }
+        fieldDecimals.put(dataFieldName, decimals);
+    }
+
+    /**
+     * Set how many decimal places are used for fields without their own setFieldPrecision() call.
+     * Defaults to AsciiNumberFormatter.FULL_PRECISION, which writes every value losslessly as
+     * Double.toString() would. Must be called while the log is closed.
+     * 
+     * @param decimals Places after the decimal point (0 to AsciiNumberFormatter.MAX_DECIMALS), or
+     *        AsciiNumberFormatter.FULL_PRECISION
+     */
+    public static void setDefaultPrecision(int decimals) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change field precision while log file is open", false);
+            return;
+        }
+        default_decimals = decimals;
+    }
+
+    /**
+     * Limit how big each log file can get. Once a file passes either limit, it is closed and logging
+     * continues in a new file (segment) named after the first, with _segN on the end. Each segment
+     * has its own header, so each can be viewed on its own. Must be called while the log is closed.
+     * 
+     * @param max_bytes Start a new segment once the present one is at least this many bytes. 0 for
+     *        no size limit.
+     * @param max_ms Start a new segment once the present one has been open this many
+     *        milliseconds. 0 for no time limit.
+     */
+    public static void setSegmentLimits(long max_bytes, long max_ms) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change segment limits while log file is open", false);
+            return;
+        }
+        max_segment_bytes = Math.max(0, max_bytes);
+        max_segment_ms = Math.max(0, max_ms);
+    }
+
+    /**
+     * Set how often logged data is pushed out of memory, bounding how much is lost if the robot
+     * loses power. Must be called while the log is closed.
+     * 
+     * @param flush_rows Flush to the OS after this many rows. 0 to not flush on row count.
+     * @param flush_ms Flush to the OS once this many milliseconds have passed since the last flush.
+     *        0 to not flush on time.
+     * @param force_interval_ms When flushing, also force the data onto the physical drive if it's
+     *        been at least this many milliseconds since the last time. Forcing is slow (tens of
+     *        ms on a USB stick), so use async mode if this is enabled. 0 to never force.
+     */
+    public static void setDurabilityPolicy(int flush_rows, long flush_ms, long force_interval_ms) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change durability policy while log file is open", false);
+            return;
+        }
+        flush_every_rows = Math.max(0, flush_rows);
+        flush_every_ms = Math.max(0, flush_ms);
+        min_force_interval_ms = Math.max(0, force_interval_ms);
+    }
+
+    /**
+     * Write a time index (see IndexedLogReader) next to each log file. Must be called while the log
+     * is closed.
+     * 
+     * @param rows Number of rows per index entry. Smaller means faster lookups but a bigger index.
+     *        BinaryLogFormat.DEFAULT_INDEX_INTERVAL_ROWS is a good start. 0 to not write an index.
+     */
+    public static void setTimeIndexInterval(int rows) {
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot change time index interval while log file is open", false);
+            return;
+        }
+        index_interval_rows = Math.max(0, rows);
+    }
+
+    /**
+     * @return Number of times logged data has been forced onto the physical drive since startup.
+     */
+    public static long getForceCount() {
+        return force_count;
+    }
+
+    /**
+     * @return Full path of the file presently being written to, or null if no log is open.
+     */
+    public static String getActiveLogFileName() {
+        return active_file_name;
+    }
+
+    /**
+     * @return Which segment of the present log is being written. 0 is the first file.
+     */
+    public static int getSegmentIndex() {
+        return segment_index;
+    }
+
+    /**
+     * @return Approximate number of bytes written to the present segment so far, or 0 if no log is
+     *         open.
+     */
+    public static long getSegmentBytes() {
+        LogRowWriter writer = log_file;
+        if (writer == null || !log_open) {
+            return 0;
+        }
+        return writer.getBytesWritten();
+    }
+
+    /**
+     * @return Number of rows thrown away in async mode because the writer thread could not keep up.
+     *         Resets each time a new log is opened.
+     */
+    public static long getDroppedRowCount() {
+        if (row_ring == null) {
+            return 0;
+        }
+        return row_ring.getDroppedRowCount();
+    }
+
+    /**
+     * @return Number of rows presently waiting to be written by the async writer thread.
+     */
+    public static int getQueuedRowCount() {
+        if (row_ring == null) {
+            return 0;
+        }
+        return row_ring.getQueuedRowCount();
+    }
+
+    /**
+     * @return Largest number of rows which have been waiting for the async writer thread at once
+     *         during the present log. If this gets close to the queue depth, rows are about to be
+     *         dropped.
+     */
+    public static int getQueueHighWaterMark() {
+        if (row_ring == null) {
+            return 0;
+        }
+        return row_ring.getHighWaterMark();
+    }
+
     private static String getOpModeName() {
     	if(RobotState.isAutonomous()){
     		return "Auto";
@@ -168,11 +479,16 @@ public class CsvLogger {
         	DriverStation.reportWarning("Warning - log is already open!", false);
             return 0;
         }
+        if (writer_thread != null && writer_thread.isAlive()) {
+            // The last log's writer never stopped. It still owns the log file and the row ring.
+        	DriverStation.reportError("ERROR - cannot initalize log file: previous log's writer thread is still running", false);
+            return -1;
+        }
 
         log_open = false;
 
         // Determine a unique file name
-        log_name = output_dir + "log_" + getDateTimeString() + "_" + getOpModeName() + ".csv";
+        log_name = output_dir + "log_" + getDateTimeString() + "_" + getOpModeName() + getFileExtension();
         System.out.println("Initalizing Log file  " + log_name);
         
         
@@ -186,24 +502,12 @@ public class CsvLogger {
             File tempPathObj = new File(output_dir);
             tempPathObj.mkdirs();
 
-            // Open File
-            FileWriter fstream = new FileWriter(log_name, true);
-            log_file = new BufferedWriter(fstream);
-
-            // Write user-defined header line
-            for (String header_txt : dataFieldNames) {
-                log_file.write(header_txt + ", ");
-            }
-            // End of line
-            log_file.write("\n");
-
-
-            // Write user-defined units line
-            for (String header_txt : unitNames) {
-                log_file.write(header_txt + ", ");
-            }
-            // End of line
-            log_file.write("\n");
+            // Flatten field info, then open File and write user-defined header and units lines
+            buildSamplerArray();
+            header_field_names = dataFieldNames.toArray(new String[dataFieldNames.size()]);
+            header_unit_names = unitNames.toArray(new String[unitNames.size()]);
+            segment_index = 0;
+            openSegment(log_name);
 
         }
         // Catch ALL the errors!!!
@@ -212,6 +516,15 @@ public class CsvLogger {
             return -1;
         }
 
+        // Allocate sample storage once per log, so logData() never allocates
+        sample_buffer = new double[samplerArray.length];
+        if (async_mode) {
+            row_ring = new LogRowRing(async_queue_depth, samplerArray.length);
+            startWriterThread();
+        } else {
+            row_ring = null;
+        }
+
         log_open = true;
         return 0;
 
@@ -231,17 +544,34 @@ public class CsvLogger {
             return -1;
         }
 
+        if (async_mode) {
+            if (writer_failed) {
+                // Writer thread gave up on the file (and already reported why). Stop logging to it.
+                log_open = false;
+                active_file_name = null;
+                DriverStation.reportError("Log writer thread failed - log closed.", false);
+                return -2;
+            }
+            double[] row = row_ring.claimRow();
+            if (row == null) {
+                // Writer has fallen behind. Drop this row rather than stalling the robot loop.
+                return -2;
+            }
+            sampleAllFields(row, log_write_index);
+            row_ring.publishRow(log_write_index);
+            log_write_index++;
+            if (forceSync)
+                forceSync();
+            return 0;
+        }
+
         if (forceSync)
             forceSync();
 
         try {
-            for (int i = 0; i < methodHandles.size(); i++) {
-                MethodHandle mh = methodHandles.get(i);
-                String fieldName = dataFieldNames.get(i);
-                Vector<Object> mhArgs = mhReferenceObjects.get(i);
-                log_file.write(getStandardLogData(mh, mhArgs,fieldName) + ", ");
-            }
-            log_file.write("\n");
+            sampleAllFields(sample_buffer, log_write_index);
+            writeRow(sample_buffer, log_write_index);
+            log_write_index++;
         } catch (Exception ex) {
         	DriverStation.reportError("Error writing to log file: " + ex.getMessage(), false);
             return -2;
@@ -249,6 +579,236 @@ public class CsvLogger {
 
         return 0;
     }
+
+    /*
+     * Reads the present value of every logged field into the given row. Fields which aren't due
+     * this loop get their previously sampled value.
+     */
+    private static void sampleAllFields(double[] row, long row_index) {
+        DoubleSupplier[] samplers = samplerArray;
+        int[] divisors = divisorArray;
+        double[] held = heldValues;
+        for (int i = 0; i < samplers.length; i++) {
+            if (divisors[i] == 1 || row_index % divisors[i] == 0) {
+                held[i] = samplers[i].getAsDouble();
+            }
+            row[i] = held[i];
+        }
+    }
+
+    /*
+     * Copies the registered samplers into flat arrays for fast iteration
+     */
+    private static void buildSamplerArray() {
+        samplerArray = fieldSamplers.toArray(new DoubleSupplier[fieldSamplers.size()]);
+        divisorArray = new int[fieldRateDivisors.size()];
+        for (int i = 0; i < divisorArray.length; i++) {
+            divisorArray[i] = fieldRateDivisors.get(i);
+        }
+        if (divisorArray.length > 0 && divisorArray[0] != 1) {
+            // Everything else is plotted against the first column, so it has to be there every row.
+        	DriverStation.reportWarning("Warning: first log field (time) must be logged every loop. Ignoring its rate divisor.", false);
+            divisorArray[0] = 1;
+        }
+        decimalsArray = new int[dataFieldNames.size()];
+        for (int i = 0; i < decimalsArray.length; i++) {
+            Integer decimals = fieldDecimals.get(dataFieldNames.get(i));
+            decimalsArray[i] = (decimals == null) ? default_decimals : decimals;
+        }
+        heldValues = new double[samplerArray.length];
+    }
+
+    /*
+     * Formats one row of sampled values and writes it out to the log file
+     */
+    private static void writeRow(double[] row, long row_index) throws IOException {
+        log_file.writeRow(row, row_index);
+        rows_since_flush++;
+
+        if ((max_segment_bytes > 0 && log_file.getBytesWritten() >= max_segment_bytes)
+                || (max_segment_ms > 0 && System.currentTimeMillis() - segment_start_ms >= max_segment_ms)) {
+            // Present file is big (or old) enough. Close it out and continue in a new one.
+            if (min_force_interval_ms > 0) {
+                log_file.sync();
+            }
+            log_file.close();
+            segment_index++;
+            openSegment(getSegmentFileName(segment_index));
+        } else {
+            applyDurabilityPolicy(false);
+        }
+    }
+
+    /*
+     * Flush (and maybe force) the file if the durability policy says it's time, or if asked to.
+     */
+    private static void applyDurabilityPolicy(boolean flush_now) throws IOException {
+        long now = System.currentTimeMillis();
+        boolean due = flush_now || (flush_every_rows > 0 && rows_since_flush >= flush_every_rows)
+                || (flush_every_ms > 0 && rows_since_flush > 0 && now - last_flush_ms >= flush_every_ms);
+        if (!due) {
+            return;
+        }
+
+        if (min_force_interval_ms > 0 && now - last_force_ms >= min_force_interval_ms) {
+            log_file.sync();
+            last_force_ms = now;
+            force_count++;
+        } else {
+            log_file.flush();
+        }
+        rows_since_flush = 0;
+        last_flush_ms = now;
+    }
+
+    /*
+     * Opens a new file (segment) of the present log, and writes the header to it
+     */
+    private static void openSegment(String file_name) throws IOException {
+        log_file = openRowWriter(file_name);
+        if (index_interval_rows > 0) {
+            log_file = new LogIndexWriter(log_file, file_name + BinaryLogFormat.INDEX_FILE_EXTENSION,
+                    index_interval_rows);
+        }
+        log_file.writeHeader(header_field_names, header_unit_names);
+        segment_start_ms = System.currentTimeMillis();
+        active_file_name = file_name;
+        rows_since_flush = 0;
+        last_flush_ms = segment_start_ms;
+    }
+
+    /*
+     * Later segments are named after the first one, with a segment number on the end
+     */
+    private static String getSegmentFileName(int index) {
+        String ext = getFileExtension();
+        return log_name.substring(0, log_name.length() - ext.length()) + "_seg" + index + ext;
+    }
+
+    /*
+     * Creates the right kind of writer for the selected output format
+     */
+    private static LogRowWriter openRowWriter(String file_name) throws IOException {
+        return output_format.openWriter(file_name, divisorArray, decimalsArray);
+    }
+
+    private static String getFileExtension() {
+        return output_format.getFileExtension();
+    }
+
+    /*
+     * Starts up the background thread which empties the row ring into the log file
+     */
+    private static void startWriterThread() {
+        writer_running = true;
+        writer_flush_requested = false;
+        writer_failed = false;
+        synchronized (writer_lock) {
+            writer_exited = false;
+            writer_closes_file = false;
+        }
+
+        // The thread keeps its own reference, so it can never touch another log's ring
+        final LogRowRing ring = row_ring;
+        writer_thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop(ring);
+            }
+        });
+
+        // Writer must never compete with the robot loop
+        writer_thread.setName("CasseroleCsvLoggerWriter");
+        writer_thread.setPriority(Thread.MIN_PRIORITY);
+        writer_thread.setDaemon(true);
+        writer_thread.start();
+    }
+
+    /*
+     * Tells the background writer to finish up, and waits for it to drain all queued rows. If it
+     * doesn't, interrupts it and waits a bit more. Returns false if the thread is still running,
+     * in which case it still owns the log file.
+     */
+    private static boolean stopWriterThread() {
+        if (writer_thread == null) {
+            return true;
+        }
+        writer_running = false;
+        try {
+            writer_thread.join(WRITER_DRAIN_TIMEOUT_MS);
+            if (writer_thread.isAlive()) {
+            	DriverStation.reportWarning("Warning - log writer did not finish draining before close. "
+                        + getQueuedRowCount() + " rows lost.", false);
+                writer_thread.interrupt();
+                writer_thread.join(WRITER_DRAIN_TIMEOUT_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer_thread.isAlive()) {
+            // Keep the reference, so init() can tell the old writer is still around
+            return false;
+        }
+        writer_thread = null;
+        return true;
+    }
+
+    /*
+     * Background writer body. Writes out every queued row, sleeping whenever the ring is empty.
+     * Exits once it's been told to stop and everything queued so far has been written. On a file
+     * error, closes the file and flags the failure for the robot thread to see.
+     */
+    private static void writerLoop(LogRowRing ring) {
+        try {
+            while (true) {
+                boolean stopping = !writer_running;
+                boolean wrote_rows = false;
+
+                double[] row = ring.peekRow();
+                while (row != null) {
+                    writeRow(row, ring.peekRowTag());
+                    ring.releaseRow();
+                    wrote_rows = true;
+                    row = ring.peekRow();
+                }
+
+                if (writer_flush_requested) {
+                    writer_flush_requested = false;
+                    applyDurabilityPolicy(true);
+                } else if (!wrote_rows) {
+                    // Time-based flushes still need to happen while the robot loop is quiet
+                    applyDurabilityPolicy(false);
+                }
+
+                if (stopping) {
+                    // Ring was fully drained after the stop request was seen
+                    break;
+                }
+
+                if (!wrote_rows) {
+                    Thread.sleep(WRITER_IDLE_SLEEP_MS);
+                }
+            }
+        } catch (IOException e) {
+        	DriverStation.reportError("Error writing to log file: " + e.getMessage() + ". Closing log.", false);
+            writer_failed = true;
+        } catch (InterruptedException e) {
+            // Asked to give up. Whatever was queued is lost.
+        } finally {
+            synchronized (writer_lock) {
+                writer_exited = true;
+                if (writer_failed || writer_closes_file) {
+                    // Nobody else will close the file now
+                    try {
+                        log_file.close();
+                    } catch (IOException e) {
+                        // Already reported the original problem
+                    }
+                    active_file_name = null;
+                }
+            }
+        }
+    }
     
     /**
      * our wonderful attempt at optimization to do a "dry run" with all methods in an attempt to 
@@ -256,12 +816,8 @@ public class CsvLogger {
      */
     public static void preCacheAllMethods(){
         try {
-            for (int i = 0; i < methodHandles.size(); i++) {
-                MethodHandle mh = methodHandles.get(i);
-                String fieldName = dataFieldNames.get(i);
-                Vector<Object> mhArgs = mhReferenceObjects.get(i);
-                getStandardLogData(mh, mhArgs,fieldName);
-            }
+            buildSamplerArray();
+            sampleAllFields(new double[samplerArray.length], 0);
         } catch (Exception ex) {
         	//do nothing
         }
@@ -269,6 +825,64 @@ public class CsvLogger {
     }
 
 
+    /**
+     * Add a field to be logged at each loop of the robot code. The supplier is called once per call
+     * to logData(), with no boxing or allocation, so this is the preferred way to add fields. <br>
+     * Ex: CsvLogger.addLoggingFieldDouble("Battery Voltage", "V", () -> pdp.getVoltage());
+     * 
+     * @param dataFieldName Name of the field/column in the output data.
+     * @param unitName Name of the units for field/column in the output data.
+     * @param source Supplier which returns the present value of the field.
+     */
+    public static void addLoggingFieldDouble(String dataFieldName, String unitName, DoubleSupplier source) {
+        addLoggingField(dataFieldName, unitName, source, 1);
+    }
+
+    /**
+     * Add a field to be logged every few loops of the robot code. Use this for slow-changing signals
+     * (temperatures, hourmeters, etc.) so they don't cost as much as the fast ones. On loops where
+     * the field isn't sampled, CSV logs leave its column empty, and binary logs repeat the last
+     * value.
+     * 
+     * @param dataFieldName Name of the field/column in the output data.
+     * @param unitName Name of the units for field/column in the output data.
+     * @param source Supplier which returns the present value of the field.
+     * @param rate_divisor Sample this field once every rate_divisor calls to logData(). 1 samples
+     *        every call. Ex: at a 20ms loop, 50 samples once per second.
+     */
+    public static void addLoggingFieldDouble(String dataFieldName, String unitName, DoubleSupplier source,
+            int rate_divisor) {
+        addLoggingField(dataFieldName, unitName, source, rate_divisor);
+    }
+
+    /**
+     * Add a field to be logged at each loop of the robot code. The supplier is called once per call
+     * to logData(), with no boxing or allocation, so this is the preferred way to add fields. True
+     * is logged as 1, false as 0.
+     * 
+     * @param dataFieldName Name of the field/column in the output data.
+     * @param unitName Name of the units for field/column in the output data.
+     * @param source Supplier which returns the present value of the field.
+     */
+    public static void addLoggingFieldBoolean(String dataFieldName, String unitName, BooleanSupplier source) {
+        addLoggingField(dataFieldName, unitName, new BooleanSampler(source), 1);
+    }
+
+    /**
+     * Add a field to be logged every few loops of the robot code. See the double version of this
+     * method for details. True is logged as 1, false as 0.
+     * 
+     * @param dataFieldName Name of the field/column in the output data.
+     * @param unitName Name of the units for field/column in the output data.
+     * @param source Supplier which returns the present value of the field.
+     * @param rate_divisor Sample this field once every rate_divisor calls to logData().
+     */
+    public static void addLoggingFieldBoolean(String dataFieldName, String unitName, BooleanSupplier source,
+            int rate_divisor) {
+        addLoggingField(dataFieldName, unitName, new BooleanSampler(source), rate_divisor);
+    }
+
+
     /**
      * Add a field to be logged at each loop of the robot code. A method handle will be created and
      * stored. This method is for non-static methods which return a data type of double.
@@ -359,8 +973,8 @@ public class CsvLogger {
 
 
     /*
-     * Implementation of above convenience classes. Creates method handle and stores relevant
-     * information in class level Vector objects.
+     * Implementation of above method-handle convenience methods. Creates a method handle, binds the
+     * receiver and arguments into it, and wraps it in a sampler.
      */
     private static void addLoggingField(MethodType methodType, String dataFieldName, String unitName, Class<?> classRef,
             String methodName, Object reference, Object... args) {
@@ -368,18 +982,6 @@ public class CsvLogger {
         	DriverStation.reportError("Error: cannot add logging field while log file is open",false);
             return;
         }
-        for (int i = 0; i < dataFieldNames.size(); i++) {
-            String fieldName = dataFieldNames.get(i);
-            if (dataFieldName.equals(fieldName)) {
-                Vector<Object> mhArgs = new Vector<Object>();
-                mhArgs.add(reference);
-                for (Object arg : args)
-                    mhArgs.add(arg);
-                mhReferenceObjects.set(i, mhArgs);
-                DriverStation.reportWarning("Warning: log field named "+ fieldName + " already present. Reference updated", false);
-                return;
-            }
-        }
         MethodHandle methodHandle = null;
         try {
             methodHandle = MethodHandles.lookup().findVirtual(classRef, methodName, methodType);
@@ -393,36 +995,143 @@ public class CsvLogger {
             	DriverStation.reportError("Error: Could not add logging field " + dataFieldName, true);
             }
         }
-        dataFieldNames.add(dataFieldName);
-        unitNames.add(unitName);
-        methodHandles.add(methodHandle);
         Vector<Object> mhArgs = new Vector<Object>();
         if (reference != null) // will be null for static methods
             mhArgs.add(reference);
         for (Object arg : args)
             mhArgs.add(arg);
-        mhReferenceObjects.add(mhArgs);
+        addLoggingField(dataFieldName, unitName, bindMethodHandle(methodHandle, mhArgs, dataFieldName), 1);
+    }
+
+    /*
+     * Stores a new field, or replaces the sampler of an existing field with the same name.
+     */
+    private static void addLoggingField(String dataFieldName, String unitName, DoubleSupplier sampler,
+            int rate_divisor) {
+        rate_divisor = Math.max(1, rate_divisor);
+        if (log_open) {
+        	DriverStation.reportError("Error: cannot add logging field while log file is open",false);
+            return;
+        }
+        for (int i = 0; i < dataFieldNames.size(); i++) {
+            String fieldName = dataFieldNames.get(i);
+            if (dataFieldName.equals(fieldName)) {
+                fieldSamplers.set(i, sampler);
+                fieldRateDivisors.set(i, rate_divisor);
+                DriverStation.reportWarning("Warning: log field named "+ fieldName + " already present. Reference updated", false);
+                return;
+            }
+        }
+        dataFieldNames.add(dataFieldName);
+        unitNames.add(unitName);
+        fieldSamplers.add(sampler);
+        fieldRateDivisors.add(rate_divisor);
     }
 
 
     /***
-     * This is used for any non-special logging parameters (those that don't require extra math on
-     * the output)
+     * Pre-binds the reference object and arguments into a method handle, and adapts it to take no
+     * arguments and return exactly a double or boolean. The result can then be called with
+     * invokeExact(), which avoids the argument array and boxing of invokeWithArguments().
      * 
-     * @param methodHandle A MethodHandle stored in the class level Vector
-     * @param args Arguments for the given Method Handle
-     * @return double value for double return types, 1 or 0 for boolean return types
+     * @param methodHandle Unbound method handle, or null if the lookup failed
+     * @param args Reference object (for non-static methods) followed by method arguments
+     * @param name Field name, for error reporting
+     * @return sampler which returns the method's value, 1 or 0 for boolean return types
      */
-    private static double getStandardLogData(MethodHandle methodHandle, Vector<Object> args, String name) {
+    private static DoubleSupplier bindMethodHandle(MethodHandle methodHandle, Vector<Object> args, String name) {
+        if (methodHandle == null) {
+            return new ConstantSampler(-1.0);
+        }
         try {
-            if (methodHandle.type().returnType() == double.class)
-                return (double) methodHandle.invokeWithArguments(args);
-            else if (methodHandle.type().returnType() == boolean.class)
-                return ((boolean) methodHandle.invokeWithArguments(args)) ? 1.0 : 0.0;
-        } catch (Throwable e) {
-        	DriverStation.reportError("Error running method " + name + " for data logging", true);
-        }
-        return -1.0;
+            MethodHandle bound = MethodHandles.insertArguments(methodHandle, 0, args.toArray());
+            if (methodHandle.type().returnType() == double.class) {
+                return new DoubleMethodHandleSampler(bound.asType(methodType(double.class)), name);
+            } else if (methodHandle.type().returnType() == boolean.class) {
+                return new BooleanMethodHandleSampler(bound.asType(methodType(boolean.class)), name);
+            }
+        } catch (Exception e) {
+        	DriverStation.reportError("Error: Could not bind arguments for logging field " + name, true);
+        }
+        return new ConstantSampler(-1.0);
+    }
+
+    /*
+     * Adapts a boolean source into a double sampler - true is 1, false is 0.
+     */
+    private static class BooleanSampler implements DoubleSupplier {
+        private final BooleanSupplier source;
+
+        BooleanSampler(BooleanSupplier source_in) {
+            source = source_in;
+        }
+
+        @Override
+        public double getAsDouble() {
+            return source.getAsBoolean() ? 1.0 : 0.0;
+        }
+    }
+
+    /*
+     * Sampler for fields which could not be set up properly.
+     */
+    private static class ConstantSampler implements DoubleSupplier {
+        private final double value;
+
+        ConstantSampler(double value_in) {
+            value = value_in;
+        }
+
+        @Override
+        public double getAsDouble() {
+            return value;
+        }
+    }
+
+    /*
+     * Sampler around a pre-bound ()double method handle
+     */
+    private static class DoubleMethodHandleSampler implements DoubleSupplier {
+        private final MethodHandle mh;
+        private final String name;
+
+        DoubleMethodHandleSampler(MethodHandle mh_in, String name_in) {
+            mh = mh_in;
+            name = name_in;
+        }
+
+        @Override
+        public double getAsDouble() {
+            try {
+                return (double) mh.invokeExact();
+            } catch (Throwable e) {
+            	DriverStation.reportError("Error running method " + name + " for data logging", true);
+                return -1.0;
+            }
+        }
+    }
+
+    /*
+     * Sampler around a pre-bound ()boolean method handle
+     */
+    private static class BooleanMethodHandleSampler implements DoubleSupplier {
+        private final MethodHandle mh;
+        private final String name;
+
+        BooleanMethodHandleSampler(MethodHandle mh_in, String name_in) {
+            mh = mh_in;
+            name = name_in;
+        }
+
+        @Override
+        public double getAsDouble() {
+            try {
+                return ((boolean) mh.invokeExact()) ? 1.0 : 0.0;
+            } catch (Throwable e) {
+            	DriverStation.reportError("Error running method " + name + " for data logging", true);
+                return -1.0;
+            }
+        }
     }
 
 }
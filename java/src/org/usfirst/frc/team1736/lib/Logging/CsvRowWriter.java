@@ -0,0 +1,161 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Writes log rows in the comma-separated text format which Data Viewer 2 expects: a line of field
+ * names, a line of units, and then one line of values per row. Fields which are sampled slower
+ * than every loop are left empty on rows where they were not sampled, and the viewer fills the gap
+ * with the previous value. <br>
+ * Values are formatted with AsciiNumberFormatter straight into a reusable byte buffer, which is
+ * only handed to the file when it fills up or is flushed. Values are written losslessly unless a
+ * field is given a fixed number of decimal places, and with fixed places writing a row allocates
+ * nothing.
+ *
+ */
+class CsvRowWriter implements LogRowWriter {
+
+    /** Size of the in-memory line buffer. Rows collect here until it's nearly full. */
+    static final int BUFFER_SIZE = 16384;
+    /** Decimal places used for fields with no precision set - full precision, like Double.toString() */
+    public static final int DEFAULT_DECIMALS = AsciiNumberFormatter.FULL_PRECISION;
+
+    private static final byte[] SEPARATOR = {',', ' '};
+
+    private FileOutputStream log_file;
+    private int[] rate_divisors;
+    private int[] field_decimals;
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int buf_pos = 0;
+    private long bytes_written = 0;
+    private boolean first_row = true;
+
+    /**
+     * Opens the given file for writing (appending if it exists already)
+     * 
+     * @param file_name full path to the file to open
+     * @param rate_divisors_in For each field, write a value only on every Nth row. Null to write
+     *        every field on every row.
+     * @param field_decimals_in For each field, number of decimal places to round values to, or
+     *        AsciiNumberFormatter.FULL_PRECISION. Null to use DEFAULT_DECIMALS for every field.
+     */
+    CsvRowWriter(String file_name, int[] rate_divisors_in, int[] field_decimals_in) throws IOException {
+        log_file = new FileOutputStream(file_name, true);
+        // Appending - offsets count from the start of the file, not from where we started writing
+        bytes_written = log_file.getChannel().size();
+        rate_divisors = rate_divisors_in;
+        field_decimals = field_decimals_in;
+    }
+
+    @Override
+    public void writeHeader(String[] field_names, String[] unit_names) throws IOException {
+        // Write user-defined header line
+        for (String header_txt : field_names) {
+            write(header_txt + ", ");
+        }
+        // End of line
+        write("\n");
+
+        // Write user-defined units line
+        for (String header_txt : unit_names) {
+            write(header_txt + ", ");
+        }
+        // End of line
+        write("\n");
+    }
+
+    @Override
+    public void writeRow(double[] row, long row_index) throws IOException {
+        for (int i = 0; i < row.length; i++) {
+            if (BUFFER_SIZE - buf_pos < AsciiNumberFormatter.MAX_CHARS + 3) {
+                flushBuffer();
+            }
+            // First row of a file always gets every value, so the viewer has something to fill from
+            if (first_row || rate_divisors == null || row_index % rate_divisors[i] == 0) {
+                int decimals = (field_decimals == null) ? DEFAULT_DECIMALS : field_decimals[i];
+                buf_pos = AsciiNumberFormatter.formatDouble(buf, buf_pos, row[i], decimals);
+            }
+            buf[buf_pos++] = SEPARATOR[0];
+            buf[buf_pos++] = SEPARATOR[1];
+        }
+        buf[buf_pos++] = '\n';
+        first_row = false;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return bytes_written + buf_pos;
+    }
+
+    @Override
+    public long getSeekOffset() {
+        return getBytesWritten();
+    }
+
+    @Override
+    public int getSeekSkipRows() {
+        return 0;
+    }
+
+    /*
+     * Header text only - goes straight to the file, it's only written once.
+     */
+    private void write(String str) throws IOException {
+        flushBuffer();
+        byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        log_file.write(bytes);
+        bytes_written += bytes.length;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (buf_pos > 0) {
+            log_file.write(buf, 0, buf_pos);
+            bytes_written += buf_pos;
+            buf_pos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        log_file.flush();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        flush();
+        log_file.getChannel().force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            log_file.close();
+        }
+    }
+
+}
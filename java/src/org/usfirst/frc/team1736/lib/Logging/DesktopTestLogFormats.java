@@ -0,0 +1,362 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * DESCRIPTION: <br>
+ * Desktop self-check for the log file formats. Round-trips numbers through AsciiNumberFormatter,
+ * blocks of rows through XorBlockCodec and whole files through the .clogz writer and reader, and
+ * checks LogRecovery trims damaged files back to their last good row. Only needs the standard Java
+ * libraries (plus the wpilib jar on the classpath for DriverStation). <br>
+ * <br>
+ * USAGE: <br>
+ * java -cp &lt;classpath&gt; org.usfirst.frc.team1736.lib.Logging.DesktopTestLogFormats <br>
+ * Prints each failure, and exits with status 1 if there were any.
+ *
+ *
+ */
+public class DesktopTestLogFormats {
+
+    private static int failures = 0;
+    private static int checks = 0;
+
+    public static void main(String args[]) throws IOException {
+        File dir = Files.createTempDirectory("casserole_log_test").toFile();
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 1 - AsciiNumberFormatter");
+        testAsciiNumberFormatter();
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 2 - XorBlockCodec");
+        testXorBlockCodec();
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 3 - Compressed log file round trip");
+        testCompressedFile(dir);
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 4 - LogRecovery");
+        testRecovery(dir, LogFormat.CSV);
+        testRecovery(dir, LogFormat.BINARY_FLOAT64);
+        testRecovery(dir, LogFormat.COMPRESSED);
+        testRecoveryKeepsZeroRows(dir);
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        File[] leftovers = dir.listFiles();
+        if (leftovers != null) {
+            for (File f : leftovers) {
+                f.delete();
+            }
+        }
+        dir.delete();
+        System.out.println(checks + " checks, " + failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        checks++;
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // AsciiNumberFormatter
+    ////////////////////////////////////////////////////////////////////////
+    private static void testAsciiNumberFormatter() {
+        byte[] buf = new byte[AsciiNumberFormatter.MAX_CHARS];
+        Random rand = new Random(1736);
+
+        // Doubles: must match exact decimal rounding, to within the last place (the scaling
+        // multiply can land a hair either side of a rounding tie) or the double's own precision
+        for (int i = 0; i < 200000; i++) {
+            int decimals = rand.nextInt(10);
+            double value;
+            switch (i % 4) {
+                case 0:
+                    value = rand.nextGaussian() * 100;
+                    break;
+                case 1:
+                    value = (rand.nextInt(2000000) - 1000000) / 1000.0;
+                    break;
+                case 2:
+                    value = rand.nextGaussian() * 1e-7;
+                    break;
+                default:
+                    value = rand.nextGaussian() * 1e8;
+                    break;
+            }
+            int len = AsciiNumberFormatter.formatDouble(buf, 0, value, decimals);
+            String txt = new String(buf, 0, len, StandardCharsets.US_ASCII);
+            double expected = new BigDecimal(value).setScale(decimals, RoundingMode.HALF_UP).doubleValue();
+            double tolerance = Math.pow(10, -decimals) * 1.01 + 4 * Math.ulp(value);
+            double parsed;
+            try {
+                parsed = Double.parseDouble(txt);
+            } catch (NumberFormatException e) {
+                check(false, "formatDouble(" + value + ", " + decimals + ") wrote unparseable \"" + txt + "\"");
+                continue;
+            }
+            check(Math.abs(parsed - expected) <= tolerance,
+                    "formatDouble(" + value + ", " + decimals + ") gave " + txt + ", expected " + expected);
+            check(!txt.startsWith("-0") || txt.startsWith("-0."), "formatDouble wrote negative zero: " + txt);
+            check(!(txt.contains(".") && txt.endsWith("0")) && !txt.endsWith("."),
+                    "formatDouble left trailing zeros: " + txt);
+        }
+
+        // Full precision is exactly Double.toString(), so it always reads back as the same double
+        for (int i = 0; i < 100000; i++) {
+            double value = Double.longBitsToDouble(rand.nextLong());
+            int len = AsciiNumberFormatter.formatDouble(buf, 0, value, AsciiNumberFormatter.FULL_PRECISION);
+            String txt = new String(buf, 0, len, StandardCharsets.US_ASCII);
+            check(txt.equals(Double.toString(value)), "full precision formatDouble(" + value + ") gave " + txt);
+        }
+
+        // Specials are written the same as Double.toString()
+        double[] specials = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e300, -1e300};
+        for (double value : specials) {
+            int len = AsciiNumberFormatter.formatDouble(buf, 0, value, 6);
+            String txt = new String(buf, 0, len, StandardCharsets.US_ASCII);
+            check(txt.equals(Double.toString(value)), "formatDouble(" + value + ") gave " + txt);
+        }
+        int len = AsciiNumberFormatter.formatDouble(buf, 0, -1e-9, 6);
+        check(new String(buf, 0, len, StandardCharsets.US_ASCII).equals("0"), "tiny negative should be 0");
+
+        // Longs are exact
+        long[] longs = {0, 1, -1, 9, 10, Long.MAX_VALUE, Long.MIN_VALUE, 1234567890123L};
+        for (long value : longs) {
+            len = AsciiNumberFormatter.formatLong(buf, 0, value);
+            check(new String(buf, 0, len, StandardCharsets.US_ASCII).equals(Long.toString(value)),
+                    "formatLong(" + value + ")");
+        }
+        for (int i = 0; i < 100000; i++) {
+            long value = rand.nextLong() >> rand.nextInt(64);
+            len = AsciiNumberFormatter.formatLong(buf, 0, value);
+            check(new String(buf, 0, len, StandardCharsets.US_ASCII).equals(Long.toString(value)),
+                    "formatLong(" + value + ")");
+        }
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // XorBlockCodec
+    ////////////////////////////////////////////////////////////////////////
+    private static void testXorBlockCodec() {
+        Random rand = new Random(254);
+        BitStreamWriter out = new BitStreamWriter(1024);
+        BitStreamReader in = new BitStreamReader();
+
+        for (int trial = 0; trial < 500; trial++) {
+            int num_rows = 1 + rand.nextInt(300);
+            int num_cols = 1 + rand.nextInt(8);
+            double[][] cols = new double[num_cols][num_rows];
+            fillBlock(cols, num_rows, trial, rand);
+
+            out.reset();
+            XorBlockCodec.encodeBlock(cols, num_rows, out);
+            out.finish();
+            check(out.getLengthBytes() <= XorBlockCodec.maxEncodedBytes(num_cols, num_rows),
+                    "block of " + num_rows + "x" + num_cols + " bigger than maxEncodedBytes()");
+
+            double[][] decoded = new double[num_cols][num_rows];
+            in.reset(out.getBuffer(), out.getLengthBytes());
+            XorBlockCodec.decodeBlock(in, decoded, num_rows);
+            checkSameBits(cols, decoded, num_rows, "block trial " + trial);
+        }
+    }
+
+    /*
+     * Mix of the kinds of signals logs see, plus the values most likely to break bit twiddling.
+     */
+    private static void fillBlock(double[][] cols, int num_rows, int trial, Random rand) {
+        double period = (trial % 3 == 0) ? 0.02 : 0.02 + rand.nextDouble() * 1e-3;
+        for (int r = 0; r < num_rows; r++) {
+            // Whole microseconds with jitter on most trials, arbitrary doubles on the rest
+            cols[0][r] = (trial % 2 == 0) ? (1000000L * 100 + r * 20000L + rand.nextInt(50)) / 1e6 : r * period;
+        }
+        for (int c = 1; c < cols.length; c++) {
+            int kind = (trial + c) % 6;
+            for (int r = 0; r < num_rows; r++) {
+                switch (kind) {
+                    case 0:
+                        cols[c][r] = 12.5; // Constant
+                        break;
+                    case 1:
+                        cols[c][r] = Math.sin(r * 0.05) * 40; // Slowly changing
+                        break;
+                    case 2:
+                        cols[c][r] = Double.longBitsToDouble(rand.nextLong()); // Noise, any bits at all
+                        break;
+                    case 3:
+                        cols[c][r] = (r % 2 == 0) ? 0.0 : -0.0;
+                        break;
+                    case 4:
+                        double[] odd = {Double.NaN, Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY,
+                                Double.MIN_VALUE, Double.MAX_VALUE, -1.0};
+                        cols[c][r] = odd[rand.nextInt(odd.length)];
+                        break;
+                    default:
+                        cols[c][r] = rand.nextBoolean() ? 1.0 : 0.0; // Boolean
+                        break;
+                }
+            }
+        }
+    }
+
+    private static void checkSameBits(double[][] expected, double[][] actual, int num_rows, String what) {
+        for (int c = 0; c < expected.length; c++) {
+            for (int r = 0; r < num_rows; r++) {
+                if (Double.doubleToRawLongBits(expected[c][r]) != Double.doubleToRawLongBits(actual[c][r])) {
+                    check(false, what + ": col " + c + " row " + r + " wrote " + expected[c][r] + " read "
+                            + actual[c][r]);
+                    return;
+                }
+            }
+        }
+        check(true, what);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // Whole files
+    ////////////////////////////////////////////////////////////////////////
+    private static void testCompressedFile(File dir) throws IOException {
+        Random rand = new Random(1114);
+        int num_rows = 5000; // Many blocks, with a partial one at the end
+        double[][] rows = new double[num_rows][3];
+        for (int r = 0; r < num_rows; r++) {
+            rows[r][0] = r * 0.02;
+            rows[r][1] = Math.cos(r * 0.01);
+            rows[r][2] = (r % 100 < 50) ? 0 : rand.nextGaussian();
+        }
+        File f = writeLog(dir, "roundtrip", LogFormat.COMPRESSED, rows);
+
+        LogReader reader = LogReader.open(f);
+        double[] row = new double[3];
+        int read = 0;
+        boolean same = true;
+        while (reader.readRow(row)) {
+            for (int c = 0; c < 3 && read < num_rows; c++) {
+                same &= Double.doubleToRawLongBits(row[c]) == Double.doubleToRawLongBits(rows[read][c]);
+            }
+            read++;
+        }
+        reader.close();
+        check(read == num_rows, "compressed file read " + read + " rows, wrote " + num_rows);
+        check(same, "compressed file values changed in the round trip");
+    }
+
+    /*
+     * Cut a log off partway through its last row (or block) and check recovery drops just that.
+     * Then add zero fill like a power cut can leave after the data, and check it all gets removed.
+     */
+    private static void testRecovery(File dir, LogFormat format) throws IOException {
+        int num_rows = 1000;
+        double[][] rows = new double[num_rows][2];
+        for (int r = 0; r < num_rows; r++) {
+            rows[r][0] = 0.5 + r * 0.02;
+            rows[r][1] = r % 7;
+        }
+        File f = writeLog(dir, "recover", format, rows);
+        int complete_rows = countRows(f, null);
+
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(f.length() - 5);
+        }
+        check(LogRecovery.recover(f) > 0, format + " recovery didn't trim a partial row");
+        check(LogRecovery.recover(f) == 0, format + " recovery isn't idempotent");
+
+        // Only the damaged last row (or block) may be lost, and what's left must read back as written
+        int left = countRows(f, rows);
+        int max_lost = (format == LogFormat.COMPRESSED) ? BinaryLogFormat.DEFAULT_ROWS_PER_BLOCK : 1;
+        check(left < complete_rows && left >= complete_rows - max_lost,
+                format + " recovery left " + left + " of " + complete_rows + " rows");
+
+        long good_len = f.length();
+        try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+            raf.setLength(good_len + 600);
+        }
+        long trimmed = LogRecovery.recover(f);
+        check(trimmed == 600, format + " recovery trimmed " + trimmed + " bytes of 600 zero fill");
+        check(countRows(f, rows) == left, format + " recovery of zero fill lost rows");
+    }
+
+    /*
+     * A log whose samples really are all zeros at time zero isn't zero fill. Keep it.
+     */
+    private static void testRecoveryKeepsZeroRows(File dir) throws IOException {
+        double[][] rows = new double[5][2];
+        File f = writeLog(dir, "zeros", LogFormat.BINARY_FLOAT64, rows);
+        check(LogRecovery.recover(f) == 0, "recovery dropped real all-zero rows");
+        check(countRows(f, rows) == rows.length, "all-zero log lost rows");
+    }
+
+    private static File writeLog(File dir, String name, LogFormat format, double[][] rows) {
+        String[] field_names = new String[rows[0].length];
+        String[] unit_names = new String[rows[0].length];
+        for (int c = 0; c < field_names.length; c++) {
+            field_names[c] = (c == 0) ? "Time" : "Field" + c;
+            unit_names[c] = (c == 0) ? "sec" : "";
+        }
+        LogService service = new LogService(dir.getPath());
+        LogStream stream = service.openStream(name, field_names, unit_names, format, rows.length + 1);
+        for (double[] row : rows) {
+            stream.logRow(row);
+        }
+        service.shutdown();
+        return new File(stream.getFileName());
+    }
+
+    /*
+     * Count the rows in a log, checking them against what was written if given.
+     */
+    private static int countRows(File f, double[][] expected) throws IOException {
+        LogReader reader = LogReader.open(f);
+        double[] row = new double[reader.getFieldCount()];
+        int n = 0;
+        while (reader.readRow(row)) {
+            if (expected != null && n < expected.length) {
+                for (int c = 0; c < row.length; c++) {
+                    if (Double.doubleToLongBits(row[c]) != Double.doubleToLongBits(expected[n][c])) {
+                        check(false, f.getName() + " row " + n + " col " + c + " read " + row[c] + ", wrote "
+                                + expected[n][c]);
+                        break;
+                    }
+                }
+            }
+            n++;
+        }
+        reader.close();
+        return n;
+    }
+
+}
@@ -0,0 +1,333 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+import java.util.Vector;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.DoubleSupplier;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * DESCRIPTION: <br>
+ * Airplane-style "black box" for the robot. Keeps the last few seconds of every registered signal
+ * in a preallocated circular buffer in memory, sampled every loop with no allocation and no file
+ * IO. When something goes wrong - an exception (via CrashTracker), a brownout, or a request from
+ * the web server - a background thread writes the buffer out to a .csv file, so there's full-rate
+ * data from right before the problem, even if normal logging was off. It is a static class, which
+ * needs no instantiation. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>During init, call addSignal() for each signal to record (the first should be time), and/or
+ * addCsvLoggerSignals() to record everything CsvLogger logs.</li>
+ * <li>Call start() once all signals are added.</li>
+ * <li>Call sample() once per loop, in every mode, including disabled.</li>
+ * <li>Optionally, call setBrownoutTrigger(true) to dump automatically when the RIO browns out.
+ * sample() only flags the dump; a waiting background thread copies and writes it, so the robot loop
+ * isn't slowed down right when the battery is sagging.</li>
+ * <li>Call triggerDump() whenever the last few seconds should be saved.</li>
+ * </ol>
+ * 
+ *
+ */
+public class FlightRecorder {
+
+    /** Default amount of history to keep, in seconds */
+    public static final double DEFAULT_HISTORY_S = 10.0;
+
+    static String output_dir = "/U/data_captures/"; // USB drive is mounted to /U on roboRIO
+
+    static Vector<String> signalNames = new Vector<String>();
+    static Vector<String> unitNames = new Vector<String>();
+    static Vector<DoubleSupplier> signalSamplers = new Vector<DoubleSupplier>();
+    static DoubleSupplier[] samplerArray = new DoubleSupplier[0];
+
+    // Ring of rows, flattened row-major: row r is ring[r*width ... r*width+width-1]
+    static double[] ring = null;
+    // Where the dump thread copies the ring to before writing it out, so sample() can keep going
+    static double[] snapshot = null;
+    static int depth = 0;
+    static int width = 0;
+    // Total rows ever sampled. Only written by sample(). Row n lives in ring slot n % depth.
+    static volatile long head = 0;
+    static volatile boolean recording = false;
+
+    static AtomicBoolean dump_in_progress = new AtomicBoolean(false);
+    static volatile boolean brownout_trigger = false;
+    static boolean was_browned_out = false;
+    // Brownout dumps are handed to this thread, so the robot loop never copies, formats or starts
+    // a thread right as the battery sags. -1 when no brownout dump is waiting.
+    static Thread brownout_dump_thread = null;
+    static volatile long brownout_dump_end = -1;
+    static volatile String last_dump_file = null;
+    static volatile int dump_count = 0;
+
+    /**
+     * Add a signal to record. Must be called before start().
+     * 
+     * @param name Name of the signal (becomes a column name in the dump)
+     * @param units Units of the signal
+     * @param source Supplier of the signal's present value. Called once per sample() - must be fast.
+     */
+    public static void addSignal(String name, String units, DoubleSupplier source) {
+        if (recording) {
+        	DriverStation.reportError("Error: cannot add flight recorder signal after start()", false);
+            return;
+        }
+        signalNames.add(name);
+        unitNames.add(units);
+        signalSamplers.add(source);
+    }
+
+    /**
+     * Record every field which has been added to CsvLogger so far. Must be called before start().
+     */
+    public static void addCsvLoggerSignals() {
+        for (int i = 0; i < CsvLogger.dataFieldNames.size(); i++) {
+            addSignal(CsvLogger.dataFieldNames.get(i), CsvLogger.unitNames.get(i), CsvLogger.fieldSamplers.get(i));
+        }
+    }
+
+    /**
+     * Allocate the buffer and start recording.
+     * 
+     * @param history_s How many seconds of history to keep
+     * @param loop_period_s How often sample() will be called, in seconds (ex: 0.02)
+     */
+    public static void start(double history_s, double loop_period_s) {
+        if (recording) {
+            return;
+        }
+        samplerArray = signalSamplers.toArray(new DoubleSupplier[signalSamplers.size()]);
+        width = samplerArray.length;
+        depth = Math.max(1, (int) Math.ceil(history_s / loop_period_s));
+        ring = new double[depth * width];
+        snapshot = new double[depth * width];
+        head = 0;
+
+        brownout_dump_thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                brownoutDumpLoop();
+            }
+        });
+        brownout_dump_thread.setName("CasseroleFlightRecorderBrownout");
+        brownout_dump_thread.setPriority(Thread.MIN_PRIORITY);
+        brownout_dump_thread.setDaemon(true);
+        brownout_dump_thread.start();
+
+        recording = true;
+    }
+
+    /**
+     * Record one row of every signal. Call once per loop.
+     */
+    public static void sample() {
+        if (!recording) {
+            return;
+        }
+        long h = head;
+        int base = (int) (h % depth) * width;
+        DoubleSupplier[] samplers = samplerArray;
+        for (int i = 0; i < samplers.length; i++) {
+            ring[base + i] = samplers[i].getAsDouble();
+        }
+        head = h + 1;
+
+        if (brownout_trigger) {
+            boolean browned_out = DriverStation.getInstance().isBrownedOut();
+            if (browned_out && !was_browned_out && dump_in_progress.compareAndSet(false, true)) {
+                // Just note where the dump ends and wake the dump thread - it does the rest
+                brownout_dump_end = head;
+                LockSupport.unpark(brownout_dump_thread);
+            }
+            was_browned_out = browned_out;
+        }
+    }
+
+    /**
+     * Select whether to automatically dump the buffer when the RIO reports a brownout.
+     */
+    public static void setBrownoutTrigger(boolean enable) {
+        brownout_trigger = enable;
+    }
+
+    /**
+     * Set the directory dumps are written to. Defaults to the USB drive's data_captures folder.
+     */
+    public static void setOutputDir(String dir) {
+        output_dir = dir.endsWith("/") ? dir : dir + "/";
+    }
+
+    /**
+     * Save the buffer's present contents to a file. The buffer is copied right away (a quick memory
+     * copy), then written out on a background thread, so this returns quickly and recording
+     * continues. Only one dump runs at
+     * a time. The dump thread keeps the JVM alive until the file is written, so a dump triggered by
+     * a crash still makes it to disk.
+     * 
+     * @param reason Short description, used in the file name (ex: "crash")
+     * @return Full path of the file which will be written, or null if not recording or a dump is
+     *         already in progress.
+     */
+    public static String triggerDump(String reason) {
+        if (!recording || !dump_in_progress.compareAndSet(false, true)) {
+            return null;
+        }
+        final String file_name = getDumpFileName(reason);
+
+        // Grab the rows now, on the caller's thread, so they're as close to the trigger as possible
+        final long end = head;
+        final long start = copyToSnapshot(end);
+
+        Thread dumpThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writeDump(file_name, start, end);
+            }
+        });
+        dumpThread.setName("CasseroleFlightRecorderDump");
+        dumpThread.setPriority(Thread.MIN_PRIORITY);
+        dumpThread.setDaemon(false);
+        dumpThread.start();
+        return file_name;
+    }
+
+    /*
+     * Body of the brownout dump thread. sample() only records where the dump ends; the copy (which
+     * drops any rows lapped in the meantime) and the file naming happen here.
+     */
+    private static void brownoutDumpLoop() {
+        while (true) {
+            long end = brownout_dump_end;
+            if (end < 0) {
+                LockSupport.park();
+                continue;
+            }
+            brownout_dump_end = -1;
+            long start = copyToSnapshot(end);
+            String file_name = getDumpFileName("brownout");
+            writeDump(file_name, start, end);
+        }
+    }
+
+    /*
+     * Write out the snapshot and mark the dump finished. Dump thread only.
+     */
+    private static void writeDump(String file_name, long start, long end) {
+        try {
+            writeSnapshot(file_name, start, end);
+            last_dump_file = file_name;
+            dump_count++;
+            System.out.println("Info: Flight recorder: wrote " + (end - start) + " rows to " + file_name);
+        } catch (IOException e) {
+        	DriverStation.reportError("Error writing flight recorder dump: " + e.getMessage(), false);
+        } finally {
+            dump_in_progress.set(false);
+        }
+    }
+
+    private static String getDumpFileName(String reason) {
+        return output_dir + "blackbox_" + getDateTimeString() + "_" + reason.replaceAll("[^A-Za-z0-9]", "") + ".csv";
+    }
+
+    /*
+     * Copy rows up to (not including) end out of the ring. Returns the first row number which made
+     * it across intact - sample() may have overwritten the oldest ones while we were copying.
+     */
+    private static long copyToSnapshot(long end) {
+        long start = Math.max(0, end - depth);
+        for (long r = start; r < end; r++) {
+            int src = (int) (r % depth) * width;
+            System.arraycopy(ring, src, snapshot, (int) (r - start) * width, width);
+        }
+        // Row r's slot is reused once row r+depth starts being written (when head reaches r+depth)
+        // If the dump thread fell a whole buffer behind, nothing is left and the dump comes out empty
+        long first_intact = head - depth + 1;
+        return Math.min(end, Math.max(start, first_intact));
+    }
+
+    private static void writeSnapshot(String file_name, long start, long end) throws IOException {
+        new File(output_dir).mkdirs();
+        long copy_start = Math.max(0, end - depth);
+        LogRowWriter writer = LogFormat.CSV.openWriter(file_name, null, null);
+        try {
+            writer.writeHeader(signalNames.toArray(new String[width]), unitNames.toArray(new String[width]));
+            double[] row = new double[width];
+            for (long r = start; r < end; r++) {
+                System.arraycopy(snapshot, (int) (r - copy_start) * width, row, 0, width);
+                writer.writeRow(row, r);
+            }
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return true once start() has been called
+     */
+    public static boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * @return true while a dump is being written
+     */
+    public static boolean isDumpInProgress() {
+        return dump_in_progress.get();
+    }
+
+    /**
+     * @return Full path of the most recently completed dump, or null if there hasn't been one
+     */
+    public static String getLastDumpFileName() {
+        return last_dump_file;
+    }
+
+    /**
+     * @return Number of dumps completed since startup
+     */
+    public static int getDumpCount() {
+        return dump_count;
+    }
+
+    /**
+     * @return Number of rows the buffer holds
+     */
+    public static int getHistoryRows() {
+        return depth;
+    }
+
+    private static String getDateTimeString() {
+        DateFormat df = new SimpleDateFormat("dd-MMM-yyyy_hh.mm.ssa");
+        df.setTimeZone(TimeZone.getTimeZone("US/Central"));
+        return df.format(new Date());
+    }
+
+}
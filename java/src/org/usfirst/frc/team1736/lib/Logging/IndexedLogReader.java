@@ -0,0 +1,386 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+
+/**
+ * DESCRIPTION: <br>
+ * Fast random access to a log which has a time index sidecar (see CsvLogger.setTimeIndexInterval()).
+ * The index alone answers questions like "what time span does this log cover" or "did battery
+ * voltage ever drop below 7V" without touching the log itself, and readWindow() jumps straight to
+ * the part of the log around a given time instead of reading it from the start. Works with .csv,
+ * .clog and .clogz logs. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Instantiate with the log file (not the index).</li>
+ * <li>Use getColumnIndex() to look up the columns of interest.</li>
+ * <li>Check the whole-file or per-segment min/max, and/or call readWindow() to get the rows in a
+ * time range.</li>
+ * <li>Call close().</li>
+ * </ol>
+ * 
+ *
+ */
+public class IndexedLogReader {
+
+    private final LogReader log;
+    private final String[] field_names;
+    private final int num_fields;
+    private int interval_rows;
+
+    // One of each per index entry (segment of the log)
+    private double[] seg_start_time;
+    private double[] seg_end_time;
+    private long[] seg_offset;
+    private int[] seg_skip;
+    private int[] seg_rows;
+    private long[] seg_first_row;
+    private double[][] seg_min; // [segment][field]
+    private double[][] seg_max;
+    private int num_segments;
+
+    /**
+     * Opens a log and loads its time index.
+     * 
+     * @param log_file Log to read. Its index must be next to it, named as getIndexFileFor() says.
+     * @throws IOException if the log or index can't be read, or they don't match
+     */
+    public IndexedLogReader(File log_file) throws IOException {
+        log = LogReader.open(log_file);
+        field_names = log.getFieldNames();
+        num_fields = field_names.length;
+        try {
+            loadIndex(getIndexFileFor(log_file), log_file.length());
+        } catch (IOException e) {
+            log.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @param log_file any log file
+     * @return the time index sidecar file which goes with it
+     */
+    public static File getIndexFileFor(File log_file) {
+        return new File(log_file.getPath() + BinaryLogFormat.INDEX_FILE_EXTENSION);
+    }
+
+    /**
+     * @param log_file any log file
+     * @return true if the log has a time index next to it
+     */
+    public static boolean hasIndex(File log_file) {
+        return getIndexFileFor(log_file).isFile();
+    }
+
+    private void loadIndex(File index_file, long log_len) throws IOException {
+        ByteBuffer data;
+        try (FileChannel ch = FileChannel.open(index_file.toPath(), StandardOpenOption.READ)) {
+            long size = ch.size();
+            if (size < BinaryLogFormat.INDEX_HEADER_LEN || size > Integer.MAX_VALUE) {
+                throw new IOException("Bad time index size " + size);
+            }
+            data = ByteBuffer.allocate((int) size);
+            while (data.hasRemaining()) {
+                if (ch.read(data) < 0) {
+                    break;
+                }
+            }
+            data.flip();
+        }
+        data.order(ByteOrder.LITTLE_ENDIAN);
+
+        for (int i = 0; i < BinaryLogFormat.MAGIC_INDEX.length; i++) {
+            if (data.get() != BinaryLogFormat.MAGIC_INDEX[i]) {
+                throw new IOException("Not a Casserole time index");
+            }
+        }
+        int version = data.getShort() & 0xFFFF;
+        if (version > BinaryLogFormat.VERSION) {
+            throw new IOException("Unsupported time index version " + version);
+        }
+        data.getShort(); // flags
+        int idx_fields = data.getInt();
+        interval_rows = data.getInt();
+        if (idx_fields != num_fields) {
+            throw new IOException("Time index has " + idx_fields + " fields, log has " + num_fields);
+        }
+
+        // A partial entry at the end (from a brownout) is ignored
+        int entry_len = BinaryLogFormat.INDEX_ENTRY_FIXED_LEN + num_fields * 16;
+        int max_segments = data.remaining() / entry_len;
+        seg_start_time = new double[max_segments];
+        seg_end_time = new double[max_segments];
+        seg_offset = new long[max_segments];
+        seg_skip = new int[max_segments];
+        seg_rows = new int[max_segments];
+        seg_first_row = new long[max_segments];
+        seg_min = new double[max_segments][num_fields];
+        seg_max = new double[max_segments][num_fields];
+
+        num_segments = 0;
+        for (int s = 0; s < max_segments; s++) {
+            seg_start_time[s] = data.getDouble();
+            seg_end_time[s] = data.getDouble();
+            seg_offset[s] = data.getLong();
+            seg_skip[s] = data.getInt();
+            seg_rows[s] = data.getInt();
+            seg_first_row[s] = data.getLong();
+            for (int f = 0; f < num_fields; f++) {
+                seg_min[s][f] = data.getDouble();
+                seg_max[s][f] = data.getDouble();
+            }
+            if (seg_offset[s] >= log_len) {
+                // Log was cut short (or recovered) - index points past its end
+                break;
+            }
+            num_segments++;
+        }
+    }
+
+    /**
+     * Read all rows with time (first field) between start_time and end_time, inclusive.
+     * 
+     * @param start_time Start of the window, in the same units as the log's time field
+     * @param end_time End of the window
+     * @param columns Which columns to return, in the order wanted. Include column 0 to get time.
+     * @return One array per row, holding the requested columns' values in the order requested
+     */
+    public ArrayList<double[]> readWindow(double start_time, double end_time, int... columns) throws IOException {
+        ArrayList<double[]> rows = new ArrayList<double[]>();
+        if (!seekToTime(start_time, columns)) {
+            return rows;
+        }
+
+        double[] row = new double[num_fields];
+        while (log.readRow(row)) {
+            double time = row[0];
+            if (time > end_time) {
+                break;
+            }
+            if (time >= start_time) {
+                double[] out = new double[columns.length];
+                for (int i = 0; i < columns.length; i++) {
+                    out[i] = row[columns[i]];
+                }
+                rows.add(out);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * Position the log so readRow() starts at the beginning of the index segment holding the given
+     * time. Rows before start_time may still come back - callers streaming a window skip them (and
+     * stop once past the end) themselves. Useful for working through a big window without holding
+     * it all in memory like readWindow() does.
+     * 
+     * @param start_time Time to start reading near
+     * @param columns Columns which will be used. Others may read back as NaN.
+     * @return false if there's nothing indexed to seek to. A log still being written has no index
+     *         entries until its first full interval of rows, so read it from the start instead.
+     */
+    public boolean seekToTime(double start_time, int... columns) throws IOException {
+        if (num_segments == 0 || num_fields == 0) {
+            return false;
+        }
+
+        if (log instanceof CsvLogReader) {
+            boolean[] needed = new boolean[num_fields];
+            needed[0] = true;
+            for (int c : columns) {
+                needed[c] = true;
+            }
+            ((CsvLogReader) log).setColumnsNeeded(needed);
+        }
+
+        int seg = findSegment(start_time);
+        log.seek(seg_offset[seg]);
+        double[] row = new double[num_fields];
+        for (int i = 0; i < seg_skip[seg]; i++) {
+            if (!log.readRow(row)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Read the next row, after seekToTime().
+     * 
+     * @param row_out array to fill. Must be at least getFieldNames().length long.
+     * @return true if a row was read, false at the end of the log
+     */
+    public boolean readRow(double[] row_out) throws IOException {
+        return log.readRow(row_out);
+    }
+
+    /**
+     * @param time Time to look for
+     * @return Last segment starting at or before the given time (or the first segment, if the time
+     *         is before the start of the log)
+     */
+    public int findSegment(double time) {
+        int lo = 0;
+        int hi = num_segments - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (seg_start_time[mid] <= time) {
+                lo = mid;
+            } else {
+                hi = mid - 1;
+            }
+        }
+        return lo;
+    }
+
+    /**
+     * @param name Field name to look for
+     * @return Column index of the field, or -1 if the log has no such field
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < num_fields; i++) {
+            if (field_names[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return Names of all fields, in column order
+     */
+    public String[] getFieldNames() {
+        return field_names;
+    }
+
+    /**
+     * @return Units of all fields, in column order
+     */
+    public String[] getUnitNames() {
+        return log.getUnitNames();
+    }
+
+    /**
+     * @return Number of rows each index entry covers (the last one may cover fewer)
+     */
+    public int getIndexIntervalRows() {
+        return interval_rows;
+    }
+
+    /**
+     * @return Number of index entries (segments)
+     */
+    public int getSegmentCount() {
+        return num_segments;
+    }
+
+    public double getSegmentStartTime(int seg) {
+        return seg_start_time[seg];
+    }
+
+    public double getSegmentEndTime(int seg) {
+        return seg_end_time[seg];
+    }
+
+    public int getSegmentRowCount(int seg) {
+        return seg_rows[seg];
+    }
+
+    /**
+     * @return Row number (counting from the first row of the file) the segment starts at
+     */
+    public long getSegmentFirstRow(int seg) {
+        return seg_first_row[seg];
+    }
+
+    /**
+     * @return Smallest value of the column over the segment, or NaN if it had no values
+     */
+    public double getSegmentMin(int seg, int column) {
+        return seg_min[seg][column];
+    }
+
+    /**
+     * @return Largest value of the column over the segment, or NaN if it had no values
+     */
+    public double getSegmentMax(int seg, int column) {
+        return seg_max[seg][column];
+    }
+
+    /**
+     * @return Smallest value of the column over the whole log, or NaN if it had no values
+     */
+    public double getMin(int column) {
+        double min = Double.NaN;
+        for (int s = 0; s < num_segments; s++) {
+            double v = seg_min[s][column];
+            if (!(v >= min)) {
+                min = (v == v) ? v : min;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * @return Largest value of the column over the whole log, or NaN if it had no values
+     */
+    public double getMax(int column) {
+        double max = Double.NaN;
+        for (int s = 0; s < num_segments; s++) {
+            double v = seg_max[s][column];
+            if (!(v <= max)) {
+                max = (v == v) ? v : max;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * @return Time of the first row in the log, or NaN if the index is empty
+     */
+    public double getStartTime() {
+        return num_segments > 0 ? seg_start_time[0] : Double.NaN;
+    }
+
+    /**
+     * @return Time of the last indexed row in the log, or NaN if the index is empty
+     */
+    public double getEndTime() {
+        return num_segments > 0 ? seg_end_time[num_segments - 1] : Double.NaN;
+    }
+
+    /**
+     * Close the underlying log file
+     */
+    public void close() throws IOException {
+        log.close();
+    }
+
+}
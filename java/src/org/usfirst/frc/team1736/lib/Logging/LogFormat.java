@@ -0,0 +1,73 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+
+/**
+ * Enumeration for describing on-robot log file formats. CSV is human readable and can be opened
+ * directly by Data Viewer 2 or excel. The binary formats are several times smaller and much cheaper
+ * to write on the RIO, but must be turned back into .csv files with BinaryLogConverter before
+ * viewing.
+ *
+ */
+public enum LogFormat {
+    /** Plain text, one line per row */
+    CSV,
+    /** Binary, fixed-width 8-byte doubles - lossless */
+    BINARY_FLOAT64,
+    /** Binary, fixed-width 4-byte floats - half the size, ~7 significant digits */
+    BINARY_FLOAT32,
+    /** Binary, delta/XOR compressed blocks - lossless, and usually much smaller than the others */
+    COMPRESSED;
+
+    /**
+     * @return File extension (including the dot) used for logs in this format
+     */
+    public String getFileExtension() {
+        switch (this) {
+            case CSV:
+                return ".csv";
+            case COMPRESSED:
+                return BinaryLogFormat.COMPRESSED_FILE_EXTENSION;
+            default:
+                return BinaryLogFormat.FILE_EXTENSION;
+        }
+    }
+
+    /*
+     * Create (or overwrite, or for CSV append to) a log file in this format.
+     * rate_divisors and field_decimals only apply to CSV, and may be null.
+     */
+    LogRowWriter openWriter(String file_name, int[] rate_divisors, int[] field_decimals) throws IOException {
+        switch (this) {
+            case BINARY_FLOAT64:
+                return new BinaryLogWriter(file_name, false);
+            case BINARY_FLOAT32:
+                return new BinaryLogWriter(file_name, true);
+            case COMPRESSED:
+                return new CompressedLogWriter(file_name, BinaryLogFormat.DEFAULT_ROWS_PER_BLOCK);
+            case CSV:
+            default:
+                return new CsvRowWriter(file_name, rate_divisors, field_decimals);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Wraps another LogRowWriter and writes a time index sidecar file (see BinaryLogFormat) alongside
+ * it. Every so many rows, an entry is added recording where those rows start in the log file, the
+ * range of times they cover, and the min and max of every field over them. IndexedLogReader uses
+ * this to jump straight to a time window without reading the whole log. <br>
+ * The first field is taken to be time.
+ *
+ */
+class LogIndexWriter implements LogRowWriter {
+
+    private static final int BUFFER_SIZE_BYTES = 16384;
+
+    private final LogRowWriter log;
+    private final FileChannel channel;
+    private final int interval_rows;
+    private ByteBuffer buffer;
+    private int entry_len;
+
+    // The run of rows the next entry will describe
+    private double[] run_min;
+    private double[] run_max;
+    private double run_start_time;
+    private double run_end_time;
+    private long run_offset;
+    private int run_skip;
+    private int run_rows = 0;
+    private long run_first_row;
+    private long rows_written = 0;
+
+    /**
+     * Creates (or overwrites) the index file.
+     * 
+     * @param log_in Writer for the log file being indexed. All calls are passed through to it.
+     * @param index_file_name full path to the index file to open
+     * @param interval_rows_in Number of rows per index entry
+     */
+    LogIndexWriter(LogRowWriter log_in, String index_file_name, int interval_rows_in) throws IOException {
+        log = log_in;
+        interval_rows = Math.max(1, interval_rows_in);
+        channel = FileChannel.open(Paths.get(index_file_name), StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    @Override
+    public void writeHeader(String[] field_names, String[] unit_names) throws IOException {
+        log.writeHeader(field_names, unit_names);
+
+        int num_fields = field_names.length;
+        entry_len = BinaryLogFormat.INDEX_ENTRY_FIXED_LEN + num_fields * 16;
+        buffer = ByteBuffer.allocateDirect(Math.max(BUFFER_SIZE_BYTES, entry_len));
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        run_min = new double[num_fields];
+        run_max = new double[num_fields];
+
+        buffer.put(BinaryLogFormat.MAGIC_INDEX);
+        buffer.putShort((short) BinaryLogFormat.VERSION);
+        buffer.putShort((short) 0);
+        buffer.putInt(num_fields);
+        buffer.putInt(interval_rows);
+    }
+
+    @Override
+    public void writeRow(double[] row, long row_index) throws IOException {
+        if (run_rows == 0) {
+            // Where the reader has to go to find this row - must ask before the row is written
+            run_offset = log.getSeekOffset();
+            run_skip = log.getSeekSkipRows();
+            run_first_row = rows_written;
+            run_start_time = row.length > 0 ? row[0] : 0;
+            for (int i = 0; i < row.length; i++) {
+                run_min[i] = Double.NaN;
+                run_max[i] = Double.NaN;
+            }
+        }
+
+        log.writeRow(row, row_index);
+
+        for (int i = 0; i < row.length; i++) {
+            double val = row[i];
+            // NaN compares false both ways, so the first real value always wins
+            if (!(val >= run_min[i])) {
+                if (val == val) {
+                    run_min[i] = val;
+                }
+            }
+            if (!(val <= run_max[i])) {
+                if (val == val) {
+                    run_max[i] = val;
+                }
+            }
+        }
+        run_end_time = row.length > 0 ? row[0] : 0;
+        run_rows++;
+        rows_written++;
+
+        if (run_rows >= interval_rows) {
+            writeEntry();
+        }
+    }
+
+    /*
+     * Put an entry for the present run of rows in the buffer
+     */
+    private void writeEntry() throws IOException {
+        if (run_rows == 0) {
+            return;
+        }
+        if (buffer.remaining() < entry_len) {
+            drainBuffer();
+        }
+        buffer.putDouble(run_start_time);
+        buffer.putDouble(run_end_time);
+        buffer.putLong(run_offset);
+        buffer.putInt(run_skip);
+        buffer.putInt(run_rows);
+        buffer.putLong(run_first_row);
+        for (int i = 0; i < run_min.length; i++) {
+            buffer.putDouble(run_min[i]);
+            buffer.putDouble(run_max[i]);
+        }
+        run_rows = 0;
+    }
+
+    private void drainBuffer() throws IOException {
+        if (buffer == null) {
+            return;
+        }
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void flush() throws IOException {
+        // Only whole runs get entries. A partial run is held back until it fills up or the file closes.
+        log.flush();
+        drainBuffer();
+    }
+
+    @Override
+    public void sync() throws IOException {
+        log.sync();
+        drainBuffer();
+        channel.force(false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            log.close();
+        } finally {
+            try {
+                if (buffer != null) {
+                    writeEntry();
+                    drainBuffer();
+                }
+            } finally {
+                channel.close();
+            }
+        }
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return log.getBytesWritten();
+    }
+
+    @Override
+    public long getSeekOffset() {
+        return log.getSeekOffset();
+    }
+
+    @Override
+    public int getSeekSkipRows() {
+        return log.getSeekSkipRows();
+    }
+
+}
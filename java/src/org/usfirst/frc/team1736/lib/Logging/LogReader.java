@@ -0,0 +1,96 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DESCRIPTION: <br>
+ * Common interface for reading recorded logs back one row at a time, regardless of which on-disk
+ * format they were written in. Use LogReader.open() to get the right reader for a file. <br>
+ *
+ */
+public interface LogReader {
+
+    /**
+     * Read the next complete row from the file.
+     * 
+     * @param row_out array to fill with values. Must be at least getFieldCount() long.
+     * @return true if a row was read, false at end of file (or at the end of the last intact
+     *         section of a damaged file)
+     */
+    boolean readRow(double[] row_out) throws IOException;
+
+    /**
+     * @return Names of all fields, in column order
+     */
+    String[] getFieldNames();
+
+    /**
+     * @return Units of all fields, in column order
+     */
+    String[] getUnitNames();
+
+    /**
+     * @return Number of fields (columns) in each row
+     */
+    int getFieldCount();
+
+    /**
+     * Jump to a spot in the file, so the next readRow() starts from there. Only offsets recorded by
+     * the writer (ex: in a time index) are meaningful; anything else gives garbage.
+     * 
+     * @param offset Offset from the start of the file, in bytes
+     */
+    void seek(long offset) throws IOException;
+
+    /**
+     * Close the underlying file
+     */
+    void close() throws IOException;
+
+    /**
+     * Open a log file with the reader that matches its format.
+     * 
+     * @param file Log file to read
+     * @return reader for the file
+     * @throws IOException if the file can't be read or is not a recognized log format
+     */
+    static LogReader open(File file) throws IOException {
+        boolean compressed;
+        boolean binary;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            compressed = BinaryLogHeader.hasMagic(ch, BinaryLogFormat.MAGIC_COMPRESSED);
+            binary = BinaryLogHeader.hasMagic(ch, BinaryLogFormat.MAGIC);
+        }
+        if (compressed) {
+            return new CompressedLogReader(file);
+        } else if (binary) {
+            return new BinaryLogReader(file);
+        } else {
+            return new CsvLogReader(file);
+        }
+    }
+
+}
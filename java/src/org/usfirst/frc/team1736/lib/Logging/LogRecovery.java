@@ -0,0 +1,261 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * DESCRIPTION: <br>
+ * Cleans up log files left behind by a brownout, power cut, or crash. Whatever was in the middle of
+ * being written when the power went out is trimmed off, leaving the file ending on the last
+ * complete row (for .csv and .clog files) or the last complete, CRC-checked block (for .clogz
+ * files). Trailing zero-filled rows, which some filesystems leave after a power loss, are removed
+ * from .clog files too, as long as the log's time had already moved past zero (so they can't be
+ * real samples). Only depends on the standard Java libraries, so it can be run on the robot at startup or on
+ * any laptop. <br>
+ * <br>
+ * USAGE: <br>
+ * java -cp &lt;classpath&gt; org.usfirst.frc.team1736.lib.Logging.LogRecovery &lt;file or
+ * directory&gt; ... <br>
+ * Or, from robot code, call recoverDirectory() during robot init, before any new log is opened.
+ * 
+ *
+ */
+public class LogRecovery {
+
+    private static final int SCAN_CHUNK_BYTES = 4096;
+
+    /**
+     * Recover each log given on the command line.
+     * 
+     * @param args list of files or directories to recover
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.out.println("Usage: LogRecovery <file or directory> ...");
+            return;
+        }
+
+        int errors = 0;
+        for (String arg : args) {
+            File in = new File(arg);
+            if (in.isDirectory()) {
+                if (recoverDirectory(in) < 0) {
+                    errors++;
+                }
+            } else if (recoverAndReport(in) < 0) {
+                errors++;
+            }
+        }
+        if (errors > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Recover every log file in a directory. Files which are already clean are left alone.
+     * 
+     * @param dir Directory to scan (ex: "/U/data_captures/")
+     * @return Total number of bytes trimmed, or -1 if any file could not be recovered.
+     */
+    public static long recoverDirectory(File dir) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return 0;
+        }
+        long total = 0;
+        boolean errors = false;
+        for (File f : files) {
+            if (!isRecoverable(f)) {
+                continue;
+            }
+            long trimmed = recoverAndReport(f);
+            if (trimmed < 0) {
+                errors = true;
+            } else {
+                total += trimmed;
+            }
+        }
+        return errors ? -1 : total;
+    }
+
+    private static long recoverAndReport(File f) {
+        try {
+            long trimmed = recover(f);
+            if (trimmed > 0) {
+                System.out.println("Info: Log recovery: trimmed " + trimmed + " bytes of partial data from " + f.getName());
+            }
+            return trimmed;
+        } catch (IOException e) {
+            System.out.println("ERROR: Log recovery: could not recover " + f.getName() + ": " + e.getMessage());
+            return -1;
+        }
+    }
+
+    /**
+     * @param f any file
+     * @return true if the file name looks like a log this class knows how to recover
+     */
+    public static boolean isRecoverable(File f) {
+        String name = f.getName();
+        return f.isFile() && (name.endsWith(".csv") || name.endsWith(BinaryLogFormat.FILE_EXTENSION)
+                || name.endsWith(BinaryLogFormat.COMPRESSED_FILE_EXTENSION));
+    }
+
+    /**
+     * Truncate one log file to its last complete row or block. Must not be called on a file which
+     * is still being written.
+     * 
+     * @param f Log file to recover
+     * @return Number of bytes trimmed off the end (0 if the file was already clean)
+     * @throws IOException if the file can't be read, or doesn't look like a log
+     */
+    public static long recover(File f) throws IOException {
+        long orig_len = f.length();
+        long good_len;
+        String name = f.getName();
+        if (name.endsWith(BinaryLogFormat.COMPRESSED_FILE_EXTENSION)) {
+            good_len = findCompressedEnd(f);
+        } else if (name.endsWith(BinaryLogFormat.FILE_EXTENSION)) {
+            good_len = findBinaryEnd(f);
+        } else {
+            good_len = findCsvEnd(f);
+        }
+
+        if (good_len < orig_len) {
+            try (RandomAccessFile raf = new RandomAccessFile(f, "rw")) {
+                raf.setLength(good_len);
+            }
+        }
+        return orig_len - good_len;
+    }
+
+    /*
+     * A complete csv row ends in a newline. Anything after the last one is partial (or zero fill).
+     */
+    private static long findCsvEnd(File f) throws IOException {
+        try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(SCAN_CHUNK_BYTES);
+            long end = ch.size();
+            while (end > 0) {
+                long start = Math.max(0, end - SCAN_CHUNK_BYTES);
+                buf.clear();
+                buf.limit((int) (end - start));
+                readFullyAt(ch, buf, start);
+                for (int i = buf.limit() - 1; i >= 0; i--) {
+                    if (buf.get(i) == '\n') {
+                        return start + i + 1;
+                    }
+                }
+                end = start;
+            }
+            return 0;
+        }
+    }
+
+    /*
+     * Fixed-width rows: drop any partial row, then any trailing rows which are entirely zero bytes
+     * (space the filesystem allocated but the data never made it into). A row of all zeros is also
+     * a perfectly good sample at time zero though, so zero rows are only dropped when they follow a
+     * row with a later time - time never runs backward in a real log.
+     */
+    private static long findBinaryEnd(File f) throws IOException {
+        BinaryLogReader reader = new BinaryLogReader(f);
+        try {
+            int header_len = reader.getHeaderLengthBytes();
+            int row_size = reader.getRowSizeBytes();
+            if (row_size == 0) {
+                return header_len;
+            }
+
+            long num_rows;
+            long data_rows;
+            try (FileChannel ch = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+                num_rows = Math.max(0, (ch.size() - header_len) / row_size);
+                data_rows = num_rows;
+                ByteBuffer row = ByteBuffer.allocate(row_size);
+                while (data_rows > 0) {
+                    row.clear();
+                    readFullyAt(ch, row, header_len + (data_rows - 1) * row_size);
+                    if (!isAllZero(row)) {
+                        break;
+                    }
+                    data_rows--;
+                }
+            }
+            if (data_rows == num_rows || data_rows == 0) {
+                // Nothing zeroed at the end, or nothing but zeros - keep every whole row
+                return header_len + num_rows * row_size;
+            }
+
+            double[] last_row = new double[reader.getFieldCount()];
+            reader.seek(header_len + (data_rows - 1) * row_size);
+            if (reader.readRow(last_row) && last_row[0] > 0) {
+                return header_len + data_rows * row_size;
+            }
+            return header_len + num_rows * row_size;
+        } finally {
+            reader.close();
+        }
+    }
+
+    /*
+     * The reader already stops at the first truncated or corrupt block. Read everything and ask it
+     * where that was.
+     */
+    private static long findCompressedEnd(File f) throws IOException {
+        CompressedLogReader reader = new CompressedLogReader(f);
+        try {
+            double[] row = new double[reader.getFieldCount()];
+            while (reader.readRow(row)) {
+                // Just reading to the end
+            }
+            return reader.getGoodDataEnd();
+        } finally {
+            reader.close();
+        }
+    }
+
+    private static void readFullyAt(FileChannel ch, ByteBuffer dst, long pos) throws IOException {
+        while (dst.hasRemaining()) {
+            int n = ch.read(dst, pos);
+            if (n < 0) {
+                throw new IOException("Unexpected end of file");
+            }
+            pos += n;
+        }
+    }
+
+    private static boolean isAllZero(ByteBuffer buf) {
+        for (int i = 0; i < buf.limit(); i++) {
+            if (buf.get(i) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,302 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.GZIPOutputStream;
+
+import org.usfirst.frc.team1736.lib.WebServer.CassesroleWebStates;
+
+/**
+ * DESCRIPTION: <br>
+ * Keeps the log directory on the USB drive from filling up over a competition weekend. A slow,
+ * low-priority background thread periodically looks over the log files, optionally gzips closed
+ * .csv logs, and deletes the oldest logs whenever the total size goes over budget or free space
+ * gets too low. The file CsvLogger is presently writing (and anything modified very recently) is
+ * never touched. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Instantiate Class during robot init. This starts the background thread.</li>
+ * <li>Optionally, call setPublishToWebStates(true) to show disk and segment metrics on the web
+ * server state page.</li>
+ * <li>Call getters to read the most recent metrics.</li>
+ * </ol>
+ * 
+ *
+ */
+public class LogRetentionManager {
+
+    /** Rate of checking the log directory in milliseconds. */
+    public static final int UPDATE_RATE_MS = 10000;
+
+    /** Files modified more recently than this are assumed to still be open by someone */
+    static final long ACTIVE_FILE_GRACE_MS = 60000;
+
+    static final String[] LOG_EXTENSIONS = {".csv", BinaryLogFormat.FILE_EXTENSION,
+            BinaryLogFormat.COMPRESSED_FILE_EXTENSION, ".csv.gz"};
+
+    private final File log_dir;
+    private final long max_total_bytes;
+    private final long min_free_bytes;
+    private final boolean compress_closed_csv;
+
+    private volatile boolean publish_to_web_states = false;
+
+    // Metrics, updated by the background thread
+    private volatile long free_space_bytes = -1;
+    private volatile long total_log_bytes = 0;
+    private volatile int log_file_count = 0;
+    private volatile int deleted_file_count = 0;
+    private volatile int compressed_file_count = 0;
+
+    /**
+     * Constructor. Starts a slow background thread to police the log directory.
+     * 
+     * @param log_dir_in Directory the logs are written into (ex: "/U/data_captures/")
+     * @param max_total_bytes_in Delete the oldest logs once all of them together are bigger than
+     *        this. 0 for no limit.
+     * @param min_free_bytes_in Delete the oldest logs while the drive has less than this much free
+     *        space. 0 for no limit.
+     * @param compress_closed_csv_in true to gzip .csv logs once they're closed. Text logs usually
+     *        shrink 4-5x.
+     */
+    public LogRetentionManager(String log_dir_in, long max_total_bytes_in, long min_free_bytes_in,
+            boolean compress_closed_csv_in) {
+        log_dir = new File(log_dir_in);
+        max_total_bytes = max_total_bytes_in;
+        min_free_bytes = min_free_bytes_in;
+        compress_closed_csv = compress_closed_csv_in;
+
+        Thread retentionThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    while (true) {
+                        periodicUpdate();
+                        Thread.sleep(UPDATE_RATE_MS);
+                    }
+                } catch (InterruptedException e) {
+                    // Asked to stop
+                }
+            }
+        });
+
+        // Set up thread properties and start it off
+        retentionThread.setName("CasseroleLogRetentionManager");
+        retentionThread.setPriority(Thread.MIN_PRIORITY);
+        retentionThread.setDaemon(true);
+        retentionThread.start();
+    }
+
+    /**
+     * Select whether to put disk and segment metrics on the web server state page each update.
+     */
+    public void setPublishToWebStates(boolean publish) {
+        publish_to_web_states = publish;
+    }
+
+    /*
+     * One pass over the log directory: compress, then delete until within budget.
+     */
+    private void periodicUpdate() {
+        File[] files = listLogFiles();
+
+        if (compress_closed_csv) {
+            for (File f : files) {
+                if (f.getName().endsWith(".csv") && isClosed(f)) {
+                    compress(f);
+                }
+            }
+            files = listLogFiles();
+        }
+
+        // Oldest first
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+
+        long total = 0;
+        for (File f : files) {
+            total += f.length();
+        }
+
+        int count = files.length;
+        for (File f : files) {
+            boolean over_budget = (max_total_bytes > 0 && total > max_total_bytes)
+                    || (min_free_bytes > 0 && log_dir.getUsableSpace() < min_free_bytes);
+            if (!over_budget) {
+                break;
+            }
+            if (!isClosed(f)) {
+                continue;
+            }
+            long len = f.length();
+            if (f.delete()) {
+                deleteIndexFor(f);
+                System.out.println("Info: Log retention: deleted old log " + f.getName());
+                total -= len;
+                count--;
+                deleted_file_count++;
+            }
+        }
+
+        total_log_bytes = total;
+        log_file_count = count;
+        free_space_bytes = log_dir.getUsableSpace();
+
+        if (publish_to_web_states) {
+            CassesroleWebStates.putDouble("Log Free Space (MB)", getFreeSpaceMB());
+            CassesroleWebStates.putDouble("Log Total Size (MB)", total_log_bytes / 1048576.0);
+            CassesroleWebStates.putInteger("Log File Count", log_file_count);
+            CassesroleWebStates.putInteger("Log Segment", CsvLogger.getSegmentIndex());
+            CassesroleWebStates.putDouble("Log Segment Size (MB)", CsvLogger.getSegmentBytes() / 1048576.0);
+        }
+    }
+
+    private static void deleteIndexFor(File log) {
+        File index = IndexedLogReader.getIndexFileFor(log);
+        if (index.isFile()) {
+            index.delete();
+        }
+    }
+
+    private File[] listLogFiles() {
+        File[] files = log_dir.listFiles();
+        if (files == null) {
+            return new File[0];
+        }
+        int n = 0;
+        for (File f : files) {
+            if (f.isFile() && isLogFile(f)) {
+                files[n++] = f;
+            }
+        }
+        return Arrays.copyOf(files, n);
+    }
+
+    private static boolean isLogFile(File f) {
+        for (String ext : LOG_EXTENSIONS) {
+            if (f.getName().endsWith(ext)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /*
+     * A file is safe to touch if no logger is writing it and it hasn't been changed recently.
+     */
+    private static boolean isClosed(File f) {
+        String active = CsvLogger.getActiveLogFileName();
+        if (active != null && new File(active).getAbsoluteFile().equals(f.getAbsoluteFile())) {
+            return false;
+        }
+        if (LogService.isFileOpen(f)) {
+            return false;
+        }
+        return System.currentTimeMillis() - f.lastModified() > ACTIVE_FILE_GRACE_MS;
+    }
+
+    /*
+     * gzip a closed .csv log in place, keeping its modification time for age ordering.
+     */
+    private void compress(File f) {
+        File gz = new File(f.getPath() + ".gz");
+        byte[] buf = new byte[8192];
+        boolean success = false;
+        try (InputStream in = new FileInputStream(f); OutputStream out = new GZIPOutputStream(new FileOutputStream(gz))) {
+            int len;
+            while ((len = in.read(buf)) > 0) {
+                out.write(buf, 0, len);
+            }
+            success = true;
+        } catch (IOException e) {
+            System.out.println("WARNING: Log retention: could not compress " + f.getName() + ": " + e.getMessage());
+        }
+
+        if (success) {
+            gz.setLastModified(f.lastModified());
+            f.delete();
+            // Offsets in the time index are meaningless once the log is compressed
+            deleteIndexFor(f);
+            compressed_file_count++;
+        } else {
+            gz.delete();
+        }
+    }
+
+    /**
+     * @return Free space left on the log drive in bytes, or -1 before the first update.
+     */
+    public long getFreeSpaceBytes() {
+        return free_space_bytes;
+    }
+
+    /**
+     * @return Free space left on the log drive in megabytes, or -1 before the first update.
+     */
+    public double getFreeSpaceMB() {
+        if (free_space_bytes < 0) {
+            return -1;
+        }
+        return free_space_bytes / 1048576.0;
+    }
+
+    /**
+     * @return Total size of all log files in the directory, in bytes
+     */
+    public long getTotalLogBytes() {
+        return total_log_bytes;
+    }
+
+    /**
+     * @return Number of log files in the directory
+     */
+    public int getLogFileCount() {
+        return log_file_count;
+    }
+
+    /**
+     * @return Number of old logs deleted since startup
+     */
+    public int getDeletedFileCount() {
+        return deleted_file_count;
+    }
+
+    /**
+     * @return Number of closed .csv logs gzipped since startup
+     */
+    public int getCompressedFileCount() {
+        return compressed_file_count;
+    }
+
+}
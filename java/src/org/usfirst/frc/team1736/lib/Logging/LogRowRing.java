@@ -0,0 +1,151 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Fixed-size ring of log rows, shared between exactly one producer thread (the robot loop) and
+ * exactly one consumer thread (a background file writer). All row storage is allocated up front,
+ * so handing a row from the robot loop to the writer costs a handful of array stores and one
+ * volatile write. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Producer: call claimRow(). If it returns null, the ring is full and the row is dropped.
+ * Otherwise fill in the returned array and call publishRow() with an optional tag.</li>
+ * <li>Consumer: call peekRow(). If it returns non-null, read the row (and peekRowTag()) and call
+ * releaseRow().</li>
+ * </ol>
+ *
+ *
+ */
+class LogRowRing {
+
+    private final double[][] rows;
+    private final long[] tags;
+    private final int capacity;
+
+    // Index of the next row the producer will publish. Only written by the producer.
+    private volatile long head = 0;
+    // Index of the next row the consumer will read. Only written by the consumer.
+    private volatile long tail = 0;
+
+    // Statistics - only written by the producer
+    private volatile long droppedRows = 0;
+    private volatile int highWaterMark = 0;
+
+    /**
+     * Allocate all storage for the ring.
+     *
+     * @param depth Number of rows which may be queued before new rows get dropped.
+     * @param row_width Number of values in each row.
+     */
+    LogRowRing(int depth, int row_width) {
+        capacity = Math.max(1, depth);
+        rows = new double[capacity][row_width];
+        tags = new long[capacity];
+    }
+
+    /**
+     * Producer side. Get the next free row to fill in.
+     *
+     * @return row array to fill, or null if the consumer has fallen behind and the ring is full.
+     */
+    double[] claimRow() {
+        long h = head;
+        if (h - tail >= capacity) {
+            droppedRows++;
+            return null;
+        }
+        return rows[(int) (h % capacity)];
+    }
+
+    /**
+     * Producer side. Hands the most recently claimed row over to the consumer.
+     * 
+     * @param tag Extra number to pass along with the row (ex: which loop it was sampled on)
+     */
+    void publishRow(long tag) {
+        tags[(int) (head % capacity)] = tag;
+        long h = head + 1;
+        head = h;
+        int depth = (int) (h - tail);
+        if (depth > highWaterMark) {
+            highWaterMark = depth;
+        }
+    }
+
+    /**
+     * Consumer side. Look at the oldest unread row without removing it.
+     *
+     * @return oldest published row, or null if nothing is waiting.
+     */
+    double[] peekRow() {
+        long t = tail;
+        if (t == head) {
+            return null;
+        }
+        return rows[(int) (t % capacity)];
+    }
+
+    /**
+     * Consumer side. Get the tag which was published with the row returned by peekRow().
+     */
+    long peekRowTag() {
+        return tags[(int) (tail % capacity)];
+    }
+
+    /**
+     * Consumer side. Marks the row returned by peekRow() as read, freeing the slot for the producer.
+     */
+    void releaseRow() {
+        tail = tail + 1;
+    }
+
+    /**
+     * @return Number of rows published but not yet released by the consumer.
+     */
+    int getQueuedRowCount() {
+        return (int) (head - tail);
+    }
+
+    /**
+     * @return Number of rows the producer had to throw away because the ring was full.
+     */
+    long getDroppedRowCount() {
+        return droppedRows;
+    }
+
+    /**
+     * @return Largest number of rows which have been waiting in the ring at once.
+     */
+    int getHighWaterMark() {
+        return highWaterMark;
+    }
+
+    /**
+     * @return Number of values in each row.
+     */
+    int getRowWidth() {
+        return rows[0].length;
+    }
+
+}
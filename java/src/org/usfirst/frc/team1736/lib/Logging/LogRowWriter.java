@@ -0,0 +1,85 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+
+/**
+ * Interface for the bits that actually put log rows into a file. Each implementation handles one
+ * on-disk format, so the loggers only have to worry about when to sample and write.
+ *
+ */
+interface LogRowWriter {
+
+    /**
+     * Write the header information to the start of a fresh file. Called once, before any rows.
+     * 
+     * @param field_names Name of each column
+     * @param unit_names Units of each column
+     */
+    void writeHeader(String[] field_names, String[] unit_names) throws IOException;
+
+    /**
+     * Write one row of values. Row should be the same width as the header.
+     * 
+     * @param row values to write. Not retained after the call returns.
+     * @param row_index Which sample (logData() call since the file was opened) this row came from.
+     *        Formats which skip fields that weren't due for sampling use this to figure out which
+     *        ones to skip.
+     */
+    void writeRow(double[] row, long row_index) throws IOException;
+
+    /**
+     * Push any buffered data out to the operating system.
+     */
+    void flush() throws IOException;
+
+    /**
+     * Flush, then ask the operating system to put everything written so far onto the physical
+     * drive (FileChannel.force). Much slower than flush(), so call it sparingly.
+     */
+    void sync() throws IOException;
+
+    /**
+     * Flush and close the file. Writer may not be used afterward.
+     */
+    void close() throws IOException;
+
+    /**
+     * @return Number of bytes handed to the file so far, including the header and anything still
+     *         buffered. Used to decide when to start a new file.
+     */
+    long getBytesWritten();
+
+    /**
+     * @return Offset in the file a reader can jump to and read forward from to reach the next row
+     *         written. For formats with one record per row, this is where the next row will start.
+     *         For block formats, it's the start of the block the next row will land in.
+     */
+    long getSeekOffset();
+
+    /**
+     * @return Number of rows a reader has to skip, after jumping to getSeekOffset(), to reach the
+     *         next row written.
+     */
+    int getSeekSkipRows();
+
+}
@@ -0,0 +1,307 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * DESCRIPTION: <br>
+ * Logging service for robots which want more than one log. Each subsystem opens its own LogStream
+ * (ex: drivetrain at 100Hz, vision once per frame, a sparse event log), and logs to it whenever it
+ * likes at whatever rate it likes. A single low-priority background thread writes out all streams,
+ * a batch of rows at a time, and flushes them periodically. So no stream costs a thread of its own,
+ * and nothing ever waits on the USB drive from a robot loop. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Instantiate one LogService during robot init, pointed at the log directory. This starts the
+ * writer thread.</li>
+ * <li>Call openStream() for each log wanted (also during init - it creates the file).</li>
+ * <li>Log rows to each stream (see LogStream).</li>
+ * <li>Close streams when done with them, or call shutdown() to write out and close everything.</li>
+ * </ol>
+ *
+ *
+ */
+public class LogService {
+
+    /** Default number of rows each stream can queue before new rows get dropped */
+    public static final int DEFAULT_QUEUE_DEPTH = 256;
+    /** Default time between flushes of each stream, in milliseconds */
+    public static final int DEFAULT_FLUSH_PERIOD_MS = 1000;
+    /** Most rows written from one stream before moving on to the next, so no stream hogs the writer */
+    static final int MAX_BATCH_ROWS = 128;
+    /** Time the writer sleeps when it has nothing to do */
+    static final int WRITER_IDLE_SLEEP_MS = 10;
+    /** Max time shutdown() will wait for the writer to finish draining queued rows */
+    static final int WRITER_DRAIN_TIMEOUT_MS = 2000;
+
+    /** Absolute paths of every file (logs and their indexes) any service still has open */
+    private static final Set<String> open_files = ConcurrentHashMap.newKeySet();
+
+    private final String output_dir;
+    private final CopyOnWriteArrayList<LogStream> streams = new CopyOnWriteArrayList<LogStream>();
+    private final Thread writer_thread;
+    private volatile boolean running = true;
+    private volatile long flush_period_ms = DEFAULT_FLUSH_PERIOD_MS;
+    private volatile int index_interval_rows = 0;
+
+    /**
+     * Constructor. Starts the shared writer thread.
+     * 
+     * @param output_dir_in Directory to put log files in (ex: "/U/data_captures/")
+     */
+    public LogService(String output_dir_in) {
+        output_dir = output_dir_in.endsWith("/") ? output_dir_in : output_dir_in + "/";
+
+        writer_thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                writerLoop();
+            }
+        });
+
+        // Writer must never compete with the robot loop
+        writer_thread.setName("CasseroleLogServiceWriter");
+        writer_thread.setPriority(Thread.MIN_PRIORITY);
+        writer_thread.setDaemon(true);
+        writer_thread.start();
+    }
+
+    /**
+     * Open a new CSV log stream with the default queue depth.
+     * 
+     * @param name Short name for the stream, used in the file name (ex: "drivetrain")
+     * @param field_names Name of each column. The first should be time.
+     * @param unit_names Units of each column
+     * @return the new stream, or null if the file couldn't be created
+     */
+    public LogStream openStream(String name, String[] field_names, String[] unit_names) {
+        return openStream(name, field_names, unit_names, LogFormat.CSV, DEFAULT_QUEUE_DEPTH);
+    }
+
+    /**
+     * Open a new log stream. The file is created and its header written right away.
+     * 
+     * @param name Short name for the stream, used in the file name (ex: "drivetrain")
+     * @param field_names Name of each column. The first should be time.
+     * @param unit_names Units of each column
+     * @param format File format to write
+     * @param queue_depth Number of rows which may be waiting to be written before new ones get
+     *        dropped. Should cover at least a second or so at the stream's rate.
+     * @return the new stream, or null if the file couldn't be created
+     */
+    public LogStream openStream(String name, String[] field_names, String[] unit_names, LogFormat format,
+            int queue_depth) {
+        if (!running) {
+            DriverStation.reportError("Error: log service is shut down, cannot open stream " + name, false);
+            return null;
+        }
+        String file_name = claimFileName(name, format.getFileExtension());
+        try {
+            new File(output_dir).mkdirs();
+            LogRowWriter writer = format.openWriter(file_name, null, null);
+            if (index_interval_rows > 0) {
+                String index_name = file_name + BinaryLogFormat.INDEX_FILE_EXTENSION;
+                open_files.add(new File(index_name).getAbsolutePath());
+                writer = new LogIndexWriter(writer, index_name, index_interval_rows);
+            }
+            writer.writeHeader(field_names, unit_names);
+            LogStream stream = new LogStream(name, file_name, writer, field_names.length, queue_depth);
+            streams.add(stream);
+            return stream;
+        } catch (IOException e) {
+            open_files.remove(new File(file_name).getAbsolutePath());
+            open_files.remove(new File(file_name + BinaryLogFormat.INDEX_FILE_EXTENSION).getAbsolutePath());
+            DriverStation.reportError("Error opening log stream " + name + ": " + e.getMessage(), false);
+            return null;
+        }
+    }
+
+    /*
+     * Pick a file name for a new stream and mark it open. Names only go down to the second, so a
+     * stream reopened within the same second gets a "_2", "_3"... suffix rather than truncating the
+     * file which was just written.
+     */
+    private String claimFileName(String name, String extension) {
+        String base_name = output_dir + name + "_" + getDateTimeString();
+        String file_name = base_name + extension;
+        for (int suffix = 2; new File(file_name).exists()
+                || !open_files.add(new File(file_name).getAbsolutePath()); suffix++) {
+            file_name = base_name + "_" + suffix + extension;
+        }
+        return file_name;
+    }
+
+    /**
+     * Set how often the writer thread flushes each stream's file. Shorter loses less data on a
+     * power cut, longer means bigger, more efficient writes.
+     * 
+     * @param period_ms Time between flushes, in milliseconds
+     */
+    public void setFlushPeriod(long period_ms) {
+        flush_period_ms = Math.max(0, period_ms);
+    }
+
+    /**
+     * Write a time index (see IndexedLogReader) next to each stream opened after this call.
+     * 
+     * @param rows Number of rows per index entry, or 0 for no index.
+     */
+    public void setTimeIndexInterval(int rows) {
+        index_interval_rows = Math.max(0, rows);
+    }
+
+    /**
+     * Stop accepting rows on every stream, write out everything queued, and close all files. The
+     * service cannot be used afterward.
+     */
+    public void shutdown() {
+        running = false;
+        try {
+            writer_thread.join(WRITER_DRAIN_TIMEOUT_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer_thread.isAlive()) {
+            DriverStation.reportWarning("Warning - log service writer did not finish draining before shutdown.", false);
+        }
+    }
+
+    /**
+     * @return Every stream which is still open
+     */
+    public List<LogStream> getStreams() {
+        return new ArrayList<LogStream>(streams);
+    }
+
+    /**
+     * @return Absolute paths of every log (and time index) file which any LogService is still
+     *         writing. Anything cleaning up or serving the log directory should leave these alone.
+     */
+    public static List<String> getOpenFileNames() {
+        return new ArrayList<String>(open_files);
+    }
+
+    /**
+     * @param f any file
+     * @return true if some LogService is still writing to it
+     */
+    public static boolean isFileOpen(File f) {
+        return open_files.contains(f.getAbsolutePath());
+    }
+
+    private void writerLoop() {
+        long last_flush_ms = System.currentTimeMillis();
+        try {
+            while (true) {
+                boolean stopping = !running;
+                boolean wrote_rows = false;
+
+                for (LogStream stream : streams) {
+                    try {
+                        if (stopping) {
+                            stream.close();
+                        }
+                        if (stream.drain(MAX_BATCH_ROWS)) {
+                            wrote_rows = true;
+                        }
+                        if (stream.isReadyToClose()) {
+                            closeStream(stream);
+                        }
+                    } catch (RuntimeException e) {
+                        dropStream(stream, e);
+                    }
+                }
+
+                long now = System.currentTimeMillis();
+                if (now - last_flush_ms >= flush_period_ms) {
+                    for (LogStream stream : streams) {
+                        try {
+                            stream.flushIfDirty();
+                        } catch (RuntimeException e) {
+                            dropStream(stream, e);
+                        }
+                    }
+                    last_flush_ms = now;
+                }
+
+                if (stopping && streams.isEmpty()) {
+                    break;
+                }
+
+                if (!wrote_rows) {
+                    Thread.sleep(WRITER_IDLE_SLEEP_MS);
+                }
+            }
+        } catch (InterruptedException e) {
+            // Asked to give up. Close what we can.
+            for (LogStream stream : streams) {
+                try {
+                    closeStream(stream);
+                } catch (RuntimeException e2) {
+                    dropStream(stream, e2);
+                }
+            }
+        }
+    }
+
+    private void closeStream(LogStream stream) {
+        try {
+            stream.closeFile();
+        } finally {
+            streams.remove(stream);
+            open_files.remove(new File(stream.getFileName()).getAbsolutePath());
+            open_files.remove(new File(stream.getFileName() + BinaryLogFormat.INDEX_FILE_EXTENSION).getAbsolutePath());
+        }
+    }
+
+    /*
+     * One stream blew up. Give up on it, but keep the writer going for everyone else.
+     */
+    private void dropStream(LogStream stream, RuntimeException e) {
+        DriverStation.reportError("Error in log stream " + stream.getName() + ", closing it: " + e, false);
+        try {
+            closeStream(stream);
+        } catch (RuntimeException e2) {
+            // Already reported - it's out of the list either way
+        }
+    }
+
+    private static String getDateTimeString() {
+        DateFormat df = new SimpleDateFormat("dd-MMM-yyyy_hh.mm.ssa");
+        df.setTimeZone(TimeZone.getTimeZone("US/Central"));
+        return df.format(new Date());
+    }
+
+}
@@ -0,0 +1,223 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+
+import edu.wpi.first.wpilibj.DriverStation;
+
+/**
+ * DESCRIPTION: <br>
+ * One independent log file, fed by one subsystem and written out by a shared LogService. Rows are
+ * handed over through a preallocated ring, so logging a row never allocates or touches the disk -
+ * if the service's writer thread falls behind, new rows are dropped (and counted) instead. The
+ * first field should be time. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Get one from LogService.openStream() during init.</li>
+ * <li>Each time there's something to log, either call claimRow(), fill in the array it returns, and
+ * call publishRow(), or fill in your own preallocated array and pass it to logRow().</li>
+ * <li>Call close() once done logging to this stream. The file is closed once all queued rows have
+ * been written.</li>
+ * </ol>
+ * All logging calls for one stream must come from the same thread.
+ *
+ */
+public class LogStream {
+
+    private final String name;
+    private final String file_name;
+    private final LogRowRing ring;
+    private LogRowWriter writer; // Owned by the service's writer thread after construction
+
+    private long row_index = 0;
+    private volatile boolean close_requested = false;
+    private volatile boolean closed = false;
+    private volatile boolean failed = false;
+    private boolean dirty = false;
+
+    LogStream(String name_in, String file_name_in, LogRowWriter writer_in, int field_count, int queue_depth) {
+        name = name_in;
+        file_name = file_name_in;
+        writer = writer_in;
+        ring = new LogRowRing(queue_depth, field_count);
+    }
+
+    /**
+     * Get the next row to fill in. Must be followed by publishRow() once filled.
+     * 
+     * @return array of getFieldCount() values to fill, or null if the queue is full (row dropped)
+     *         or the stream is closed.
+     */
+    public double[] claimRow() {
+        if (close_requested) {
+            return null;
+        }
+        return ring.claimRow();
+    }
+
+    /**
+     * Hand the row returned by the last claimRow() over to be written.
+     */
+    public void publishRow() {
+        ring.publishRow(row_index++);
+    }
+
+    /**
+     * Copy a row of values into the queue. Pass an array you keep around rather than a list of
+     * arguments, so nothing gets allocated each call.
+     * 
+     * @param values One value per field. Extra values are ignored, missing ones are left as they
+     *        were in the reused row slot.
+     * @return true if queued, false if dropped because the queue was full or the stream is closed
+     */
+    public boolean logRow(double[] values) {
+        double[] row = claimRow();
+        if (row == null) {
+            return false;
+        }
+        System.arraycopy(values, 0, row, 0, Math.min(values.length, row.length));
+        publishRow();
+        return true;
+    }
+
+    /**
+     * Stop accepting rows. The writer thread finishes writing everything already queued, then
+     * closes the file.
+     */
+    public void close() {
+        close_requested = true;
+    }
+
+    /*
+     * Writer thread side. Write up to max_rows queued rows.
+     * Returns true if any rows were taken off the queue.
+     */
+    boolean drain(int max_rows) {
+        int count = 0;
+        double[] row = ring.peekRow();
+        while (row != null && count < max_rows) {
+            if (!failed) {
+                try {
+                    writer.writeRow(row, ring.peekRowTag());
+                    dirty = true;
+                } catch (IOException e) {
+                    failed = true;
+                    DriverStation.reportError("Error writing to log stream " + name + ": " + e.getMessage(), false);
+                }
+            }
+            ring.releaseRow();
+            count++;
+            row = ring.peekRow();
+        }
+        return count > 0;
+    }
+
+    /*
+     * Writer thread side. Push buffered rows out to the OS if anything was written since last time.
+     */
+    void flushIfDirty() {
+        if (!dirty || failed) {
+            return;
+        }
+        dirty = false;
+        try {
+            writer.flush();
+        } catch (IOException e) {
+            failed = true;
+            DriverStation.reportError("Error flushing log stream " + name + ": " + e.getMessage(), false);
+        }
+    }
+
+    /*
+     * Writer thread side. True once close() has been called and every queued row has been written.
+     */
+    boolean isReadyToClose() {
+        return close_requested && ring.getQueuedRowCount() == 0;
+    }
+
+    /*
+     * Writer thread side. Close the file. Anything still queued is lost.
+     */
+    void closeFile() {
+        close_requested = true;
+        if (closed) {
+            return;
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            DriverStation.reportError("Error closing log stream " + name + ": " + e.getMessage(), false);
+        }
+        closed = true;
+    }
+
+    /**
+     * @return Name given when the stream was opened
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return Full path of the file this stream writes to
+     */
+    public String getFileName() {
+        return file_name;
+    }
+
+    /**
+     * @return Number of values in each row
+     */
+    public int getFieldCount() {
+        return ring.getRowWidth();
+    }
+
+    /**
+     * @return true once the file has been closed out
+     */
+    public boolean isClosed() {
+        return closed;
+    }
+
+    /**
+     * @return Number of rows thrown away because the writer thread fell behind.
+     */
+    public long getDroppedRowCount() {
+        return ring.getDroppedRowCount();
+    }
+
+    /**
+     * @return Number of rows waiting to be written.
+     */
+    public int getQueuedRowCount() {
+        return ring.getQueuedRowCount();
+    }
+
+    /**
+     * @return Largest number of rows which have been waiting to be written at once.
+     */
+    public int getQueueHighWaterMark() {
+        return ring.getHighWaterMark();
+    }
+
+}
@@ -0,0 +1,253 @@
+package org.usfirst.frc.team1736.lib.Logging;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Column-wise compression of one block of log rows, roughly following the scheme Facebook described
+ * for their "Gorilla" time-series database. Most robot signals are either constant for long
+ * stretches or change slowly, so consecutive samples share most of their bits. <br>
+ * <br>
+ * ENCODING:
+ * <ul>
+ * <li>Column 0 is the timestamp (by convention, the first logged field is time). If every timestamp
+ * in the block is an exact number of microseconds (true for FPGA time), they are stored as
+ * delta-of-deltas in microseconds. A loop running at a steady rate costs one bit per row. Otherwise
+ * the column falls back to the XOR encoding below.</li>
+ * <li>All other columns store the first value raw, then the XOR of each value with the previous
+ * one. An unchanged value costs one bit. A changed value only stores the "meaningful" bits between
+ * the leading and trailing zeros of the XOR, reusing the previous window when it fits.</li>
+ * </ul>
+ * Blocks share no state, so each one can be decoded on its own.
+ *
+ */
+class XorBlockCodec {
+
+    static final double MICROSEC_PER_SEC = 1000000.0;
+    /** Most bits any one value can take: a 2-bit control code, 6+6 bits of window, 64 data bits */
+    static final int MAX_BITS_PER_VALUE = 78;
+
+    /**
+     * Encode a block of column-major data.
+     * 
+     * @param cols cols[column][row] values to encode
+     * @param num_rows Number of valid rows in each column
+     * @param out stream to append to
+     */
+    static void encodeBlock(double[][] cols, int num_rows, BitStreamWriter out) {
+        if (cols.length == 0 || num_rows == 0) {
+            return;
+        }
+
+        // Timestamp column
+        if (isWholeMicroseconds(cols[0], num_rows)) {
+            out.writeBit(true);
+            encodeTimestampColumn(cols[0], num_rows, out);
+        } else {
+            out.writeBit(false);
+            encodeXorColumn(cols[0], num_rows, out);
+        }
+
+        // Everything else
+        for (int c = 1; c < cols.length; c++) {
+            encodeXorColumn(cols[c], num_rows, out);
+        }
+    }
+
+    /**
+     * @param num_cols Number of columns in the block
+     * @param num_rows Number of rows in the block
+     * @return Largest payload encodeBlock() can produce for a block this size, in bytes. Anything
+     *         bigger on disk can't be a real block.
+     */
+    static long maxEncodedBytes(int num_cols, int num_rows) {
+        long max_bits = 1 + (long) num_cols * num_rows * MAX_BITS_PER_VALUE;
+        return (max_bits + 7) / 8;
+    }
+
+    /**
+     * Decode a block written by encodeBlock().
+     * 
+     * @param in stream positioned at the start of the block payload
+     * @param cols cols[column][row] output storage, at least num_rows long per column
+     * @param num_rows Number of rows in the block
+     */
+    static void decodeBlock(BitStreamReader in, double[][] cols, int num_rows) {
+        if (cols.length == 0 || num_rows == 0) {
+            return;
+        }
+
+        if (in.readBit()) {
+            decodeTimestampColumn(in, cols[0], num_rows);
+        } else {
+            decodeXorColumn(in, cols[0], num_rows);
+        }
+
+        for (int c = 1; c < cols.length; c++) {
+            decodeXorColumn(in, cols[c], num_rows);
+        }
+    }
+
+    private static boolean isWholeMicroseconds(double[] col, int num_rows) {
+        for (int r = 0; r < num_rows; r++) {
+            long us = Math.round(col[r] * MICROSEC_PER_SEC);
+            if (us / MICROSEC_PER_SEC != col[r]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // Timestamps - delta of delta in microseconds
+    ////////////////////////////////////////////////////////////////////////
+    private static void encodeTimestampColumn(double[] col, int num_rows, BitStreamWriter out) {
+        long prev = Math.round(col[0] * MICROSEC_PER_SEC);
+        long prev_delta = 0;
+        out.writeBits(prev, 64);
+        for (int r = 1; r < num_rows; r++) {
+            long us = Math.round(col[r] * MICROSEC_PER_SEC);
+            long delta = us - prev;
+            writeDeltaOfDelta(delta - prev_delta, out);
+            prev_delta = delta;
+            prev = us;
+        }
+    }
+
+    private static void decodeTimestampColumn(BitStreamReader in, double[] col, int num_rows) {
+        long prev = in.readBits(64);
+        long prev_delta = 0;
+        col[0] = prev / MICROSEC_PER_SEC;
+        for (int r = 1; r < num_rows; r++) {
+            long delta = prev_delta + readDeltaOfDelta(in);
+            prev += delta;
+            prev_delta = delta;
+            col[r] = prev / MICROSEC_PER_SEC;
+        }
+    }
+
+    /*
+     * Variable-length prefix code. Sized for loop jitter of a few hundred microseconds:
+     * 0 -> no change
+     * 10 + 8 bits, 110 + 12 bits, 1110 + 16 bits, 11110 + 32 bits, 11111 + 64 bits
+     */
+    private static void writeDeltaOfDelta(long dod, BitStreamWriter out) {
+        if (dod == 0) {
+            out.writeBits(0x0, 1);
+        } else if (fitsSigned(dod, 8)) {
+            out.writeBits(0x2, 2);
+            out.writeBits(dod, 8);
+        } else if (fitsSigned(dod, 12)) {
+            out.writeBits(0x6, 3);
+            out.writeBits(dod, 12);
+        } else if (fitsSigned(dod, 16)) {
+            out.writeBits(0xE, 4);
+            out.writeBits(dod, 16);
+        } else if (fitsSigned(dod, 32)) {
+            out.writeBits(0x1E, 5);
+            out.writeBits(dod, 32);
+        } else {
+            out.writeBits(0x1F, 5);
+            out.writeBits(dod, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitStreamReader in) {
+        if (!in.readBit()) {
+            return 0;
+        } else if (!in.readBit()) {
+            return signExtend(in.readBits(8), 8);
+        } else if (!in.readBit()) {
+            return signExtend(in.readBits(12), 12);
+        } else if (!in.readBit()) {
+            return signExtend(in.readBits(16), 16);
+        } else if (!in.readBit()) {
+            return signExtend(in.readBits(32), 32);
+        } else {
+            return in.readBits(64);
+        }
+    }
+
+    private static boolean fitsSigned(long val, int bits) {
+        long limit = 1L << (bits - 1);
+        return val >= -limit && val < limit;
+    }
+
+    private static long signExtend(long val, int bits) {
+        return (val << (64 - bits)) >> (64 - bits);
+    }
+
+    ////////////////////////////////////////////////////////////////////////
+    // Values - XOR with previous
+    ////////////////////////////////////////////////////////////////////////
+    private static void encodeXorColumn(double[] col, int num_rows, BitStreamWriter out) {
+        long prev = Double.doubleToRawLongBits(col[0]);
+        int prev_lead = -1; // no window yet
+        int prev_trail = 0;
+        out.writeBits(prev, 64);
+
+        for (int r = 1; r < num_rows; r++) {
+            long bits = Double.doubleToRawLongBits(col[r]);
+            long xor = bits ^ prev;
+            if (xor == 0) {
+                out.writeBits(0x0, 1);
+            } else {
+                int lead = Long.numberOfLeadingZeros(xor);
+                int trail = Long.numberOfTrailingZeros(xor);
+                if (prev_lead >= 0 && lead >= prev_lead && trail >= prev_trail) {
+                    // Fits in the previous window
+                    out.writeBits(0x2, 2);
+                    out.writeBits(xor >>> prev_trail, 64 - prev_lead - prev_trail);
+                } else {
+                    int meaningful = 64 - lead - trail;
+                    out.writeBits(0x3, 2);
+                    out.writeBits(lead, 6);
+                    out.writeBits(meaningful - 1, 6);
+                    out.writeBits(xor >>> trail, meaningful);
+                    prev_lead = lead;
+                    prev_trail = trail;
+                }
+            }
+            prev = bits;
+        }
+    }
+
+    private static void decodeXorColumn(BitStreamReader in, double[] col, int num_rows) {
+        long prev = in.readBits(64);
+        int prev_lead = 0;
+        int prev_trail = 0;
+        col[0] = Double.longBitsToDouble(prev);
+
+        for (int r = 1; r < num_rows; r++) {
+            if (in.readBit()) {
+                if (in.readBit()) {
+                    prev_lead = (int) in.readBits(6);
+                    int meaningful = (int) in.readBits(6) + 1;
+                    prev_trail = 64 - prev_lead - meaningful;
+                }
+                long xor = in.readBits(64 - prev_lead - prev_trail) << prev_trail;
+                prev ^= xor;
+            }
+            col[r] = Double.longBitsToDouble(prev);
+        }
+    }
+
+}
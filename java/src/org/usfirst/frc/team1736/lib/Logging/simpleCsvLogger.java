@@ -1,12 +1,13 @@
 package org.usfirst.frc.team1736.lib.Logging;
 
-import java.io.FileWriter;
+import java.io.BufferedOutputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.text.DateFormat;
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TimeZone;
-import java.io.BufferedWriter;
 
 
 /*
@@ -35,7 +36,10 @@ import java.io.BufferedWriter;
  * Provides an API for FRC 1736 Robot Casserole datalogging on the robot during testing or matches.
  * Will write lines into a CSV file with a unique name between calls to init() and close().
  * output_dir is hardcoded to point to a specific 2016 folder on a flash drive connected to the
- * roboRIO. <br>
+ * roboRIO. Numbers are formatted with AsciiNumberFormatter into a reused line buffer. By default
+ * every value is written at full precision (as Double.toString() would). Calling
+ * setFieldPrecision() rounds values to fixed decimal places instead, which makes smaller files and
+ * lets writing a line allocate nothing. <br>
  * <br>
  * USAGE:
  * <ol>
@@ -60,9 +64,14 @@ public class simpleCsvLogger {
     long log_write_index;
     String log_name = null;
     String output_dir = "/U/data_captures/"; // USB drive is mounted to /U on roboRIO
-    BufferedWriter log_file = null;
+    BufferedOutputStream log_file = null;
     boolean log_open = false;
 
+    /** Decimal places used for values with no precision set - full precision, like Double.toString() */
+    public static final int DEFAULT_DECIMALS = AsciiNumberFormatter.FULL_PRECISION;
+    int[] field_decimals = new int[0];
+    byte[] line_buf = new byte[1024];
+
 
 
     /**
@@ -90,23 +99,23 @@ public class simpleCsvLogger {
             log_name = output_dir + "log_" + getDateTimeString() + ".csv";
 
             // Open File
-            FileWriter fstream = new FileWriter(log_name, true);
-            log_file = new BufferedWriter(fstream);
+            FileOutputStream fstream = new FileOutputStream(log_name, true);
+            log_file = new BufferedOutputStream(fstream);
 
             // Write user-defined header line
             for (String header_txt : data_fields) {
-                log_file.write(header_txt + ", ");
+                log_file.write((header_txt + ", ").getBytes(StandardCharsets.UTF_8));
             }
             // End of line
-            log_file.write("\n");
+            log_file.write('\n');
 
 
             // Write user-defined units line
             for (String header_txt : units_fields) {
-                log_file.write(header_txt + ", ");
+                log_file.write((header_txt + ", ").getBytes(StandardCharsets.UTF_8));
             }
             // End of line
-            log_file.write("\n");
+            log_file.write('\n');
 
         }
         // Catch ALL the errors!!!
@@ -132,8 +141,6 @@ public class simpleCsvLogger {
      * @return 0 on write success, -1 on failure.
      */
     public int writeData(double... data_elements) {
-        String line_to_write = "";
-
         if (log_open == false) {
             System.out.println("Error - Log is not yet opened, cannot write!");
             return -1;
@@ -141,16 +148,26 @@ public class simpleCsvLogger {
 
         try {
 
+            // Make sure the line buffer can hold the longest possible line
+            int max_len = data_elements.length * (AsciiNumberFormatter.MAX_CHARS + 2) + 1;
+            if (line_buf.length < max_len) {
+                line_buf = new byte[max_len];
+            }
+
             // Write user-defined data
-            for (double data_val : data_elements) {
-                line_to_write = line_to_write.concat(Double.toString(data_val) + ", ");
+            int pos = 0;
+            for (int i = 0; i < data_elements.length; i++) {
+                int decimals = (i < field_decimals.length) ? field_decimals[i] : DEFAULT_DECIMALS;
+                pos = AsciiNumberFormatter.formatDouble(line_buf, pos, data_elements[i], decimals);
+                line_buf[pos++] = ',';
+                line_buf[pos++] = ' ';
             }
 
             // End of line
-            line_to_write = line_to_write.concat("\n");
+            line_buf[pos++] = '\n';
 
-            // write constructed string out to file
-            log_file.write(line_to_write);
+            // write constructed line out to file
+            log_file.write(line_buf, 0, pos);
 
         }
         // Catch ALL the errors!!!
@@ -165,6 +182,21 @@ public class simpleCsvLogger {
 
 
 
+    /**
+     * Round values passed to writeData() to a fixed number of decimal places, rather than writing
+     * them at full precision. Fewer places make smaller files, and any fixed precision avoids
+     * allocating while formatting. Anything smaller than half the last place is written as 0.
+     * 
+     * @param decimals Places after the decimal point for each value, in the same order as the
+     *        arguments to writeData(), or AsciiNumberFormatter.FULL_PRECISION. Values past the end
+     *        of this list use DEFAULT_DECIMALS (full precision).
+     */
+    public void setFieldPrecision(int... decimals) {
+        field_decimals = decimals.clone();
+    }
+
+
+
     /**
      * Clears the buffer in memory and forces things to file. Generally a good idea to use this as
      * infrequently as possible (because it increases logging overhead), but definitely use it
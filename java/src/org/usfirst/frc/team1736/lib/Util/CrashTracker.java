@@ -1,18 +1,86 @@
 package org.usfirst.frc.team1736.lib.Util;
 
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.Date;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.usfirst.frc.team1736.lib.Logging.FlightRecorder;
+
+/**
+ * DESCRIPTION: <br>
+ * Leaves a trail of markers (robot init, mode changes, exceptions) in a text file on the RIO, so
+ * after a crash we can tell what the robot was doing. The file stays open for the life of the
+ * program, and markers are handed to a low-priority background thread through a lock-free queue,
+ * so logging a marker never touches the RIO's flash from the robot loop. Periodic markers, which
+ * get called every loop, are just counted, and written out every so often as one line with the
+ * count and first/last times. Crashes are written out (along with everything queued) immediately,
+ * before logThrowableCrash() returns. <br>
+ * <br>
+ * USAGE:
+ * <ol>
+ * <li>Call the matching log*() method at the start of each robot init/periodic method.</li>
+ * <li>Call logThrowableCrash() from a catch-all around the robot's main loop.</li>
+ * </ol>
+ * 
+ *
+ */
 public class CrashTracker {
 
 	private static final UUID RUN_INSTANCE_UUID = UUID.randomUUID();
 
+	static final String CRASH_FILE = "/home/lvuser/crash_tracking.txt";
+	/** How often the background thread writes out queued and periodic markers */
+	static final int WRITER_PERIOD_MS = 1000;
+
+	// Fully formatted lines waiting to be written
+	private static final ConcurrentLinkedQueue<String> pending_lines = new ConcurrentLinkedQueue<String>();
+	// Only one thread writes the file at a time: either the background writer, or a crash
+	private static final Object write_lock = new Object();
+	private static FileChannel crash_file = null;
+
+	private static final PeriodicMarker DISABLED_PERIODIC = new PeriodicMarker("disabled periodic");
+	private static final PeriodicMarker AUTO_PERIODIC = new PeriodicMarker("auto periodic");
+	private static final PeriodicMarker[] PERIODIC_MARKERS = {DISABLED_PERIODIC, AUTO_PERIODIC};
+
+	static {
+		Thread writerThread = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					while (true) {
+						Thread.sleep(WRITER_PERIOD_MS);
+						writePending(false);
+					}
+				} catch (InterruptedException e) {
+					// Asked to stop
+				}
+			}
+		});
+		writerThread.setName("CasseroleCrashTrackerWriter");
+		writerThread.setPriority(Thread.MIN_PRIORITY);
+		writerThread.setDaemon(true);
+		writerThread.start();
+
+		// Don't lose whatever's queued on a normal JVM exit either
+		Runtime.getRuntime().addShutdownHook(new Thread(new Runnable() {
+			@Override
+			public void run() {
+				writePending(true);
+			}
+		}));
+	}
+
 	public static void logRobotConstruction() {
-        logMarker("robot construction");
-    }
+		logMarker("robot construction");
+	}
 	
 	public static void logRobotInit() {
 		logMarker("robot init");
@@ -23,7 +91,7 @@ public class CrashTracker {
 	}
 	
 	public static void logDisabledPeriodic() {
-		logMarker("disabled periodic");
+		DISABLED_PERIODIC.mark();
 	}
 	
 	public static void logAutoInit() {
@@ -31,7 +99,7 @@ public class CrashTracker {
 	}
 	
 	public static void logAutoPeriodic() {
-		logMarker("auto periodic");
+		AUTO_PERIODIC.mark();
 	}
 	
 	public static void logTeleopInit() {
@@ -41,32 +109,117 @@ public class CrashTracker {
 	public static void logTeleopPeriodic() {
 		
 	}
-		
-	 public static void logThrowableCrash(Throwable throwable) {
-	        logMarker("Exception", throwable);
+
+	/**
+	 * Record an exception, and write it and every queued marker to the file before returning, in
+	 * case the JVM is about to die.
+	 */
+	public static void logThrowableCrash(Throwable throwable) {
+		logMarker("Exception", throwable);
+		writePending(true);
+		FlightRecorder.triggerDump("crash");
 	}
 	
 	private static void logMarker(String mark) {
-	        logMarker(mark, null);
+		logMarker(mark, null);
 	}
 
 	private static void logMarker(String mark, Throwable nullableException) {
+		// Keep things in order - periodic markers before this one happened before it
+		closeOutPeriodicMarkers();
+
+		StringWriter line = new StringWriter();
+		PrintWriter writer = new PrintWriter(line);
+		writer.print(RUN_INSTANCE_UUID.toString());
+		writer.print(", ");
+		writer.print(mark);
+		writer.print(", ");
+		writer.print(new Date().toString());
+
+		if (nullableException != null) {
+			writer.print(", ");
+			nullableException.printStackTrace(writer);
+		}
+
+		writer.println();
+		writer.flush();
+		pending_lines.add(line.toString());
+	}
+
+	/*
+	 * Turn any counted periodic markers into queued lines
+	 */
+	private static void closeOutPeriodicMarkers() {
+		for (PeriodicMarker marker : PERIODIC_MARKERS) {
+			String line = marker.closeOut();
+			if (line != null) {
+				pending_lines.add(line);
+			}
+		}
+	}
+
+	/*
+	 * Write everything queued so far to the file. Optionally force it onto the flash too.
+	 */
+	private static void writePending(boolean force) {
+		synchronized (write_lock) {
+			closeOutPeriodicMarkers();
+			try {
+				if (crash_file == null) {
+					crash_file = new FileOutputStream(CRASH_FILE, true).getChannel();
+				}
+				String line = pending_lines.poll();
+				while (line != null) {
+					ByteBuffer bytes = ByteBuffer.wrap(line.getBytes(StandardCharsets.UTF_8));
+					while (bytes.hasRemaining()) {
+						crash_file.write(bytes);
+					}
+					line = pending_lines.poll();
+				}
+				if (force) {
+					crash_file.force(true);
+				}
+			} catch (IOException e) {
+				e.printStackTrace();
+			}
+		}
+	}
+
+	/**
+	 * A marker which gets hit every loop. Hits are only counted (no allocation, no locking), and
+	 * turned into one summary line when closed out.
+	 */
+	private static class PeriodicMarker {
+		private final String mark;
+		private final AtomicLong count = new AtomicLong(0);
+		private volatile long first_ms = 0;
+		private volatile long last_ms = 0;
+
+		PeriodicMarker(String mark_in) {
+			mark = mark_in;
+		}
+
+		void mark() {
+			long now = System.currentTimeMillis();
+			last_ms = now;
+			// Only the hit which takes the count off zero starts a new window. Checking and then
+			// incrementing separately could miss a closeOut() in between and keep a stale first_ms.
+			if (count.getAndIncrement() == 0) {
+				first_ms = now;
+			}
+		}
 
-	        try (PrintWriter writer = new PrintWriter(new FileWriter("/home/lvuser/crash_tracking.txt", true))) {
-	            writer.print(RUN_INSTANCE_UUID.toString());
-	            writer.print(", ");
-	            writer.print(mark);
-	            writer.print(", ");
-	            writer.print(new Date().toString());
-
-	            if (nullableException != null) {
-	                writer.print(", ");
-	                nullableException.printStackTrace(writer);
-	            }
-
-	            writer.println();
-	        } catch (IOException e) {
-	            e.printStackTrace();
-	        }
+		/*
+		 * Returns a line summarizing hits since the last close out (and resets the count), or null if
+		 * there haven't been any.
+		 */
+		String closeOut() {
+			long n = count.getAndSet(0);
+			if (n == 0) {
+				return null;
+			}
+			return RUN_INSTANCE_UUID.toString() + ", " + mark + " x" + n + ", " + new Date(first_ms).toString()
+					+ " to " + new Date(last_ms).toString() + System.lineSeparator();
+		}
 	}
-} 
+}
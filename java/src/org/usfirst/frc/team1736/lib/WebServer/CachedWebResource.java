@@ -0,0 +1,253 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpOutput;
+
+/**
+ * DESCRIPTION: <br>
+ * One static web file (page, script, stylesheet, image) held in memory, ready to send. The gzipped
+ * copy and the ETag are worked out once when the file is loaded, so a request only costs a header
+ * check and a buffer write. Over the field radio, gzip cuts the big chart libraries to about a
+ * third, and the ETag lets a browser which already has the file skip downloading it at all. <br>
+ * USAGE:
+ * <ol>
+ * <li>load() the file at startup.</li>
+ * <li>Per request, check isStale() against the file on disk and reload if needed, then send().</li>
+ * </ol>
+ * 
+ *
+ */
+class CachedWebResource {
+
+    /** A gzipped copy is only kept if it's at most this fraction of the original size */
+    static final double MIN_GZIP_SAVINGS_RATIO = 0.9;
+
+    private final String content_type;
+    private final byte[] bytes;
+    private final byte[] gzip_bytes;
+    private final String etag;
+    private final String gzip_etag;
+    private final long last_modified;
+    private final long file_length;
+
+
+    private CachedWebResource(String content_type_in, byte[] bytes_in, byte[] gzip_bytes_in, String etag_in,
+            long last_modified_in, long file_length_in) {
+        content_type = content_type_in;
+        bytes = bytes_in;
+        gzip_bytes = gzip_bytes_in;
+        etag = "\"" + etag_in + "\"";
+        // Strong ETags must differ between encodings of the same file
+        gzip_etag = "\"" + etag_in + "-gz\"";
+        last_modified = last_modified_in;
+        file_length = file_length_in;
+    }
+
+
+    /**
+     * Read a file into memory and prepare it for sending.
+     * 
+     * @param f File to read
+     * @return the loaded file
+     * @throws IOException if the file can't be read
+     */
+    static CachedWebResource load(File f) throws IOException {
+        return load(f, getContentType(f.getName()));
+    }
+
+
+    /**
+     * Read a file into memory and prepare it for sending as a given type.
+     * 
+     * @param f File to read
+     * @param content_type MIME type to send the file as
+     * @return the loaded file
+     * @throws IOException if the file can't be read
+     */
+    static CachedWebResource load(File f, String content_type) throws IOException {
+        long last_modified = f.lastModified();
+        byte[] bytes = Files.readAllBytes(f.toPath());
+
+        // Images are already compressed. Anything else gets a gzipped copy, if it helps enough.
+        byte[] gzip_bytes = null;
+        if (!content_type.startsWith("image/") || content_type.equals("image/x-icon")
+                || content_type.equals("image/svg+xml")) {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(bytes.length / 2 + 64);
+            GZIPOutputStream gz = new GZIPOutputStream(buf);
+            gz.write(bytes);
+            gz.close();
+            if (buf.size() <= bytes.length * MIN_GZIP_SAVINGS_RATIO) {
+                gzip_bytes = buf.toByteArray();
+            }
+        }
+
+        return new CachedWebResource(content_type, bytes, gzip_bytes, hashContents(bytes), last_modified,
+                bytes.length);
+    }
+
+
+    /**
+     * @param f The file this was loaded from
+     * @return true if the file on disk has changed since it was loaded
+     */
+    boolean isStale(File f) {
+        return f.lastModified() != last_modified || f.length() != file_length;
+    }
+
+
+    /**
+     * Answer a GET or HEAD for this file. Sends 304 Not Modified if the browser's copy is current,
+     * otherwise the file, gzipped if the browser takes it.
+     * 
+     * @param cache_control Cache-Control header value to send
+     * @param send_body false for a HEAD request
+     */
+    void send(HttpServletRequest request, HttpServletResponse response, String cache_control, boolean send_body)
+            throws IOException {
+        String accept = request.getHeader("Accept-Encoding");
+        boolean gzip = gzip_bytes != null && accept != null && accept.contains("gzip");
+        byte[] body = gzip ? gzip_bytes : bytes;
+
+        response.setHeader("ETag", gzip ? gzip_etag : etag);
+        response.setDateHeader("Last-Modified", last_modified);
+        response.setHeader("Cache-Control", cache_control);
+        if (gzip_bytes != null) {
+            response.setHeader("Vary", "Accept-Encoding");
+        }
+
+        if (matchesETag(request.getHeader("If-None-Match"))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(content_type);
+        if (gzip) {
+            response.setHeader("Content-Encoding", "gzip");
+        }
+        response.setContentLength(body.length);
+        if (!send_body || body.length == 0) {
+            return;
+        }
+
+        OutputStream out = response.getOutputStream();
+        if (out instanceof HttpOutput) {
+            // Jetty writes the buffer straight out, without copying it through the response buffer
+            ((HttpOutput) out).sendContent(ByteBuffer.wrap(body).asReadOnlyBuffer());
+        } else {
+            out.write(body);
+        }
+    }
+
+
+    /*
+     * True if an If-None-Match header names either encoding of this file. Whichever copy the
+     * browser has is still good, since both come from the same contents.
+     */
+    private boolean matchesETag(String if_none_match) {
+        if (if_none_match == null) {
+            return false;
+        }
+        for (String tag : if_none_match.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals(gzip_etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+
+    /**
+     * @return Bytes held in memory for this file, counting the gzipped copy
+     */
+    int getMemoryBytes() {
+        return bytes.length + (gzip_bytes == null ? 0 : gzip_bytes.length);
+    }
+
+
+    /*
+     * Strong ETag from the file contents, so a redeployed but identical file doesn't make every
+     * browser download it again.
+     */
+    private static String hashContents(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(bytes);
+            StringBuilder hex = new StringBuilder(32);
+            for (int i = 0; i < 12; i++) {
+                hex.append(Character.forDigit((digest[i] >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(digest[i] & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java has SHA-1, but just in case
+            return Integer.toHexString(Arrays.hashCode(bytes)) + "-" + Integer.toHexString(bytes.length);
+        }
+    }
+
+
+    /**
+     * @param name File name
+     * @return MIME type to send the file as, based on its extension
+     */
+    static String getContentType(String name) {
+        String lower = name.toLowerCase();
+        if (lower.endsWith(".html") || lower.endsWith(".htm")) {
+            return "text/html;charset=utf-8";
+        } else if (lower.endsWith(".js")) {
+            return "application/javascript;charset=utf-8";
+        } else if (lower.endsWith(".css")) {
+            return "text/css;charset=utf-8";
+        } else if (lower.endsWith(".json")) {
+            return "application/json;charset=utf-8";
+        } else if (lower.endsWith(".txt") || lower.endsWith(".csv")) {
+            return "text/plain;charset=utf-8";
+        } else if (lower.endsWith(".png")) {
+            return "image/png";
+        } else if (lower.endsWith(".jpg") || lower.endsWith(".jpeg")) {
+            return "image/jpeg";
+        } else if (lower.endsWith(".gif")) {
+            return "image/gif";
+        } else if (lower.endsWith(".ico")) {
+            return "image/x-icon";
+        } else if (lower.endsWith(".svg")) {
+            return "image/svg+xml";
+        } else {
+            return "application/octet-stream";
+        }
+    }
+
+}
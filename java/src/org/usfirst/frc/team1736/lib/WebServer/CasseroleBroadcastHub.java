@@ -0,0 +1,306 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.eclipse.jetty.websocket.api.Session;
+
+/**
+ * DESCRIPTION: <br>
+ * Serialize-once, send-to-many broadcaster for one type of web data stream. Every tick, the stream's
+ * frame source builds one message, and that same message is handed to every subscribed client with
+ * a non-blocking send. Before, each connected socket built and serialized its own copy of identical
+ * data, so each extra client cost a full serialization. Now extra clients only cost network time.
+ * <br>
+ * Each client gets a bounded outbound queue (see WebStreamSendQueue), so a slow client only ever
+ * has a few messages waiting. What gets dropped when it falls behind is set by the stream's
+ * WebStreamQueuePolicy, and clients which stop receiving entirely are disconnected. <br>
+ * The hub only ticks (on the shared CasseroleWebStreamScheduler thread) while at least one client is
+ * subscribed. <br>
+ * USAGE:
+ * <ol>
+ * <li>Make one hub per stream type, usually as a static in the stream's socket class.</li>
+ * <li>Socket calls subscribe() on connect (after sending anything which must go first), and
+ * unsubscribe() on close.</li>
+ * </ol>
+ * 
+ *
+ */
+class CasseroleBroadcastHub {
+
+    /** Messages a DROP_OLDEST client may have waiting before the oldest is thrown away */
+    static final int DEFAULT_QUEUE_DEPTH = 4;
+    /** A client whose send hasn't finished in this long gets disconnected */
+    static final long DEFAULT_SLOW_CLIENT_TIMEOUT_MS = 5000;
+
+    private final String stream_name;
+    private final WebStreamFrameSource source;
+    private final WebStreamSessionFrameSource session_source;
+    private final WebStreamQueuePolicy policy;
+    private volatile long period_ms;
+    private volatile int queue_depth = DEFAULT_QUEUE_DEPTH;
+    private volatile long slow_client_timeout_ms = DEFAULT_SLOW_CLIENT_TIMEOUT_MS;
+
+    private final ConcurrentHashMap<Session, WebStreamSendQueue> queues =
+            new ConcurrentHashMap<Session, WebStreamSendQueue>();
+    private ScheduledFuture<?> ticker = null;
+
+    // Statistics
+    private final StreamSendStats send_stats;
+    private volatile long frames_built = 0;
+    private final AtomicLong frames_sent = new AtomicLong();
+    private final AtomicLong send_failures = new AtomicLong();
+    private final AtomicLong bytes_sent = new AtomicLong();
+
+
+    /**
+     * @param stream_name_in Name of the stream, for timing and debug prints
+     * @param period_ms_in Time between broadcasts
+     * @param policy_in What to drop when a client falls behind
+     * @param source_in Builds each broadcast message
+     */
+    CasseroleBroadcastHub(String stream_name_in, long period_ms_in, WebStreamQueuePolicy policy_in,
+            WebStreamFrameSource source_in) {
+        stream_name = stream_name_in;
+        period_ms = period_ms_in;
+        policy = policy_in;
+        source = source_in;
+        session_source = null;
+        send_stats = CasseroleWebStreamScheduler.getSendStats(stream_name_in);
+    }
+
+
+    /**
+     * Make a hub for a stream where each client gets its own message. Clients still share one tick
+     * and the hub's send path, but nothing is shared between their messages.
+     * 
+     * @param stream_name_in Name of the stream, for timing and debug prints
+     * @param period_ms_in Time between broadcasts
+     * @param policy_in What to drop when a client falls behind
+     * @param session_source_in Builds each client's message
+     */
+    CasseroleBroadcastHub(String stream_name_in, long period_ms_in, WebStreamQueuePolicy policy_in,
+            WebStreamSessionFrameSource session_source_in) {
+        stream_name = stream_name_in;
+        period_ms = period_ms_in;
+        policy = policy_in;
+        source = null;
+        session_source = session_source_in;
+        send_stats = CasseroleWebStreamScheduler.getSendStats(stream_name_in);
+    }
+
+
+    /**
+     * Start sending this stream's broadcasts to a client.
+     * 
+     * @param session Client's websocket session
+     */
+    synchronized void subscribe(Session session) {
+        if (queues.containsKey(session)) {
+            return;
+        }
+        queues.put(session, new WebStreamSendQueue(session, policy, queue_depth, send_stats, this));
+        if (ticker == null) {
+            ticker = CasseroleWebStreamScheduler.schedule(stream_name, new Runnable() {
+                @Override
+                public void run() {
+                    broadcast();
+                }
+            }, 0, period_ms);
+        }
+    }
+
+
+    /**
+     * Stop sending to a client. Safe to call for clients which aren't subscribed.
+     * 
+     * @param session Client's websocket session
+     */
+    synchronized void unsubscribe(Session session) {
+        WebStreamSendQueue queue = queues.remove(session);
+        if (queue != null) {
+            queue.close();
+        }
+        if (queues.isEmpty() && ticker != null) {
+            ticker.cancel(false);
+            ticker = null;
+        }
+    }
+
+
+    /**
+     * Set the time between broadcasts. Applies to every client of the stream, starting the next time
+     * the stream goes from no clients to one client.
+     * 
+     * @param period_ms_in Broadcast period in milliseconds.
+     */
+    void setPeriod(long period_ms_in) {
+        period_ms = period_ms_in;
+    }
+
+
+    /**
+     * Set how many messages a client may have waiting before the oldest is dropped. Only used by
+     * DROP_OLDEST streams, and applies to clients which subscribe after this is called.
+     * 
+     * @param depth Messages per client
+     */
+    void setQueueDepth(int depth) {
+        queue_depth = depth;
+    }
+
+
+    /**
+     * Set how long a single send to a client may take before the client is disconnected.
+     * 
+     * @param timeout_ms Timeout in milliseconds.
+     */
+    void setSlowClientTimeout(long timeout_ms) {
+        slow_client_timeout_ms = timeout_ms;
+    }
+
+
+    /**
+     * Build this tick's frame once, and send it to everyone. For per-client streams, build and send
+     * each client's frame.
+     */
+    void broadcast() {
+        if (queues.isEmpty()) {
+            return;
+        }
+        long now_ms = System.currentTimeMillis();
+        long timeout_ms = slow_client_timeout_ms;
+        WebStreamFrame shared_frame = null;
+        boolean shared_built = false;
+        int depth = 0;
+
+        for (WebStreamSendQueue queue : queues.values()) {
+            // Don't bother building anything for a client which has stopped listening
+            if (queue.disconnectIfStalled(now_ms, timeout_ms)) {
+                continue;
+            }
+            WebStreamFrame frame;
+            if (session_source != null) {
+                frame = session_source.buildFrame(queue.getSession());
+                if (frame != null) {
+                    frames_built++;
+                }
+            } else {
+                if (!shared_built) {
+                    shared_frame = source.buildFrame();
+                    shared_built = true;
+                    if (shared_frame != null) {
+                        frames_built++;
+                    }
+                }
+                frame = shared_frame;
+            }
+            if (frame != null) {
+                queue.offer(frame);
+            }
+            depth += queue.getDepth();
+        }
+        send_stats.recordQueueDepth(depth);
+    }
+
+
+    /**
+     * Queue an already-built frame for one subscribed client without blocking. Does nothing if the
+     * client isn't subscribed.
+     * 
+     * @param session Client to send to
+     * @param frame Message to send
+     */
+    void sendFrame(Session session, WebStreamFrame frame) {
+        WebStreamSendQueue queue = queues.get(session);
+        if (queue != null) {
+            queue.offer(frame);
+        }
+    }
+
+
+    // Called by the send queues as sends finish
+    void recordSent() {
+        frames_sent.incrementAndGet();
+    }
+
+
+    void recordSendFailure() {
+        send_failures.incrementAndGet();
+    }
+
+
+    void recordBytes(int byte_count) {
+        bytes_sent.addAndGet(byte_count);
+    }
+
+
+    /**
+     * @return Number of clients currently subscribed
+     */
+    int getSessionCount() {
+        return queues.size();
+    }
+
+
+    /**
+     * @return Queue, drop and disconnect statistics for this stream
+     */
+    StreamSendStats getSendStats() {
+        return send_stats;
+    }
+
+
+    /**
+     * @return Number of frames built (serialized) so far. Each one may have gone to many clients.
+     */
+    long getFramesBuilt() {
+        return frames_built;
+    }
+
+
+    /**
+     * @return Number of frame sends which completed, counting each client separately
+     */
+    long getFramesSent() {
+        return frames_sent.get();
+    }
+
+
+    /**
+     * @return Number of frame sends which failed (usually a client going away mid-send)
+     */
+    long getSendFailures() {
+        return send_failures.get();
+    }
+
+
+    /**
+     * @return Total bytes handed off for sending, counting each client separately
+     */
+    long getBytesSent() {
+        return bytes_sent.get();
+    }
+
+}
@@ -20,11 +20,10 @@ package org.usfirst.frc.team1736.lib.WebServer;
  *   if you would consider donating to our club to help further STEM education.
  */
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.Hashtable;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
-import org.json.simple.JSONObject;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * DESCRIPTION: <br>
@@ -37,20 +36,58 @@ import org.json.simple.JSONObject;
  * <ol>
  * <li>Instantiate class</li>
  * <li>On init, call newDial and newWebcam once per object to be displayed on the driver view
- * webpage.</li>
- * <li>During runtime, call setDialValue to update the dial value display</li>
+ * webpage. Keep the returned handle.</li>
+ * <li>During runtime, call setDialValue with the handle to update the dial value display. Setting
+ * a value only stores it - it is formatted for the webpage when the next update is sent, and only
+ * if it changed enough to look different.</li>
  * </ol>
  * 
  *
  */
 
 public class CasseroleDriverView {
-    /** The list of objects which are broadcast. Must be volatile to ensure atomic accesses */
-    static volatile Hashtable<String, DriverViewDial> dialObjects = new Hashtable<String, DriverViewDial>();
-    static volatile Hashtable<String, DriverViewWebcam> webcamObjects = new Hashtable<String, DriverViewWebcam>();
-    static volatile Hashtable<String, DriverViewBoolean> booleanObjects = new Hashtable<String, DriverViewBoolean>();
-    static volatile Hashtable<String, DriverViewStringBox> stringBoxObjects = new Hashtable<String, DriverViewStringBox>();
+    /** Returned when a new object couldn't be created. Setting a value on it does nothing. */
+    public static final int INVALID_HANDLE = -1;
 
+    /**
+     * All objects which are broadcast, in the order they were added. Index is the object's handle.
+     * The array is never modified once published - adding an object swaps in a new copy - so the
+     * web server thread can walk it without locking.
+     */
+    private static volatile DriverViewObject[] allObjects = new DriverViewObject[0];
+    private static volatile List<DriverViewObject> allObjectsList = Collections.emptyList();
+
+    /** Lookups for code still setting values by name. Keyed by the name given at creation. */
+    static final ConcurrentHashMap<String, Integer> dialHandles = new ConcurrentHashMap<String, Integer>();
+    static final ConcurrentHashMap<String, Integer> webcamHandles = new ConcurrentHashMap<String, Integer>();
+    static final ConcurrentHashMap<String, Integer> booleanHandles = new ConcurrentHashMap<String, Integer>();
+    static final ConcurrentHashMap<String, Integer> stringBoxHandles = new ConcurrentHashMap<String, Integer>();
+
+
+    /**
+     * Add a new object to the end of the list, replacing any old object with the same name and type
+     * in place so its handle stays the same.
+     * 
+     * @return handle for the object
+     */
+    private static synchronized int addObject(ConcurrentHashMap<String, Integer> handles, String name_in,
+            DriverViewObject obj) {
+        DriverViewObject[] new_objects;
+        int handle;
+        Integer existing = handles.get(name_in);
+        if(existing != null){
+            handle = existing.intValue();
+            new_objects = allObjects.clone();
+        } else {
+            handle = allObjects.length;
+            new_objects = Arrays.copyOf(allObjects, handle + 1);
+        }
+        new_objects[handle] = obj;
+        allObjects = new_objects;
+        allObjectsList = Collections.unmodifiableList(Arrays.asList(new_objects));
+        handles.put(name_in, handle);
+        return handle;
+    }
 
 
     /**
@@ -68,13 +105,40 @@ public class CasseroleDriverView {
      * @param step_in Step value between dial tick marks.
      * @param min_acceptable_in Lower limit of green display area on drawn dial.
      * @param max_acceptable_in Upper limit of green display area on drawn dial.
+     * @return handle to pass to setDialValue, or INVALID_HANDLE if the dial's settings were bad.
      */
-    @SuppressWarnings("unchecked")
-	public static void newDial(String name_in, double min_in, double max_in, double step_in, double min_acceptable_in,
+    public static int newDial(String name_in, double min_in, double max_in, double step_in, double min_acceptable_in,
             double max_acceptable_in) {
+    	return newDial(name_in, min_in, max_in, step_in, min_acceptable_in, max_acceptable_in,
+    			DriverViewDial.DEFAULT_DISPLAY_QUANTUM);
+    }
+
+
+    /**
+     * Create a new dial to display on the driver view webpage, which only updates the webpage when
+     * its value changes by at least display_quantum. Use a coarse quantum (ex: the step size) for
+     * noisy values where the driver only cares about the rough position of the needle.
+     * 
+     * @param name_in Name of the value to display. Also used to reference the value when updating
+     *        it.
+     * @param min_in Minimum value displayed on the dial.
+     * @param max_in Maximum value displayed on the dial.
+     * @param step_in Step value between dial tick marks.
+     * @param min_acceptable_in Lower limit of green display area on drawn dial.
+     * @param max_acceptable_in Upper limit of green display area on drawn dial.
+     * @param display_quantum Smallest change in value which is sent to the webpage. Default is 0.01,
+     *        the resolution of the number printed on the dial.
+     * @return handle to pass to setDialValue, or INVALID_HANDLE if the dial's settings were bad.
+     */
+    public static int newDial(String name_in, double min_in, double max_in, double step_in, double min_acceptable_in,
+            double max_acceptable_in, double display_quantum) {
     	
-    	DriverViewDial newDial = new DriverViewDial(name_in, min_in, max_in, step_in, min_acceptable_in, max_acceptable_in);
-    	dialObjects.put(name_in, newDial);
+    	DriverViewDial newDial = new DriverViewDial(name_in, min_in, max_in, step_in, min_acceptable_in, max_acceptable_in,
+    			display_quantum);
+    	if(!newDial.isValid()){
+    		return INVALID_HANDLE;
+    	}
+    	return addObject(dialHandles, name_in, newDial);
     }
 
 
@@ -90,14 +154,13 @@ public class CasseroleDriverView {
      * @param img_rotate_deg Degrees clockwise to rotate the image to be displayed. Crosshairs are
      *        drawn on top of the already-rotated image.
      * @param name_in Name of the web stream. Internal uses only, currently...
+     * @return handle to pass to setWebcamCrosshairs
      */
-    @SuppressWarnings("unchecked")
-	public static void newWebcam(String name_in, String url_in, double marker_x, double marker_y,
+    public static int newWebcam(String name_in, String url_in, double marker_x, double marker_y,
             double img_rotate_deg) {
     	
     	DriverViewWebcam newWebcam = new DriverViewWebcam( name_in, url_in, marker_x, marker_y, img_rotate_deg);
-    	webcamObjects.put(name_in, newWebcam);
-
+    	return addObject(webcamHandles, name_in, newWebcam);
     }
 
 
@@ -108,12 +171,12 @@ public class CasseroleDriverView {
      * 
      * @param name_in Name of the value to display. Also used to reference the value when updating
      *        it.
+     * @return handle to pass to setStringBox
      */
-    @SuppressWarnings("unchecked")
-	public static void newStringBox(String name_in) {
+    public static int newStringBox(String name_in) {
     	
     	DriverViewStringBox newStringbox = new DriverViewStringBox( name_in );
-    	stringBoxObjects.put(name_in, newStringbox);
+    	return addObject(stringBoxHandles, name_in, newStringbox);
     }
 
 
@@ -129,90 +192,159 @@ public class CasseroleDriverView {
      *        it.
      * @param color_in Color to display. Currently, only supported values are "red", "yellow", and
      *        "green".
+     * @return handle to pass to setBoolean
      */
-    @SuppressWarnings("unchecked")
-	public static void newBoolean(String name_in, String color_in) {
+    public static int newBoolean(String name_in, String color_in) {
 
     	DriverViewBoolean newBoolean = new DriverViewBoolean( name_in, color_in );
-    	booleanObjects.put(name_in, newBoolean);
+    	return addObject(booleanHandles, name_in, newBoolean);
+    }
+
+
+    /**
+     * Look up the object for a handle. Prints a warning if it's not there or is the wrong type.
+     */
+    private static DriverViewObject getObject(int handle, Class<? extends DriverViewObject> type) {
+    	DriverViewObject[] objects = allObjects;
+    	if(handle >= 0 && handle < objects.length && type.isInstance(objects[handle])){
+    		return objects[handle];
+    	}
+    	if(handle != INVALID_HANDLE){
+    		System.out.println("Warning: Driverview web server: Handle " + handle + " is not a " + type.getSimpleName() + ". No value set. ");
+    	}
+    	return null;
+    }
+
+
+    /**
+     * Display a new value on an existing dial at runtime. Safe to call from any thread, and does not
+     * lock or allocate.
+     * 
+     * @param handle Handle returned from newDial
+     * @param value_in Value to display on the dial. Should be in the min/max range assigned for the
+     *        dial, or the displayed value will be truncated.
+     */
+    public static void setDialValue(int handle, double value_in) {
+    	DriverViewObject obj = getObject(handle, DriverViewDial.class);
+    	if(obj != null){
+    		((DriverViewDial) obj).setVal(value_in);
+    	}
     }
 
 
     /**
-     * Display a new value on an existing dial at runtime
+     * Display a new value on an existing dial at runtime. Slower than setting by handle, as the name
+     * must be looked up each call.
      * 
      * @param name_in Name of the dial to update
      * @param value_in Value to display on the dial. Should be in the min/max range assigned for the
      *        dial, or the displayed value will be truncated.
      */
-    // might be called from different threads, but all calls go to the web server thread.
-    public static synchronized void setDialValue(String name_in, double value_in) {
-    	if(dialObjects.containsKey(name_in)){
-    		dialObjects.get(name_in).setVal(value_in);
+    public static void setDialValue(String name_in, double value_in) {
+    	Integer handle = dialHandles.get(name_in);
+    	if(handle != null){
+    		setDialValue(handle.intValue(), value_in);
     	} else {
     		System.out.println("Warning: Driverview web server: No dial named " + name_in + " exists yet. No value set. ");
     	}
     }
 
 
+    /**
+     * Display a new value on an existing string box at runtime. Safe to call from any thread.
+     * 
+     * @param handle Handle returned from newStringBox
+     * @param value_in String to display in the box.
+     */
+    public static void setStringBox(int handle, String value_in) {
+    	DriverViewObject obj = getObject(handle, DriverViewStringBox.class);
+    	if(obj != null){
+    		((DriverViewStringBox) obj).setVal(value_in);
+    	}
+    }
+
+
     /**
      * Display a new value on an existing string box at runtime
      * 
-     * @param name_in Name of the dial to update
-     * @param value_in Value to display on the dial. Should be in the min/max range assigned for the
-     *        dial, or the displayed value will be truncated.
+     * @param name_in Name of the string box to update
+     * @param value_in String to display in the box.
      */
-    // might be called from different threads, but all calls go to the web server thread.
-    public static synchronized void setStringBox(String name_in, String value_in) {
-    	if(stringBoxObjects.containsKey(name_in)){
-    		stringBoxObjects.get(name_in).setVal(value_in);
+    public static void setStringBox(String name_in, String value_in) {
+    	Integer handle = stringBoxHandles.get(name_in);
+    	if(handle != null){
+    		setStringBox(handle.intValue(), value_in);
     	} else {
     		System.out.println("Warning: Driverview web server: No stringbox named " + name_in + " exists yet. No value set. ");
     	}
     }
 
 
+    /**
+     * Display a new value on an existing boolean display. Safe to call from any thread, and does not
+     * lock or allocate.
+     * 
+     * @param handle Handle returned from newBoolean
+     * @param value_in Value to display on the indicator.
+     */
+    public static void setBoolean(int handle, boolean value_in) {
+    	DriverViewObject obj = getObject(handle, DriverViewBoolean.class);
+    	if(obj != null){
+    		((DriverViewBoolean) obj).setVal(value_in);
+    	}
+    }
+
+
     /**
      * Display a new value on an existing boolean display
      * 
-     * @param name_in Name of the dial to update
+     * @param name_in Name of the indicator to update
      * @param value_in Value to display on the indicator.
      */
-    // might be called from different threads, but all calls go to the web server thread.
-    public static synchronized void setBoolean(String name_in, boolean value_in) {
-    	if(booleanObjects.containsKey(name_in)){
-    		booleanObjects.get(name_in).setVal(value_in);
+    public static void setBoolean(String name_in, boolean value_in) {
+    	Integer handle = booleanHandles.get(name_in);
+    	if(handle != null){
+    		setBoolean(handle.intValue(), value_in);
     	} else {
     		System.out.println("Warning: Driverview web server: No boolean named " + name_in + " exists yet. No value set. ");
     	}
     }
     
     
+    /**
+     * Update the location of the crosshairs on the webcam stream. Safe to call from any thread, and
+     * does not lock or allocate.
+     * 
+     * @param handle Handle returned from newWebcam
+     */
+    public static void setWebcamCrosshairs(int handle, double x_pct, double y_pct) {
+    	DriverViewObject obj = getObject(handle, DriverViewWebcam.class);
+    	if(obj != null){
+    		((DriverViewWebcam) obj).setCrosshairs(x_pct, y_pct);
+    	}
+    }
+    
+    
     /**
      * Update the location of the crosshairs on the webcam stream
      * 
      */
-    // might be called from different threads, but all calls go to the web server thread.
-    public static synchronized void setWebcamCrosshairs(String name_in, double x_pct, double y_pct) {
-    	if(webcamObjects.containsKey(name_in)){
-    		webcamObjects.get(name_in).setCrosshairs(x_pct, y_pct);
+    public static void setWebcamCrosshairs(String name_in, double x_pct, double y_pct) {
+    	Integer handle = webcamHandles.get(name_in);
+    	if(handle != null){
+    		setWebcamCrosshairs(handle.intValue(), x_pct, y_pct);
     	} else {
     		System.out.println("Warning: Driverview web server: No webcam named " + name_in + " exists yet. No value set. ");
     	}
     }
     
     /**
-     * @return a set of DriverViewObjects which can be used for working on the set of all things on the driver view.
+     * @return all DriverViewObjects on the driver view, in the order they were added. The list is
+     *         read-only and is not changed by objects added later, so it is safe to iterate from any
+     *         thread.
      */
-    public static ArrayList<DriverViewObject> getAllObjects(){
-    	ArrayList<DriverViewObject> tmp_list = new ArrayList<DriverViewObject>(); 
-    	
-    	tmp_list.addAll(dialObjects.values());
-    	tmp_list.addAll( webcamObjects.values());
-    	tmp_list.addAll( booleanObjects.values());
-    	tmp_list.addAll( stringBoxObjects.values());
-    	
-    	return tmp_list;
+    public static List<DriverViewObject> getAllObjects(){
+    	return allObjectsList;
     }
 
 
@@ -21,7 +21,7 @@ package org.usfirst.frc.team1736.lib.WebServer;
  */
 
 import java.io.IOException;
-import java.util.TimerTask;
+import java.util.List;
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
 import org.eclipse.jetty.websocket.api.Session;
@@ -34,19 +34,42 @@ import org.eclipse.jetty.websocket.api.WebSocketAdapter;
  */
 
 public class CasseroleDriverViewStreamerSocket extends WebSocketAdapter {
-    private java.util.Timer updater = new java.util.Timer("Driver View Webpage Update");
-    private int updatePeriodMS = 100; // default update rate of 0.1s
-    volatile int test_data;
+    static final String STREAM_NAME = "Driver View";
+    static final int DEFAULT_UPDATE_PERIOD_MS = 100; // default update rate of 0.1s
+    /** Every widget is re-sent this often even if unchanged, in case a client missed an update */
+    static final long KEYFRAME_PERIOD_MS = 1000;
+
+    /** Time of the last full update. Only touched on the web stream thread. */
+    private static long last_keyframe_ms = 0;
+
+    /**
+     * One hub for all clients - values are serialized once per tick no matter how many are watching.
+     * A client which is behind only gets the newest update, and catches up on anything that skipped
+     * at the next keyframe.
+     */
+    static final CasseroleBroadcastHub hub = new CasseroleBroadcastHub(STREAM_NAME, DEFAULT_UPDATE_PERIOD_MS,
+            WebStreamQueuePolicy.LATEST_WINS,
+            new WebStreamFrameSource() {
+                @Override
+                public WebStreamFrame buildFrame() {
+                    long now_ms = System.currentTimeMillis();
+                    boolean keyframe = (now_ms - last_keyframe_ms >= KEYFRAME_PERIOD_MS);
+                    if (keyframe) {
+                        last_keyframe_ms = now_ms;
+                    }
+                    return buildUpdateFrame(keyframe);
+                }
+            });
 
 
     /**
      * Set the time between server broadcasts of current state. Default is 100 milliseconds. Faster
-     * update rates bog down both server and network.
+     * update rates bog down both server and network. Applies to all clients.
      * 
      * @param in_period_ms Broadcast period in milliseconds.
      */
     public void setUpdatePeriod(int in_period_ms) {
-        updatePeriodMS = in_period_ms;
+        hub.setPeriod(in_period_ms);
     }
 
 
@@ -77,63 +100,84 @@ public class CasseroleDriverViewStreamerSocket extends WebSocketAdapter {
                 full_obj.put("obj_array", data_array);
                 getRemote().sendString(full_obj.toJSONString());
 
+                // Broadcasts only carry what changed, so give this client everything's present value
+                getRemote().sendString(buildKeyframeFrame().getText());
+
             } catch (IOException e) {
                 e.printStackTrace(System.err);
             }
         }
 
-        // Start broadcasting data at the right rate. Delay a few period before broadcast start.
-        updater.scheduleAtFixedRate(new dataBroadcastTask(), updatePeriodMS * 10, updatePeriodMS);
+        // Start getting value updates. The init message above has already gone out, so it's sure to
+        // get there first.
+        hub.subscribe(sess);
     }
 
 
     @Override
     public void onWebSocketClose(int statusCode, String reason) {
-
+        Session sess = getSession();
         super.onWebSocketClose(statusCode, reason);
-        // On client disconnect, close down broadcast task
-        updater.cancel();
+        // On client disconnect, stop sending to it
+        if (sess != null) {
+            hub.unsubscribe(sess);
+        }
     }
 
 
     /**
-     * send socket data out to client
+     * Build the message with the present value of every widget which changed since the last tick
+     * (or every widget, for a keyframe). Called once per broadcast tick for all clients together.
+     * This is the only place widget values get formatted, so the robot code setting them never pays
+     * for it.
+     * 
+     * @param keyframe true to include every widget, changed or not
+     * @return message to send, or null if nothing changed
      */
-    @SuppressWarnings("unchecked")
-	public void broadcastData() {
-        if (isConnected()) {
-            try {
-                JSONObject full_obj = new JSONObject();
-                JSONArray data_array = new JSONArray();
-
-                // Package all data array elements into a JSON array
-                for (DriverViewObject obj : CasseroleDriverView.getAllObjects()) {
-                    data_array.add(obj.getUpdJsonObj());
-                }
-
-                // package array into object
-                full_obj.put("step", "valUpdate");
-                full_obj.put("obj_array", data_array);
-                getRemote().sendString(full_obj.toJSONString());
-
-            } catch (IOException e) {
-                e.printStackTrace(System.err);
+    static WebStreamFrame buildUpdateFrame(boolean keyframe) {
+        List<DriverViewObject> objects = CasseroleDriverView.getAllObjects();
+        StringBuilder msg = null;
+
+        for (int i = 0; i < objects.size(); i++) {
+            DriverViewObject obj = objects.get(i);
+            // Always take the flag, so a keyframe also counts as sending the change
+            if (!obj.takeDirty() && !keyframe) {
+                continue;
+            }
+            if (msg == null) {
+                msg = new StringBuilder(64 + objects.size() * 64);
+                msg.append("{\"step\":\"valUpdate\",\"obj_array\":[");
+            } else {
+                msg.append(',');
             }
+            obj.appendUpdJson(msg);
+        }
+
+        if (msg == null) {
+            return null;
         }
+        msg.append("]}");
+        return WebStreamFrame.text(msg.toString());
     }
 
+
     /**
-     * Timer task to periodically broadcast data to the client. Java multithreading magic here, do
-     * not touch! If you touch this, you will face the wrath of Chitulu, god of data streaming
-     * servers. May the oceans of 1's and 0's rise to praise him.
-     * 
-     * @author Chris Gerth
-     *
+     * Build a message with every widget's present value, for a client which just connected. Doesn't
+     * touch the changed flags, so the other clients still get their next update.
      */
-    private class dataBroadcastTask extends TimerTask {
-        public void run() {
-            broadcastData();
+    static WebStreamFrame buildKeyframeFrame() {
+        List<DriverViewObject> objects = CasseroleDriverView.getAllObjects();
+        StringBuilder msg = new StringBuilder(64 + objects.size() * 64);
+
+        msg.append("{\"step\":\"valUpdate\",\"obj_array\":[");
+        for (int i = 0; i < objects.size(); i++) {
+            if (i > 0) {
+                msg.append(',');
+            }
+            objects.get(i).appendUpdJson(msg);
         }
+        msg.append("]}");
+        return WebStreamFrame.text(msg.toString());
     }
 
 }
@@ -0,0 +1,57 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.IOException;
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.simple.JSONObject;
+import org.usfirst.frc.team1736.lib.Logging.FlightRecorder;
+
+/**
+ * Lets someone at the web page save the flight recorder's buffer on demand (ex: right after the
+ * robot did something odd). A GET to /blackbox starts a dump and replies with the file it will go
+ * to.
+ */
+class CasseroleFlightRecorderServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 6218437019544183523L;
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        JSONObject reply = new JSONObject();
+        String file_name = FlightRecorder.triggerDump("web");
+        reply.put("recording", FlightRecorder.isRecording());
+        reply.put("dump_started", file_name != null);
+        reply.put("file", file_name);
+        reply.put("last_dump", FlightRecorder.getLastDumpFileName());
+
+        response.setContentType("application/json;charset=utf-8");
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        response.getWriter().println(reply.toJSONString());
+    }
+
+}
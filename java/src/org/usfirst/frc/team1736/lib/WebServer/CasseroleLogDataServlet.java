@@ -0,0 +1,306 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.usfirst.frc.team1736.lib.Logging.IndexedLogReader;
+import org.usfirst.frc.team1736.lib.Logging.LogReader;
+
+/**
+ * Serves decimated data out of recorded logs, so a viewer can plot a long log without downloading
+ * or drawing every sample. Zoomed out, a viewer gets a few thousand points covering the whole log;
+ * zoomed in, it asks again for just the visible window, and gets full detail. Logs with a time
+ * index (see CsvLogger.setTimeIndexInterval()) only have the requested window read; others
+ * (including gzipped .csv.gz logs) are scanned from the start. Rows are downsampled as they are
+ * read, so memory use depends on the points asked for, not the size of the window. <br>
+ * <br>
+ * GET /logdata?file=&lt;name&gt; with optional parameters:
+ * <ul>
+ * <li>cols - comma-separated field names to return. Defaults to every field but time.</li>
+ * <li>start, end - time window, in the log's time units. Defaults to the whole log.</li>
+ * <li>points - about how many points to return per field. Default 1000, at most 10000. Asking for
+ * many fields at once lowers this, so no more than 20000 points come back in total.</li>
+ * <li>method - "lttb" (default, best looking) or "minmax" (never hides a spike)</li>
+ * <li>format - "json" (default) or "bin"</li>
+ * </ul>
+ * JSON replies look like {"file":..., "rows":..., "series":[{"name":..., "units":..., "time":[...],
+ * "value":[...]}, ...]}. Binary replies are little-endian: u32 number of series, then for each
+ * series u16 length + UTF-8 name, u16 length + UTF-8 units, u32 point count N, N f64 times, N f64
+ * values. Samples which are NaN or infinite are left out.
+ */
+class CasseroleLogDataServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 4471985923390176842L;
+
+    static final int DEFAULT_POINTS = 1000;
+    static final int MAX_POINTS = 10000;
+    static final int MAX_TOTAL_POINTS = 20000;
+
+    private final File log_dir;
+
+    /**
+     * @param log_dir_in directory logs are read from (ex: "/U/data_captures/")
+     */
+    CasseroleLogDataServlet(String log_dir_in) {
+        log_dir = new File(log_dir_in);
+    }
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+
+        File f = CasseroleLogFileServlet.resolveLogFile(log_dir, request.getParameter("file"));
+        if (f == null || !f.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        double start_time;
+        double end_time;
+        int points;
+        try {
+            start_time = getDoubleParam(request, "start", Double.NEGATIVE_INFINITY);
+            end_time = getDoubleParam(request, "end", Double.POSITIVE_INFINITY);
+            points = (int) Math.min(MAX_POINTS, Math.max(2, getDoubleParam(request, "points", DEFAULT_POINTS)));
+        } catch (NumberFormatException e) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Bad number: " + e.getMessage());
+            return;
+        }
+        boolean min_max = "minmax".equals(request.getParameter("method"));
+        boolean binary = "bin".equals(request.getParameter("format"));
+
+        // Stream the window through one downsampler per column. Column 0 (time) always comes first.
+        String[] field_names;
+        String[] unit_names;
+        int[] columns;
+        LogDownsampler[] samplers = null;
+        int total_rows = 0;
+        try {
+            LogReader scan_reader = null;
+            IndexedLogReader index_reader = openIndexed(f);
+            if (index_reader != null) {
+                field_names = index_reader.getFieldNames();
+                unit_names = index_reader.getUnitNames();
+            } else {
+                scan_reader = LogReader.open(f);
+                field_names = scan_reader.getFieldNames();
+                unit_names = scan_reader.getUnitNames();
+            }
+            try {
+                columns = getColumns(request.getParameter("cols"), field_names);
+                if (columns != null && columns.length > 1) {
+                    // Split the point budget, so asking for every column can't blow up the reply
+                    int num_series = columns.length - 1;
+                    int series_points = Math.max(2, Math.min(points, MAX_TOTAL_POINTS / num_series));
+                    samplers = new LogDownsampler[num_series];
+                    for (int s = 0; s < num_series; s++) {
+                        samplers[s] = new LogDownsampler(series_points, min_max);
+                    }
+
+                    double[] row = new double[field_names.length];
+                    boolean more = (index_reader != null) ? index_reader.seekToTime(start_time, columns) : true;
+                    while (more) {
+                        more = (index_reader != null) ? index_reader.readRow(row) : scan_reader.readRow(row);
+                        if (!more || row[0] > end_time) {
+                            break;
+                        }
+                        if (row[0] >= start_time) {
+                            total_rows++;
+                            for (int s = 0; s < num_series; s++) {
+                                samplers[s].add(row[0], row[columns[s + 1]]);
+                            }
+                        }
+                    }
+                }
+            } finally {
+                if (index_reader != null) {
+                    index_reader.close();
+                } else {
+                    scan_reader.close();
+                }
+            }
+        } catch (IOException e) {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not read log: " + e.getMessage());
+            return;
+        }
+        if (columns == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown column requested");
+            return;
+        }
+        if (samplers == null) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "No columns to return");
+            return;
+        }
+
+        double[][] out_time = new double[samplers.length][];
+        double[][] out_value = new double[samplers.length][];
+        for (int s = 0; s < samplers.length; s++) {
+            samplers[s].finish();
+            out_time[s] = samplers[s].getTimes();
+            out_value[s] = samplers[s].getValues();
+        }
+
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setHeader("Cache-Control", "no-cache");
+        if (binary) {
+            sendBinary(response, columns, field_names, unit_names, out_time, out_value);
+        } else {
+            sendJson(response, f, total_rows, columns, field_names, unit_names, out_time, out_value);
+        }
+    }
+
+    /*
+     * The log's index, if it has a usable one. A damaged index, or one with no entries yet (the
+     * log being written right now, before its first full interval), means scanning from the start.
+     */
+    private static IndexedLogReader openIndexed(File f) {
+        if (!IndexedLogReader.hasIndex(f)) {
+            return null;
+        }
+        IndexedLogReader reader;
+        try {
+            reader = new IndexedLogReader(f);
+        } catch (IOException e) {
+            System.out.println("WARNING: Log data: ignoring bad time index for " + f.getName() + ": " + e.getMessage());
+            return null;
+        }
+        if (reader.getSegmentCount() == 0) {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                // Only read from it, nothing to lose
+            }
+            return null;
+        }
+        return reader;
+    }
+
+    private static double getDoubleParam(HttpServletRequest request, String name, double default_val) {
+        String val = request.getParameter(name);
+        if (val == null || val.isEmpty()) {
+            return default_val;
+        }
+        return Double.parseDouble(val);
+    }
+
+    /*
+     * Time, followed by each requested column. Null if a requested column doesn't exist.
+     */
+    private static int[] getColumns(String cols_param, String[] field_names) {
+        if (cols_param == null || cols_param.isEmpty()) {
+            int[] columns = new int[field_names.length];
+            for (int i = 0; i < columns.length; i++) {
+                columns[i] = i;
+            }
+            return columns;
+        }
+        String[] names = cols_param.split(",");
+        int[] columns = new int[names.length + 1];
+        columns[0] = 0;
+        for (int i = 0; i < names.length; i++) {
+            columns[i + 1] = -1;
+            for (int c = 0; c < field_names.length; c++) {
+                if (field_names[c].equals(names[i].trim())) {
+                    columns[i + 1] = c;
+                    break;
+                }
+            }
+            if (columns[i + 1] < 0) {
+                return null;
+            }
+        }
+        return columns;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void sendJson(HttpServletResponse response, File f, int total_rows, int[] columns,
+            String[] field_names, String[] unit_names, double[][] out_time, double[][] out_value) throws IOException {
+        JSONObject reply = new JSONObject();
+        reply.put("file", f.getName());
+        reply.put("rows", total_rows);
+        JSONArray series_list = new JSONArray();
+        for (int s = 0; s < out_time.length; s++) {
+            JSONObject series = new JSONObject();
+            series.put("name", field_names[columns[s + 1]]);
+            series.put("units", unit_names[columns[s + 1]]);
+            JSONArray times = new JSONArray();
+            JSONArray values = new JSONArray();
+            for (int i = 0; i < out_time[s].length; i++) {
+                times.add(out_time[s][i]);
+                values.add(out_value[s][i]);
+            }
+            series.put("time", times);
+            series.put("value", values);
+            series_list.add(series);
+        }
+        reply.put("series", series_list);
+
+        response.setContentType("application/json;charset=utf-8");
+        response.getWriter().print(reply.toJSONString());
+    }
+
+    private static void sendBinary(HttpServletResponse response, int[] columns, String[] field_names,
+            String[] unit_names, double[][] out_time, double[][] out_value) throws IOException {
+        int num_series = out_time.length;
+        byte[][] names = new byte[num_series][];
+        byte[][] units = new byte[num_series][];
+        int len = 4;
+        for (int s = 0; s < num_series; s++) {
+            names[s] = field_names[columns[s + 1]].getBytes(StandardCharsets.UTF_8);
+            units[s] = unit_names[columns[s + 1]].getBytes(StandardCharsets.UTF_8);
+            len += 2 + names[s].length + 2 + units[s].length + 4 + out_time[s].length * 16;
+        }
+
+        ByteBuffer buf = ByteBuffer.allocate(len);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.putInt(num_series);
+        for (int s = 0; s < num_series; s++) {
+            buf.putShort((short) names[s].length);
+            buf.put(names[s]);
+            buf.putShort((short) units[s].length);
+            buf.put(units[s]);
+            buf.putInt(out_time[s].length);
+            for (double t : out_time[s]) {
+                buf.putDouble(t);
+            }
+            for (double v : out_value[s]) {
+                buf.putDouble(v);
+            }
+        }
+
+        response.setContentType("application/octet-stream");
+        response.setContentLength(len);
+        response.getOutputStream().write(buf.array(), 0, len);
+    }
+
+}
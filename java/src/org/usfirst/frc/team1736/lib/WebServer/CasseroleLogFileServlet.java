@@ -0,0 +1,323 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.zip.GZIPOutputStream;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+import org.eclipse.jetty.server.HttpOutput;
+import org.json.simple.JSONArray;
+import org.json.simple.JSONObject;
+import org.usfirst.frc.team1736.lib.Logging.CsvLogger;
+import org.usfirst.frc.team1736.lib.Logging.LogService;
+
+/**
+ * Serves up the robot's log directory over HTTP, as a faster and resumable replacement for pulling
+ * logs over FTP.
+ * <ul>
+ * <li>GET /logs/ - JSON list of every file with its size, modification time and ETag</li>
+ * <li>GET /logs/&lt;name&gt; - the file itself. Supports single byte-range requests (to resume
+ * interrupted downloads or fetch just the new end of a growing log), and gzip encoding of whole
+ * text files. Files are handed to the network straight from a memory map of the file, with no
+ * copying through Java buffers.</li>
+ * <li>DELETE /logs/&lt;name&gt; - remove a file once it's been safely downloaded. The log presently
+ * being written can't be deleted.</li>
+ * </ul>
+ */
+class CasseroleLogFileServlet extends HttpServlet {
+
+    private static final long serialVersionUID = -3318532461802496118L;
+
+    /** Files modified more recently than this are assumed to still be in use, and won't be deleted */
+    static final long IN_USE_GRACE_MS = 10000;
+
+    private final File log_dir;
+
+    /**
+     * @param log_dir_in directory to serve (ex: "/U/data_captures/")
+     */
+    CasseroleLogFileServlet(String log_dir_in) {
+        log_dir = new File(log_dir_in);
+    }
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        serve(request, response, true);
+    }
+
+    @Override
+    public void doHead(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        serve(request, response, false);
+    }
+
+    @Override
+    public void doDelete(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        File f = getRequestedFile(request);
+        if (f == null || !f.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        if (isInUse(f)) {
+            response.sendError(HttpServletResponse.SC_CONFLICT, "File is still being written");
+            return;
+        }
+        if (f.delete()) {
+            response.setStatus(HttpServletResponse.SC_NO_CONTENT);
+        } else {
+            response.sendError(HttpServletResponse.SC_INTERNAL_SERVER_ERROR, "Could not delete file");
+        }
+    }
+
+    private void serve(HttpServletRequest request, HttpServletResponse response, boolean send_body) throws IOException {
+        response.setHeader("Access-Control-Allow-Origin", "*");
+        String path = request.getPathInfo();
+        if (path == null || path.equals("/") || path.isEmpty()) {
+            sendListing(response, send_body);
+            return;
+        }
+
+        File f = getRequestedFile(request);
+        if (f == null || !f.isFile()) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+        sendFile(f, request, response, send_body);
+    }
+
+    /*
+     * Map the request path onto a file directly inside the log directory. Returns null for anything
+     * which tries to reach outside of it.
+     */
+    private File getRequestedFile(HttpServletRequest request) {
+        String path = request.getPathInfo();
+        if (path == null) {
+            return null;
+        }
+        return resolveLogFile(log_dir, path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    /*
+     * Look up a file by name directly inside the log directory. Returns null for anything which
+     * tries to reach outside of it.
+     */
+    static File resolveLogFile(File dir, String name) {
+        if (name == null || name.isEmpty() || name.contains("/") || name.contains("\\") || name.equals("..")
+                || name.equals(".")) {
+            return null;
+        }
+        return new File(dir, name);
+    }
+
+    private static boolean isInUse(File f) {
+        String active = CsvLogger.getActiveLogFileName();
+        if (active != null && new File(active).getAbsoluteFile().equals(f.getAbsoluteFile())) {
+            return true;
+        }
+        if (LogService.isFileOpen(f)) {
+            return true;
+        }
+        return System.currentTimeMillis() - f.lastModified() < IN_USE_GRACE_MS;
+    }
+
+    private static String getETag(File f) {
+        return "\"" + Long.toHexString(f.length()) + "-" + Long.toHexString(f.lastModified()) + "\"";
+    }
+
+    @SuppressWarnings("unchecked")
+    private void sendListing(HttpServletResponse response, boolean send_body) throws IOException {
+        File[] files = log_dir.listFiles();
+        if (files == null) {
+            files = new File[0];
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return a.getName().compareTo(b.getName());
+            }
+        });
+
+        JSONArray list = new JSONArray();
+        for (File f : files) {
+            if (!f.isFile()) {
+                continue;
+            }
+            JSONObject entry = new JSONObject();
+            entry.put("name", f.getName());
+            entry.put("size", f.length());
+            entry.put("modified", f.lastModified());
+            entry.put("etag", getETag(f));
+            entry.put("in_use", isInUse(f));
+            list.add(entry);
+        }
+
+        response.setContentType("application/json;charset=utf-8");
+        response.setHeader("Cache-Control", "no-cache");
+        response.setStatus(HttpServletResponse.SC_OK);
+        if (send_body) {
+            response.getWriter().println(list.toJSONString());
+        }
+    }
+
+    private void sendFile(File f, HttpServletRequest request, HttpServletResponse response, boolean send_body)
+            throws IOException {
+        try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.READ)) {
+            // Logs may still be growing. Serve whatever's there right now.
+            long size = channel.size();
+            String etag = getETag(f);
+            long start = 0;
+            long end = size - 1;
+            boolean partial = false;
+
+            response.setHeader("Accept-Ranges", "bytes");
+            response.setHeader("ETag", etag);
+            response.setDateHeader("Last-Modified", f.lastModified());
+            response.setHeader("Cache-Control", "no-cache");
+            response.setContentType(f.getName().endsWith(".csv") || f.getName().endsWith(".txt")
+                    ? "text/csv" : "application/octet-stream");
+
+            String range = request.getHeader("Range");
+            String if_range = request.getHeader("If-Range");
+            if (range != null && (if_range == null || if_range.equals(etag))) {
+                long[] bounds = parseRange(range, size);
+                if (bounds == null) {
+                    response.setHeader("Content-Range", "bytes */" + size);
+                    response.sendError(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+                    return;
+                }
+                if (bounds.length == 2) {
+                    start = bounds[0];
+                    end = bounds[1];
+                    partial = true;
+                }
+            }
+            long length = end - start + 1;
+
+            if (partial) {
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader("Content-Range", "bytes " + start + "-" + end + "/" + size);
+            } else {
+                response.setStatus(HttpServletResponse.SC_OK);
+            }
+
+            // Only whole text files get gzipped - binary logs are already dense, and gzipped ranges
+            // get complicated.
+            String accept = request.getHeader("Accept-Encoding");
+            boolean gzip = !partial && accept != null && accept.contains("gzip") && response.getContentType().startsWith("text/");
+            if (gzip) {
+                response.setHeader("Content-Encoding", "gzip");
+                response.setHeader("Vary", "Accept-Encoding");
+                if (send_body) {
+                    try (GZIPOutputStream out = new GZIPOutputStream(response.getOutputStream(), 65536)) {
+                        // transferTo may move less than asked for, so keep going until it's all sent
+                        WritableByteChannel out_channel = Channels.newChannel(out);
+                        long pos = 0;
+                        while (pos < size) {
+                            long sent = channel.transferTo(pos, size - pos, out_channel);
+                            if (sent <= 0) {
+                                break; // File got shorter under us
+                            }
+                            pos += sent;
+                        }
+                    }
+                }
+                return;
+            }
+
+            response.setContentLengthLong(length);
+            if (!send_body || length <= 0) {
+                return;
+            }
+
+            OutputStream out = response.getOutputStream();
+            if (out instanceof HttpOutput) {
+                // Jetty writes the mapped pages straight to the socket
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                ((HttpOutput) out).sendContent(mapped);
+            } else {
+                WritableByteChannel out_channel = Channels.newChannel(out);
+                long pos = start;
+                while (pos <= end) {
+                    long sent = channel.transferTo(pos, end - pos + 1, out_channel);
+                    if (sent <= 0) {
+                        break; // File got shorter under us
+                    }
+                    pos += sent;
+                }
+            }
+        }
+    }
+
+    /*
+     * Parse a "bytes=first-last" style Range header for a file of the given size.
+     * Returns {start, end} (inclusive), an empty array if the header should be ignored (malformed,
+     * or multiple ranges - the whole file is sent instead), or null if the range can't be satisfied.
+     */
+    static long[] parseRange(String header, long size) {
+        if (!header.startsWith("bytes=") || header.contains(",")) {
+            return new long[0];
+        }
+        String spec = header.substring("bytes=".length()).trim();
+        int dash = spec.indexOf('-');
+        if (dash < 0) {
+            return new long[0];
+        }
+        try {
+            String first = spec.substring(0, dash).trim();
+            String last = spec.substring(dash + 1).trim();
+            long start;
+            long end;
+            if (first.isEmpty()) {
+                // Suffix range: the last N bytes
+                long suffix = Long.parseLong(last);
+                if (suffix <= 0) {
+                    return null;
+                }
+                start = Math.max(0, size - suffix);
+                end = size - 1;
+            } else {
+                start = Long.parseLong(first);
+                end = last.isEmpty() ? size - 1 : Math.min(Long.parseLong(last), size - 1);
+            }
+            if (start >= size || start > end) {
+                return null;
+            }
+            return new long[] {start, end};
+        } catch (NumberFormatException e) {
+            return new long[0];
+        }
+    }
+
+}
@@ -25,8 +25,8 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.SortedSet;
-import java.util.TimerTask;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.json.simple.JSONArray;
 import org.json.simple.JSONObject;
@@ -41,8 +41,26 @@ import org.eclipse.jetty.websocket.api.WebSocketAdapter;
  */
 
 public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
-    private java.util.Timer updater = null;
-    private int updatePeriodMS = 250; // default update rate of 4 Hz
+    static final String STREAM_NAME = "RT Plot";
+    static final int DEFAULT_UPDATE_PERIOD_MS = 250; // default update rate of 4 Hz
+
+    /** Each client's own set of signals and read positions */
+    static final ConcurrentHashMap<Session, PlotSubscription> subscriptions =
+            new ConcurrentHashMap<Session, PlotSubscription>();
+
+    /**
+     * One hub and tick for all clients, but each client gets its own signals. Each update has new
+     * samples, so a client which is behind keeps a few and loses the oldest.
+     */
+    static final CasseroleBroadcastHub hub = new CasseroleBroadcastHub(STREAM_NAME, DEFAULT_UPDATE_PERIOD_MS,
+            WebStreamQueuePolicy.DROP_OLDEST,
+            new WebStreamSessionFrameSource() {
+                @Override
+                public WebStreamFrame buildFrame(Session session) {
+                    PlotSubscription sub = subscriptions.get(session);
+                    return (sub == null) ? null : sub.buildFrame();
+                }
+            });
 
     @Override
     public void onWebSocketText(String message) {
@@ -72,7 +90,7 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
         if(cmd.compareTo("start")==0){
         	handleSignalAcqList(args); 
         } else if (cmd.compareTo("stop")==0){
-        	handleStopAcq();
+        	handleStopAcq(getSession());
         } else if(cmd.compareTo("get_list")==0){
         	handleSignalListReq();
         } else {
@@ -91,9 +109,9 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
 
     @Override
     public void onWebSocketClose(int statusCode, String reason) {
-
+        Session sess = getSession();
         super.onWebSocketClose(statusCode, reason);
-        handleStopAcq();
+        handleStopAcq(sess);
     }
     
     /**
@@ -120,10 +138,13 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
     	List<String> signal_names = new ArrayList<String>(Arrays.asList(list.split(",")));
     	signal_names.removeAll(Arrays.asList("", null));
     	if(signal_names.size() > 0){
-    		CasseroleWebPlots.startAcq(signal_names);
-            // On client signal broadcast request, begin new task to braodcast data at a given interval
-        	updater = new java.util.Timer("Realtime Plot Webpage Update");
-            updater.scheduleAtFixedRate(new dataBroadcastTask(), 0, updatePeriodMS);
+    		Session sess = getSession();
+    		PlotSubscription old_sub = subscriptions.put(sess, CasseroleWebPlots.startAcq(signal_names));
+    		if(old_sub != null){
+    			old_sub.close();
+    		}
+            // On client signal broadcast request, start getting the periodic data broadcasts
+            hub.subscribe(sess);
     	}
  
     }
@@ -131,50 +152,18 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
     /**
      * Handle the user's request to stop sending data.
      */
-    private void handleStopAcq(){
-    	if(CasseroleWebPlots.acqActive){
-	    	CasseroleWebPlots.stopAcq();
-	        // On client transmit stop request, close down broadcast task
-	        updater.cancel();
-    	}
-    }
-    
-    
-    private JSONObject createPlotDataTxArrayObj(){
-        JSONObject tx_obj = new JSONObject();
-        JSONArray signal_array = new JSONArray();
-        
-        // Build up JSON structure of samples recorded.
-        for (PlotSignal sig : CasseroleWebPlots.activeSignalList) {
-        	
-        	JSONArray sample_arr = new JSONArray();
-        	
-        	PlotSample[] samples = sig.getAllSamples();
-        	if(samples != null){
-	        	for(PlotSample samp : samples){
-	        		if(samp != null){
-		        		JSONObject sample_obj = new JSONObject();
-		        		sample_obj.put("time", samp.getTime_sec());
-		        		sample_obj.put("val", samp.getVal());
-		        		sample_arr.add(sample_obj);
-	        		}
-	        	}
-        	}
-        	
-        	JSONObject signal_obj = new JSONObject();
-        	signal_obj.put("name", sig.getName());
-        	signal_obj.put("samples", sample_arr);
-        	
-        	signal_array.add(signal_obj);
+    private void handleStopAcq(Session sess){
+        // On client transmit stop request, stop sending to it
+        if(sess != null){
+            hub.unsubscribe(sess);
+            PlotSubscription sub = subscriptions.remove(sess);
+            if(sub != null){
+                sub.close();
+            }
         }
-        
-        // package array into object
-        tx_obj.put("type", "daq_update");
-        tx_obj.put("samples", signal_array);
-        
-    	return tx_obj;
     }
     
+    
     /**
      * @return A JSON object describing all available signals which can be plotted.
      */
@@ -189,6 +178,7 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
         	signal_info.put("name", sig.getName());
         	signal_info.put("display_name", sig.getDisplayName());
         	signal_info.put("units", sig.getUnits());
+        	signal_info.put("id", sig.getId());
         	signal_array.add(signal_info);
         }
         
@@ -198,36 +188,4 @@ public class CasseroleRTPlotStreamerSocket extends WebSocketAdapter {
     	return tx_obj;
     }
 
-
-    /**
-     * send socket data out to client
-     */
-    @SuppressWarnings("unchecked")
-	public void broadcastData() {
-        if (isConnected() & CasseroleWebPlots.acqActive) {
-        	
-        	JSONObject tx_obj = createPlotDataTxArrayObj();
-        	
-            try {
-                getRemote().sendString(tx_obj.toJSONString());
-            } catch (IOException e) {
-                e.printStackTrace(System.err);
-            }
-        }
-    }
-
-    /**
-     * Timer task to periodically broadcast data to the client. Java multithreading magic here, do
-     * not touch! If you touch this, you will face the wrath of Chitulu, god of data streaming
-     * servers. May the oceans of 1's and 0's rise to praise him.
-     * 
-     * @author Chris Gerth
-     *
-     */
-    private class dataBroadcastTask extends TimerTask {
-        public void run() {
-            broadcastData();
-        }
-    }
-
 }
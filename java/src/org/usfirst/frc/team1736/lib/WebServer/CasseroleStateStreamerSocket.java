@@ -20,10 +20,9 @@ package org.usfirst.frc.team1736.lib.WebServer;
  *   if you would consider donating to our club to help further STEM education.
  */
 
-import java.io.IOException;
-import java.util.TimerTask;
-import org.json.simple.JSONArray;
-import org.json.simple.JSONObject;
+import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
+
 import org.eclipse.jetty.websocket.api.Session;
 import org.eclipse.jetty.websocket.api.WebSocketAdapter;
 
@@ -34,25 +33,69 @@ import org.eclipse.jetty.websocket.api.WebSocketAdapter;
  */
 
 public class CasseroleStateStreamerSocket extends WebSocketAdapter {
-    private java.util.Timer updater = new java.util.Timer("State Webpage Update");
-    private int updatePeriodMS = 250; // default update rate of 0.25s
-    volatile int test_data;
+    static final String STREAM_NAME = "State";
+    static final int DEFAULT_UPDATE_PERIOD_MS = 250; // default update rate of 0.25s
+    /** Send an empty update at least this often, so idle pages (and the socket idle timeout) know we're alive */
+    static final long HEARTBEAT_PERIOD_MS = 2000;
+
+    /** Where each connected page is at */
+    static final ConcurrentHashMap<Session, StateStreamClient> clients =
+            new ConcurrentHashMap<Session, StateStreamClient>();
+
+    /**
+     * One hub for all clients. Each client gets the states changed since its last ack, but clients
+     * which are caught up all share the same serialized update. Every update holds everything
+     * since the client's last ack, so a client which is behind only needs the newest one.
+     */
+    static final CasseroleBroadcastHub hub = new CasseroleBroadcastHub(STREAM_NAME, DEFAULT_UPDATE_PERIOD_MS,
+            WebStreamQueuePolicy.LATEST_WINS,
+            new WebStreamSessionFrameSource() {
+                @Override
+                public WebStreamFrame buildFrame(Session session) {
+                    StateStreamClient client = clients.get(session);
+                    return (client == null) ? null : buildClientFrame(client);
+                }
+            });
+
+    // Updates built at the present state version, by base version. Only used on the stream thread.
+    private static final HashMap<Long, WebStreamFrame> delta_cache = new HashMap<Long, WebStreamFrame>();
+    private static long delta_cache_version = -1;
+    private static final StringBuilder msg_builder = new StringBuilder();
 
 
     /**
-     * Set the time between server broadcasts of current state. Default is 1 second. Faster update
-     * rates bog down both server and network.
+     * Set the time between server broadcasts of current state. Default is 250 milliseconds. Faster
+     * update rates bog down both server and network. Applies to all clients.
      * 
      * @param in_period_ms Broadcast period in milliseconds.
      */
     public void setUpdatePeriod(int in_period_ms) {
-        updatePeriodMS = in_period_ms;
+        hub.setPeriod(in_period_ms);
     }
 
 
     @Override
     public void onWebSocketText(String message) {
-        if (isConnected()) {
+        /*
+         * Messages from the page take the form <cmd>:<arg>
+         * ack:<version> - page has applied everything up to that state version
+         * resync: - page lost track, send it everything again
+         */
+        Session sess = getSession();
+        StateStreamClient client = (sess == null) ? null : clients.get(sess);
+        if (client == null) {
+            return;
+        }
+        String[] msg_parts = message.split(":");
+        if (msg_parts[0].equals("ack") && msg_parts.length == 2) {
+            try {
+                client.ack(Long.parseLong(msg_parts[1].trim()));
+            } catch (NumberFormatException e) {
+                System.out.println("ERROR: State page sent bad ack - " + message);
+            }
+        } else if (msg_parts[0].equals("resync")) {
+            client.needs_snapshot = true;
+        } else {
             System.out.printf("Got client's message: [%s]%n", message);
         }
     }
@@ -62,59 +105,96 @@ public class CasseroleStateStreamerSocket extends WebSocketAdapter {
     public void onWebSocketConnect(Session sess) {
 
         super.onWebSocketConnect(sess);
-        // On client connect, begin new task to braodcast data at 1 second intervals
-        test_data = 0;
-        updater.scheduleAtFixedRate(new dataBroadcastTask(), 0, updatePeriodMS);
+        // On client connect, start getting the periodic changes. The first tick sends everything.
+        clients.put(sess, new StateStreamClient());
+        hub.subscribe(sess);
     }
 
 
     @Override
     public void onWebSocketClose(int statusCode, String reason) {
-
+        Session sess = getSession();
         super.onWebSocketClose(statusCode, reason);
-        // On client disconnect, close down broadcast task
-        updater.cancel();
+        // On client disconnect, stop sending to it
+        if (sess != null) {
+            hub.unsubscribe(sess);
+            clients.remove(sess);
+        }
     }
 
 
     /**
-     * send socket data out to client
+     * Figure out what one client needs this tick.
+     * 
+     * @return every state if the client needs a snapshot, otherwise an update with the states
+     *         changed since the client's last ack, or null if there's nothing new and it's not time
+     *         for a heartbeat.
      */
-    @SuppressWarnings("unchecked")
-	public void broadcastData() {
-        if (isConnected()) {
-            try {
-                JSONObject full_obj = new JSONObject();
-                JSONArray data_array = new JSONArray();
-
-                // Package all data array elements into a JSON array
-                for (String name : CassesroleWebStates.ordered_state_name_list) {
-                    data_array.add(CassesroleWebStates.data_array_elements.get(name));
-                }
-
-                // package array into object
-                full_obj.put("state_array", data_array);
-                getRemote().sendString(full_obj.toJSONString());
-                test_data += 1;
+    static WebStreamFrame buildClientFrame(StateStreamClient client) {
+        long now = System.currentTimeMillis();
+        long version = CassesroleWebStates.state_version.get();
+        if (client.needs_snapshot) {
+            // Start the client's change tracking from this snapshot
+            client.needs_snapshot = false;
+            client.acked_version = version;
+            client.last_send_ms = now;
+            return buildStateFrame(-1, version);
+        }
+        long base = client.acked_version;
+        if (version <= base && now - client.last_send_ms < HEARTBEAT_PERIOD_MS) {
+            return null;
+        }
+        client.last_send_ms = now;
 
-            } catch (IOException e) {
-                e.printStackTrace(System.err);
-            }
+        // Clients which are caught up all have the same base, so they share one update
+        if (version != delta_cache_version) {
+            delta_cache.clear();
+            delta_cache_version = version;
+        }
+        WebStreamFrame frame = delta_cache.get(base);
+        if (frame == null) {
+            frame = buildStateFrame(base, version);
+            delta_cache.put(base, frame);
         }
+        return frame;
     }
 
+
     /**
-     * Timer task to periodically broadcast data to the client. Java multithreading magic here, do
-     * not touch! If you touch this, you will face the wrath of Chitulu, god of data streaming
-     * servers. May the oceans of 1's and 0's rise to praise him.
+     * Build a message with every state which changed after a given version. Values are formatted
+     * to text here, on the stream thread, and only for states which changed.
      * 
-     * @author Chris Gerth
-     *
+     * @param base_version Only include states changed after this. Negative for a full snapshot.
+     * @param version Present state version, read before calling. States which change while the
+     *        message is built may be included too - they'll just get sent again next time.
      */
-    private class dataBroadcastTask extends TimerTask {
-        public void run() {
-            broadcastData();
+    static WebStreamFrame buildStateFrame(long base_version, long version) {
+        StringBuilder msg = msg_builder;
+        msg.setLength(0);
+        msg.append("{\"type\":\"").append((base_version < 0) ? "snapshot" : "delta");
+        msg.append("\",\"base\":").append(base_version);
+        msg.append(",\"version\":").append(version);
+        msg.append(",\"state_array\":[");
+
+        // Add all changed states, in the order they were created
+        boolean first = true;
+        int count = CassesroleWebStates.getStateCount();
+        for (int handle = 0; handle < count; handle++) {
+            long changed = CassesroleWebStates.getChangeVersion(handle);
+            // Version 0 means never set - nothing to show yet
+            if (changed > 0 && changed > base_version) {
+                if (!first) {
+                    msg.append(',');
+                }
+                CassesroleWebStates.appendStateJson(handle, msg);
+                first = false;
+            }
         }
+
+        msg.append("]}");
+        // Deltas after a snapshot are based on its version, so a slow client's send queue must
+        // not swap it out for the next delta.
+        return WebStreamFrame.text(msg.toString(), base_version < 0);
     }
 
 }
@@ -0,0 +1,203 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.servlet.ServletException;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Serves the static web dashboard files (html, scripts, stylesheets, images) out of memory.
+ * <ul>
+ * <li>Every file in the resource directory is read, gzipped and hashed once when the server starts
+ * (see CachedWebResource), so a page load never touches the disk or compresses anything.</li>
+ * <li>Pages are sent with "Cache-Control: no-cache", so the browser always checks with us - but with
+ * a matching ETag that check is just a tiny 304 reply. Everything else may be reused by the browser
+ * for MAX_AGE_S without asking.</li>
+ * <li>Files changed or added on disk after startup are picked up on their next request.</li>
+ * <li>Requests for a directory get its index.html. Directories are not listed.</li>
+ * </ul>
+ */
+class CasseroleStaticResourceServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 4409158412720345125L;
+
+    static final String WELCOME_FILE = "index.html";
+    /** How long a browser may reuse a script/stylesheet/image without checking for a new one */
+    static final int MAX_AGE_S = 600;
+    /** Files bigger than this are sent from disk each time rather than held in memory */
+    static final long MAX_CACHED_FILE_BYTES = 4 * 1024 * 1024;
+
+    private final File resource_dir;
+
+    /** Loaded files, by path relative to the resource directory (ex: "js/rtplot.js") */
+    private final ConcurrentHashMap<String, CachedWebResource> cache =
+            new ConcurrentHashMap<String, CachedWebResource>();
+
+
+    /**
+     * @param resource_dir_in directory to serve (ex: "/home/lvuser/resources/")
+     */
+    CasseroleStaticResourceServlet(String resource_dir_in) {
+        resource_dir = new File(resource_dir_in);
+    }
+
+
+    /**
+     * Load everything up front, on the web server's thread as it starts.
+     */
+    @Override
+    public void init() throws ServletException {
+        long start = System.currentTimeMillis();
+        long total_bytes = preload(resource_dir, "");
+        System.out.println("Web server: cached " + cache.size() + " static files (" + total_bytes / 1024 + " kB) in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+
+    /*
+     * Load every file in a directory (and its subdirectories) into the cache.
+     * Returns the memory used.
+     */
+    private long preload(File dir, String rel_prefix) {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            System.out.println("WARNING: Web server resource directory " + dir + " could not be read.");
+            return 0;
+        }
+        long total_bytes = 0;
+        for (File f : files) {
+            String rel_path = rel_prefix + f.getName();
+            if (f.isDirectory()) {
+                total_bytes += preload(f, rel_path + "/");
+            } else if (f.isFile() && f.length() <= MAX_CACHED_FILE_BYTES) {
+                try {
+                    CachedWebResource resource = CachedWebResource.load(f);
+                    cache.put(rel_path, resource);
+                    total_bytes += resource.getMemoryBytes();
+                } catch (IOException e) {
+                    System.out.println("WARNING: Web server could not load " + f + ": " + e.getMessage());
+                }
+            }
+        }
+        return total_bytes;
+    }
+
+
+    @Override
+    public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        serve(request, response, true);
+    }
+
+
+    @Override
+    public void doHead(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
+        serve(request, response, false);
+    }
+
+
+    private void serve(HttpServletRequest request, HttpServletResponse response, boolean send_body)
+            throws IOException {
+        String path = request.getServletPath() + (request.getPathInfo() == null ? "" : request.getPathInfo());
+        String rel_path = path.startsWith("/") ? path.substring(1) : path;
+        if (rel_path.isEmpty() || rel_path.endsWith("/")) {
+            rel_path = rel_path + WELCOME_FILE;
+        }
+        if (!isSafePath(rel_path)) {
+            response.sendError(HttpServletResponse.SC_NOT_FOUND);
+            return;
+        }
+
+        File f = new File(resource_dir, rel_path);
+        CachedWebResource resource = cache.get(rel_path);
+        // One stat per request keeps us right if someone copies new files onto the RIO
+        if (resource == null || resource.isStale(f)) {
+            if (f.isDirectory()) {
+                // Relative links on the directory's index page need the trailing slash
+                response.sendRedirect(request.getRequestURI() + "/");
+                return;
+            }
+            if (!f.isFile()) {
+                cache.remove(rel_path);
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            if (f.length() > MAX_CACHED_FILE_BYTES) {
+                sendUncached(f, response, send_body);
+                return;
+            }
+            resource = CachedWebResource.load(f);
+            cache.put(rel_path, resource);
+        }
+
+        resource.send(request, response, getCacheControl(rel_path), send_body);
+    }
+
+
+    /*
+     * Send a file too big to cache straight from disk.
+     */
+    private static void sendUncached(File f, HttpServletResponse response, boolean send_body) throws IOException {
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(CachedWebResource.getContentType(f.getName()));
+        response.setHeader("Cache-Control", "no-cache");
+        response.setContentLengthLong(f.length());
+        if (send_body) {
+            Files.copy(f.toPath(), response.getOutputStream());
+        }
+    }
+
+
+    /*
+     * Pages are re-checked every load so changes show up right away. Everything they pull in can
+     * be reused for a while.
+     */
+    static String getCacheControl(String rel_path) {
+        String type = CachedWebResource.getContentType(rel_path);
+        if (type.startsWith("text/html")) {
+            return "no-cache";
+        }
+        return "max-age=" + MAX_AGE_S;
+    }
+
+
+    /*
+     * Reject anything which tries to reach outside the resource directory.
+     */
+    static boolean isSafePath(String rel_path) {
+        if (rel_path.contains("\\") || rel_path.startsWith("/")) {
+            return false;
+        }
+        for (String part : rel_path.split("/")) {
+            if (part.equals("..") || part.equals(".")) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -45,9 +45,8 @@ public class CasseroleWebPlots {
     /** The set of objects which are broadcast. Must be volatile to ensure atomic accesses */
     public static volatile Hashtable<String, PlotSignal> RTPlotSignals = new Hashtable<String, PlotSignal>();
     
-    public static ArrayList<PlotSignal> activeSignalList = null;
-    
-    public static boolean acqActive = false;
+    /** ID the next new signal gets in binary data frames. IDs are never reused. */
+    private static int nextSignalId = 0;
 
     /**
      * Put a new signal to the web interface, or update an existing one with the same name
@@ -66,46 +65,33 @@ public class CasseroleWebPlots {
         }
     }
     
-    public static void addNewSignal(String name, String units){
+    public static synchronized void addNewSignal(String name, String units){
     	String fixed_name = Utils.nameTransform(name);
     	if(!RTPlotSignals.containsKey(fixed_name)){
-    		PlotSignal new_obj = new PlotSignal(fixed_name, name, units);
+    		PlotSignal new_obj = new PlotSignal(fixed_name, name, units, nextSignalId++);
     		RTPlotSignals.put(fixed_name, new_obj);
     	}
     }
     
     /**
-     * Given an array of signal names from a client, starts acquisition of those signals 
+     * Given an array of signal names from one client, starts acquisition of those signals for that
+     * client. Other clients' acquisitions are not affected. 
      * @param signal_names
+     * @return The client's subscription. Close it to stop the acquisition.
      */
-    public static void startAcq(List<String> signal_names){
-    	activeSignalList = new ArrayList<PlotSignal>();
+    static PlotSubscription startAcq(List<String> signal_names){
+    	List<PlotSignal> signal_list = new ArrayList<PlotSignal>();
     	
     	for(String signal_name : signal_names){
-    		if(CasseroleWebPlots.RTPlotSignals.containsKey(signal_name)){
-    			activeSignalList.add(CasseroleWebPlots.RTPlotSignals.get(signal_name));
-    			CasseroleWebPlots.RTPlotSignals.get(signal_name).startAcq();
+    		PlotSignal signal = CasseroleWebPlots.RTPlotSignals.get(signal_name);
+    		if(signal != null){
+    			signal_list.add(signal);
     		} else {
     			System.out.println("ERROR: RT Plot client asked for non-existant signal " + signal_name);
     		}
     	}
-    	acqActive = true;
-    	
-    }
-    
-    /**
-     * Stops all current acquisition
-     */
-    public static void stopAcq(){
-    	acqActive = false;
-    	
-    	for(PlotSignal signal : activeSignalList){
-    		signal.stopAcq();
-    		signal.clearBuffer();
-    	}
-    	
-    	activeSignalList = null;
     	
+    	return new PlotSubscription(signal_list);
     }
 
 }
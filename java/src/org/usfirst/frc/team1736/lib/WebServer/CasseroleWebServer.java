@@ -21,7 +21,6 @@ package org.usfirst.frc.team1736.lib.WebServer;
  */
 
 import org.eclipse.jetty.server.Server;
-import org.eclipse.jetty.server.handler.ResourceHandler;
 import org.eclipse.jetty.servlet.ServletContextHandler;
 import org.eclipse.jetty.servlet.ServletHolder;
 
@@ -62,8 +61,8 @@ public class CasseroleWebServer {
         // I'm not entirely certain how we'll make this work, but here's my first pass:
         // The build process has been modified to also copy the web resource files to the RIO
         // Since we're not really concerned about security, the files are all accessible.
-        // the resource_handler makes the .html/.css files on the RIO available to a client to
-        // access freely.
+        // the static resource servlet makes the .html/.css files on the RIO available to a client to
+        // access freely. They're all loaded into memory (and gzipped) as the server starts.
         // index.html is served by default if no other specific file is requested.
         // The ServletContextHandler holds more specific types of content that can be served up
         // directly.
@@ -72,15 +71,11 @@ public class CasseroleWebServer {
         context.setContextPath("/");
         server.setHandler(context);
 
-        ResourceHandler resource_handler = new ResourceHandler();
-        resource_handler.setDirectoriesListed(true);
-        resource_handler.setWelcomeFiles(new String[] {"index.html"});
-        if (LOCAL_PC_DEBUG_PATHS) {
-            resource_handler.setResourceBase("resources/");
-        } else {
-            resource_handler.setResourceBase("/home/lvuser/resources/");
-        }
-        server.insertHandler(resource_handler);
+        // Static files - anything not matched by a more specific path below
+        ServletHolder resourceHolder = new ServletHolder("resources",
+                new CasseroleStaticResourceServlet(LOCAL_PC_DEBUG_PATHS ? "resources/" : "/home/lvuser/resources/"));
+        resourceHolder.setInitOrder(0); // load the files as the server starts, not on the first request
+        context.addServlet(resourceHolder, "/");
 
         // StateStreamer - broadcasts present state of robot. RPM's, voltages, etc.
         ServletHolder statestreamHolder = new ServletHolder("statestream", new CasseroleStateStreamerServlet());
@@ -99,6 +94,18 @@ public class CasseroleWebServer {
         ServletHolder rtPlotHolder = new ServletHolder("rtplotstream", new CasseroleRTPlotStreamerServlet());
         context.addServlet(rtPlotHolder, "/rtplot");
 
+        // Flight Recorder - saves the last few seconds of robot signals on request
+        ServletHolder blackboxHolder = new ServletHolder("blackbox", new CasseroleFlightRecorderServlet());
+        context.addServlet(blackboxHolder, "/blackbox");
+
+        // Log Files - lists and serves the log directory, a faster replacement for FTP
+        ServletHolder logFilesHolder = new ServletHolder("logs", new CasseroleLogFileServlet("/U/data_captures/"));
+        context.addServlet(logFilesHolder, "/logs/*");
+
+        // Log Data - downsampled signals out of recorded logs, for viewing long logs quickly
+        ServletHolder logDataHolder = new ServletHolder("logdata", new CasseroleLogDataServlet("/U/data_captures/"));
+        context.addServlet(logDataHolder, "/logdata");
+
         // Kick off server in brand new thread.
         // Thanks to Team 254 for an example of how to do this!
         Thread serverThread = new Thread(new Runnable() {
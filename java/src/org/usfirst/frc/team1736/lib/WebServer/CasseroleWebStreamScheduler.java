@@ -0,0 +1,199 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * DESCRIPTION: <br>
+ * One shared, low-priority thread which runs the periodic broadcast ticks for every web data
+ * stream (state, driver view, real-time plot...). Before, each connected socket made its own
+ * java.util.Timer thread, so a couple laptops with a few pages open each meant a pile of extra
+ * threads fighting the control loop for the RIO's two cores. It also keeps timing for each stream,
+ * so it's easy to see what the web pages are costing. <br>
+ * Ticks are run with a fixed delay between them, so a slow tick pushes the next one back rather
+ * than causing a burst of ticks to catch up. <br>
+ * USAGE:
+ * <ol>
+ * <li>Streamer sockets call schedule() on connect, and cancel the returned future on close.</li>
+ * <li>Optionally, call getTickTimer() or getTickTimers() to see how long each stream's ticks
+ * take, getSendStats() or getAllSendStats() to see how far behind its clients are, or
+ * setPublishToWebStates(true) to show both on the state page.</li>
+ * </ol>
+ * 
+ *
+ */
+public class CasseroleWebStreamScheduler {
+
+    static final String THREAD_NAME = "CasseroleWebStreamer";
+    static final int THREAD_PRIORITY = Thread.MIN_PRIORITY;
+    static final long PUBLISH_PERIOD_MS = 1000;
+
+    private static ScheduledThreadPoolExecutor executor = null;
+    private static final List<StreamTickTimer> tick_timers = new ArrayList<StreamTickTimer>();
+    private static final List<StreamSendStats> send_stats = new ArrayList<StreamSendStats>();
+    private static ScheduledFuture<?> publish_task = null;
+
+
+    private static synchronized ScheduledThreadPoolExecutor getExecutor() {
+        if (executor == null) {
+            executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread t = new Thread(r, THREAD_NAME);
+                    t.setPriority(THREAD_PRIORITY);
+                    t.setDaemon(true);
+                    return t;
+                }
+            });
+            // Cancelled ticks from closed sockets should not hang around in the queue
+            executor.setRemoveOnCancelPolicy(true);
+        }
+        return executor;
+    }
+
+
+    /**
+     * Start running a stream's tick periodically on the shared thread. Unlike a java.util.Timer,
+     * cancelling the returned future doesn't prevent scheduling again later (ex: on reconnect).
+     * 
+     * @param stream_name Name to record tick timing under. All ticks of the same stream (ex: one per
+     *        connected client) add into the same timer.
+     * @param tick Work to do each period
+     * @param initial_delay_ms Time before the first tick
+     * @param period_ms Time from the end of one tick to the start of the next
+     * @return Future to cancel when the stream should stop
+     */
+    static ScheduledFuture<?> schedule(String stream_name, final Runnable tick, long initial_delay_ms,
+            final long period_ms) {
+        final StreamTickTimer timer = getTickTimer(stream_name);
+        return getExecutor().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                try {
+                    tick.run();
+                } catch (RuntimeException e) {
+                    // A scheduled executor silently stops running a task which throws. Log and
+                    // keep going, since the next tick will probably be fine.
+                    e.printStackTrace(System.err);
+                }
+                timer.record(System.nanoTime() - start, period_ms);
+            }
+        }, initial_delay_ms, period_ms, TimeUnit.MILLISECONDS);
+    }
+
+
+    /**
+     * Get the timing record for one stream, creating it if it doesn't exist yet.
+     * 
+     * @param stream_name Name the stream was scheduled under
+     * @return timing record for the stream.
+     */
+    public static StreamTickTimer getTickTimer(String stream_name) {
+        synchronized (tick_timers) {
+            for (StreamTickTimer timer : tick_timers) {
+                if (timer.getName().equals(stream_name)) {
+                    return timer;
+                }
+            }
+            StreamTickTimer timer = new StreamTickTimer(stream_name);
+            tick_timers.add(timer);
+            return timer;
+        }
+    }
+
+
+    /**
+     * @return Timing records for all streams which have been scheduled so far.
+     */
+    public static List<StreamTickTimer> getTickTimers() {
+        synchronized (tick_timers) {
+            return new ArrayList<StreamTickTimer>(tick_timers);
+        }
+    }
+
+
+    /**
+     * Get the outbound queue statistics for one stream, creating them if they don't exist yet.
+     * 
+     * @param stream_name Name of the stream
+     * @return queue statistics for the stream.
+     */
+    public static StreamSendStats getSendStats(String stream_name) {
+        synchronized (send_stats) {
+            for (StreamSendStats stats : send_stats) {
+                if (stats.getName().equals(stream_name)) {
+                    return stats;
+                }
+            }
+            StreamSendStats stats = new StreamSendStats(stream_name);
+            send_stats.add(stats);
+            return stats;
+        }
+    }
+
+
+    /**
+     * @return Outbound queue statistics for all streams made so far.
+     */
+    public static List<StreamSendStats> getAllSendStats() {
+        synchronized (send_stats) {
+            return new ArrayList<StreamSendStats>(send_stats);
+        }
+    }
+
+
+    /**
+     * Enable or disable putting each stream's tick timing and queue statistics onto the state
+     * webpage, once a second.
+     * Publishing happens on the shared stream thread, not the caller's.
+     * 
+     * @param publish true to publish, false to stop.
+     */
+    public static synchronized void setPublishToWebStates(boolean publish) {
+        if (publish && publish_task == null) {
+            publish_task = getExecutor().scheduleWithFixedDelay(new Runnable() {
+                @Override
+                public void run() {
+                    for (StreamTickTimer timer : getTickTimers()) {
+                        CassesroleWebStates.putDouble("Web " + timer.getName() + " Tick Avg (ms)", timer.getAvgTickMs());
+                        CassesroleWebStates.putDouble("Web " + timer.getName() + " Tick Max (ms)", timer.getMaxTickMs());
+                    }
+                    for (StreamSendStats stats : getAllSendStats()) {
+                        CassesroleWebStates.putInteger("Web " + stats.getName() + " Queue Depth", stats.getQueueDepth());
+                        CassesroleWebStates.putDouble("Web " + stats.getName() + " Dropped Frames", stats.getDroppedFrameCount());
+                        CassesroleWebStates.putDouble("Web " + stats.getName() + " Slow Disconnects", stats.getSlowClientDisconnectCount());
+                    }
+                }
+            }, PUBLISH_PERIOD_MS, PUBLISH_PERIOD_MS, TimeUnit.MILLISECONDS);
+        } else if (!publish && publish_task != null) {
+            publish_task.cancel(false);
+            publish_task = null;
+        }
+    }
+
+}
@@ -20,8 +20,7 @@ package org.usfirst.frc.team1736.lib.WebServer;
  *   if you would consider donating to our club to help further STEM education.
  */
 
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.File;
 import java.io.IOException;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -31,36 +30,35 @@ import javax.servlet.http.HttpServletResponse;
 @SuppressWarnings("serial")
 class CasseroleWebpageFromFileServlet extends HttpServlet {
 
-    private final int FILE_CHUNK_CHARS = 100;
     public String filename = null;
 
+    /** The page, held in memory after the first request. Reloaded if the file changes. */
+    private volatile CachedWebResource page = null;
+
 
     public void setFile(String file_in) {
         filename = file_in;
+        page = null;
     }
 
 
     @Override
     public void doGet(HttpServletRequest request, HttpServletResponse response) throws ServletException, IOException {
-        char[] webpageFileContents = new char[FILE_CHUNK_CHARS];
-        int chars_read = 0;
-
-        response.setContentType("text/html");
-        response.setStatus(HttpServletResponse.SC_OK);
+        File f = new File(filename);
+        CachedWebResource cur_page = page;
 
-        // open the html file and feed it as the response, chunk by chunk
-        FileReader fstream = new FileReader(filename);
-        BufferedReader webpageFile = new BufferedReader(fstream);
-        System.out.println("Feeding client the data-viewing page...");
-
-        chars_read = webpageFile.read(webpageFileContents, 0, FILE_CHUNK_CHARS);
-        while (chars_read != -1) {
-            response.getWriter().write(webpageFileContents, 0, chars_read);
-            chars_read = webpageFile.read(webpageFileContents, 0, FILE_CHUNK_CHARS);
+        if (cur_page == null || cur_page.isStale(f)) {
+            if (!f.isFile()) {
+                response.sendError(HttpServletResponse.SC_NOT_FOUND);
+                return;
+            }
+            System.out.println("Loading the data-viewing page...");
+            cur_page = CachedWebResource.load(f, "text/html;charset=utf-8");
+            page = cur_page;
         }
 
-        webpageFile.close();
-
+        // Always let the browser check for a new version - if it hasn't changed, it's a tiny 304.
+        cur_page.send(request, response, "no-cache", true);
     }
 
 }
@@ -20,42 +20,230 @@ package org.usfirst.frc.team1736.lib.WebServer;
  *   if you would consider donating to our club to help further STEM education.
  */
 
-import java.util.ArrayList;
-import java.util.Hashtable;
-import java.util.List;
-import org.json.simple.JSONObject;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.json.simple.JSONValue;
 
 /**
  * DESCRIPTION: <br>
  * State View webpage definition class. Allows the user to send a variable set of state variables to
  * the webpage. The intent is a slower update rate in exchange for displaying large amounts of data.
  * Any and all internal variables in the software can be broadcast to the webpage. <br>
+ * Each state lives in a typed slot, found by an integer handle. Setting a state by handle is a
+ * couple of atomic array writes - no string formatting, lookups or locks. Values only get turned
+ * into text on the web streaming thread, and only when they've changed. The put* methods still
+ * work by name, at the cost of one hash lookup per call. <br>
  * ASSUMPTIONS: <br>
  * Be sure the casserole webserver is started at some point, otherwise the webpage won't be
  * displayed. Note that states can only be added (even at runtime), but never removed. At least not
- * yet... <br>
+ * yet... Each state should only be set from one thread at a time. <br>
  * USAGE:
  * <ol>
- * <li>Instantiate class</li>
- * <li>On init, call setCalWrangler with the calibration wrangler, if needed.</li>
- * <li>During runtime, call the put* methods to assign a new state value to be displayed.</li>
+ * <li>On init, call the register* methods once per state and keep the returned handles.</li>
+ * <li>During runtime, call the set* methods with a handle to assign a new state value to be
+ * displayed. (Or call the put* methods by name.)</li>
  * </ol>
  * 
  *
  */
 public class CassesroleWebStates {
-    /** The set of objects which are broadcast. Must be volatile to ensure atomic accesses */
-    static volatile Hashtable<String, JSONObject> data_array_elements = new Hashtable<String, JSONObject>();
-    static volatile List<String> ordered_state_name_list = new ArrayList<String>(); // Used to help
-                                                                                    // preserve the
-                                                                                    // order the
-                                                                                    // user creates
-                                                                                    // the state
-                                                                                    // displays in,
-                                                                                    // since the
-                                                                                    // hash table
-                                                                                    // destroys this
-                                                                                    // info
+
+    /** Returned by the register* methods if the state can't be created. Setting it does nothing. */
+    public static final int INVALID_HANDLE = -1;
+
+    static final int TYPE_DOUBLE = 0;
+    static final int TYPE_BOOLEAN = 1;
+    static final int TYPE_INTEGER = 2;
+    static final int TYPE_STRING = 3;
+
+    /** Slot storage, in blocks that never move once allocated. Replaced (copied) when it grows. */
+    private static volatile WebStateSlotChunk[] chunks = new WebStateSlotChunk[4];
+    /** Number of registered states. Slots below this are safe to read. */
+    private static volatile int slot_count = 0;
+    /** Handles by name, for the put* methods */
+    private static final ConcurrentHashMap<String, Integer> handles = new ConcurrentHashMap<String, Integer>();
+
+    /** Bumped every time any state changes value. Lets the streamer send only changes. */
+    static final AtomicLong state_version = new AtomicLong(0);
+
+
+    /**
+     * Create a state which shows a floating-point number. Nothing is shown until it's first set.
+     * 
+     * @param name Name for the state to display.
+     * @return handle to pass to setDouble(). If a state with this name already exists, its handle.
+     */
+    public static int registerDouble(String name) {
+        return register(name, TYPE_DOUBLE);
+    }
+
+
+    /**
+     * Create a state which shows a boolean. Nothing is shown until it's first set.
+     * 
+     * @param name Name for the state to display.
+     * @return handle to pass to setBoolean(). If a state with this name already exists, its handle.
+     */
+    public static int registerBoolean(String name) {
+        return register(name, TYPE_BOOLEAN);
+    }
+
+
+    /**
+     * Create a state which shows an integer. Nothing is shown until it's first set.
+     * 
+     * @param name Name for the state to display.
+     * @return handle to pass to setInteger(). If a state with this name already exists, its handle.
+     */
+    public static int registerInteger(String name) {
+        return register(name, TYPE_INTEGER);
+    }
+
+
+    /**
+     * Create a state which shows a string. Nothing is shown until it's first set.
+     * 
+     * @param name Name for the state to display.
+     * @return handle to pass to setString(). If a state with this name already exists, its handle.
+     */
+    public static int registerString(String name) {
+        return register(name, TYPE_STRING);
+    }
+
+
+    private static synchronized int register(String name, int type) {
+        Integer existing = handles.get(name);
+        if (existing != null) {
+            return existing;
+        }
+
+        int handle = slot_count;
+        int chunk_idx = handle >> WebStateSlotChunk.CHUNK_BITS;
+        WebStateSlotChunk[] cur_chunks = chunks;
+        if (chunk_idx >= cur_chunks.length) {
+            WebStateSlotChunk[] new_chunks = new WebStateSlotChunk[cur_chunks.length * 2];
+            System.arraycopy(cur_chunks, 0, new_chunks, 0, cur_chunks.length);
+            cur_chunks = new_chunks;
+            chunks = new_chunks;
+        }
+        if (cur_chunks[chunk_idx] == null) {
+            cur_chunks[chunk_idx] = new WebStateSlotChunk();
+        }
+
+        WebStateSlotChunk chunk = cur_chunks[chunk_idx];
+        int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+        chunk.names[idx] = name;
+        chunk.types[idx] = type;
+        chunk.json_prefixes[idx] = "{\"name\":\"" + JSONValue.escape(name) + "\",\"value\":";
+
+        // Publish - the volatile write makes the slot's setup visible to anyone who sees the new count
+        slot_count = handle + 1;
+        handles.put(name, handle);
+        return handle;
+    }
+
+
+    /**
+     * Set a state's value. Numbers set on a string state get formatted here, so avoid mixing types.
+     * 
+     * @param handle Handle from registerDouble()
+     * @param value Double Floating-point value to display
+     */
+    public static void setDouble(int handle, double value) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        if (chunk != null) {
+            int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+            switch (chunk.types[idx]) {
+                case TYPE_DOUBLE:
+                    setBits(chunk, idx, Double.doubleToLongBits(value));
+                    break;
+                case TYPE_STRING:
+                    setStringSlot(chunk, idx, Double.toString(value));
+                    break;
+                case TYPE_BOOLEAN:
+                    setBits(chunk, idx, (value != 0) ? 1 : 0);
+                    break;
+                default:
+                    setBits(chunk, idx, (long) value);
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Set a state's value.
+     * 
+     * @param handle Handle from registerBoolean()
+     * @param value Boolean value to display
+     */
+    public static void setBoolean(int handle, boolean value) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        if (chunk != null) {
+            int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+            switch (chunk.types[idx]) {
+                case TYPE_DOUBLE:
+                    setBits(chunk, idx, Double.doubleToLongBits(value ? 1.0 : 0.0));
+                    break;
+                case TYPE_STRING:
+                    setStringSlot(chunk, idx, Boolean.toString(value));
+                    break;
+                default:
+                    setBits(chunk, idx, value ? 1 : 0);
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Set a state's value.
+     * 
+     * @param handle Handle from registerInteger()
+     * @param value Integer value to display
+     */
+    public static void setInteger(int handle, int value) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        if (chunk != null) {
+            int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+            switch (chunk.types[idx]) {
+                case TYPE_DOUBLE:
+                    setBits(chunk, idx, Double.doubleToLongBits(value));
+                    break;
+                case TYPE_STRING:
+                    setStringSlot(chunk, idx, Integer.toString(value));
+                    break;
+                case TYPE_BOOLEAN:
+                    setBits(chunk, idx, (value != 0) ? 1 : 0);
+                    break;
+                default:
+                    setBits(chunk, idx, value);
+                    break;
+            }
+        }
+    }
+
+
+    /**
+     * Set a state's value. Setting a string on a number state turns it into a string state from then
+     * on (numbers set later get formatted as text).
+     * 
+     * @param handle Handle from registerString()
+     * @param value String value to display
+     */
+    public static void setString(int handle, String value) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        if (chunk != null) {
+            int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+            if (chunk.types[idx] != TYPE_STRING) {
+                // Readers check the version before the type, so the bump in setStringSlot publishes this
+                chunk.types[idx] = TYPE_STRING;
+                chunk.versions.set(idx, 0);
+            }
+            setStringSlot(chunk, idx, value);
+        }
+    }
 
 
     /**
@@ -65,7 +253,7 @@ public class CassesroleWebStates {
      * @param value Double Floating-point value to display
      */
     public static void putDouble(String name, double value) {
-        putGeneric(name, Double.toString(value));
+        setDouble(getHandle(name, TYPE_DOUBLE), value);
     }
 
 
@@ -76,7 +264,7 @@ public class CassesroleWebStates {
      * @param value Boolean value to display
      */
     public static void putBoolean(String name, boolean value) {
-        putGeneric(name, Boolean.toString(value));
+        setBoolean(getHandle(name, TYPE_BOOLEAN), value);
     }
 
 
@@ -87,7 +275,7 @@ public class CassesroleWebStates {
      * @param value Integer value to display
      */
     public static void putInteger(String name, int value) {
-        putGeneric(name, Integer.toString(value));
+        setInteger(getHandle(name, TYPE_INTEGER), value);
     }
 
 
@@ -98,24 +286,94 @@ public class CassesroleWebStates {
      * @param value String value to display
      */
     public static void putString(String name, String value) {
-        putGeneric(name, value);
+        setString(getHandle(name, TYPE_STRING), value);
+    }
+
+
+    private static int getHandle(String name, int type) {
+        Integer handle = handles.get(name);
+        return (handle != null) ? handle : register(name, type);
+    }
+
+
+    private static WebStateSlotChunk getChunk(int handle) {
+        if (handle < 0 || handle >= slot_count) {
+            return null;
+        }
+        return chunks[handle >> WebStateSlotChunk.CHUNK_BITS];
+    }
+
+
+    private static void setBits(WebStateSlotChunk chunk, int idx, long new_bits) {
+        // Only count it as a change if it actually changed, so unchanging states aren't resent
+        if (chunk.versions.get(idx) == 0 || chunk.bits.get(idx) != new_bits) {
+            chunk.bits.set(idx, new_bits);
+            chunk.versions.set(idx, state_version.incrementAndGet());
+        }
+    }
+
+
+    private static void setStringSlot(WebStateSlotChunk chunk, int idx, String value) {
+        String old_value = chunk.strings.get(idx);
+        if (chunk.versions.get(idx) == 0 || (value == null ? old_value != null : !value.equals(old_value))) {
+            chunk.strings.set(idx, value);
+            chunk.versions.set(idx, state_version.incrementAndGet());
+        }
+    }
+
+
+    /**
+     * @return Number of states registered so far. Handles are 0 to this minus one.
+     */
+    static int getStateCount() {
+        return slot_count;
     }
 
 
-    @SuppressWarnings("unchecked")
-	private static void putGeneric(String name, String value) {
+    /**
+     * @return state_version at which a state last changed, or 0 if it has never been set.
+     */
+    static long getChangeVersion(int handle) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        return (chunk == null) ? 0 : chunk.versions.get(handle & WebStateSlotChunk.CHUNK_MASK);
+    }
 
-        if (data_array_elements.containsKey(name)) {
-            data_array_elements.get(name).put("value", value);
 
-        } else {
-            JSONObject new_obj = new JSONObject();
-            new_obj.put("name", name);
-            new_obj.put("value", value);
-            data_array_elements.put(name, new_obj);
-            ordered_state_name_list.add(name);
+    /**
+     * Add a state's JSON entry ({"name":...,"value":...}) to a message being built. The value is
+     * formatted here, once per change, and cached for later messages. Stream thread only.
+     * 
+     * @param handle state to add
+     * @param out message being built
+     */
+    static void appendStateJson(int handle, StringBuilder out) {
+        WebStateSlotChunk chunk = getChunk(handle);
+        if (chunk == null) {
+            return;
+        }
+        int idx = handle & WebStateSlotChunk.CHUNK_MASK;
+        long version = chunk.versions.get(idx);
+        if (chunk.formatted_values[idx] == null || chunk.formatted_versions[idx] != version) {
+            chunk.formatted_values[idx] = formatValue(chunk, idx);
+            chunk.formatted_versions[idx] = version;
         }
+        out.append(chunk.json_prefixes[idx]).append(chunk.formatted_values[idx]).append('}');
+    }
+
 
+    private static String formatValue(WebStateSlotChunk chunk, int idx) {
+        long val_bits = chunk.bits.get(idx);
+        switch (chunk.types[idx]) {
+            case TYPE_DOUBLE:
+                return "\"" + Double.toString(Double.longBitsToDouble(val_bits)) + "\"";
+            case TYPE_BOOLEAN:
+                return (val_bits != 0) ? "\"true\"" : "\"false\"";
+            case TYPE_INTEGER:
+                return "\"" + Long.toString(val_bits) + "\"";
+            default:
+                String str = chunk.strings.get(idx);
+                return (str == null) ? "null" : "\"" + JSONValue.escape(str) + "\"";
+        }
     }
 
 }
@@ -0,0 +1,143 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Desktop self-check for PlotSampleRing. One thread writes a long run of numbered samples as fast as
+ * it can while another reads them back, sometimes stalling so it falls behind and gets lapped.
+ * Every sample read must be whole (time and value from the same add() call) and in order, and the
+ * samples read plus the ones reported dropped must account for every sample written. <br>
+ * <br>
+ * USAGE: <br>
+ * java -cp &lt;classpath&gt; org.usfirst.frc.team1736.lib.WebServer.DesktopTestPlotSampleRing
+ * [number of samples] <br>
+ * Defaults to 20 million samples. Prints each failure, and exits with status 1 if there were any.
+ *
+ *
+ */
+public class DesktopTestPlotSampleRing {
+
+    private static final int RING_CAPACITY = 1024;
+
+    private static int failures = 0;
+
+    public static void main(String args[]) throws InterruptedException {
+        long num_samples = (args.length > 0) ? Long.parseLong(args[0]) : 20000000L;
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 1 - single thread wraparound");
+        testWraparound();
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println("Testcase 2 - " + num_samples + " samples against a slow reader");
+        testConcurrent(num_samples);
+
+        System.out.println("~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~~");
+        System.out.println(failures + " failures");
+        if (failures > 0) {
+            System.exit(1);
+        }
+    }
+
+    private static void check(boolean ok, String what) {
+        if (!ok) {
+            failures++;
+            System.out.println("FAIL: " + what);
+        }
+    }
+
+    private static void testWraparound() {
+        PlotSampleRing ring = new PlotSampleRing(8);
+        PlotSampleBuffer buf = new PlotSampleBuffer(8);
+        long cursor = ring.getWriteCursor();
+
+        for (int i = 0; i < 5; i++) {
+            ring.add(i, -i);
+        }
+        cursor = ring.read(cursor, buf);
+        check(buf.count == 5 && buf.dropped == 0 && buf.time[0] == 0 && buf.value[4] == -4,
+                "read before wrapping got " + buf.count + " samples, " + buf.dropped + " dropped");
+
+        // Lap the reader. The oldest sample still in the ring may be mid-overwrite, so it's dropped
+        // too - 20 written, 7 usable.
+        for (int i = 5; i < 25; i++) {
+            ring.add(i, -i);
+        }
+        cursor = ring.read(cursor, buf);
+        check(buf.count == 7 && buf.dropped == 13, "lapped read got " + buf.count + " samples, " + buf.dropped
+                + " dropped");
+        check(buf.time[0] == 18 && buf.time[buf.count - 1] == 24, "lapped read returned the wrong samples");
+
+        cursor = ring.read(cursor, buf);
+        check(buf.count == 0 && buf.dropped == 0 && cursor == 25, "read with nothing new returned samples");
+    }
+
+    private static void testConcurrent(final long num_samples) throws InterruptedException {
+        final PlotSampleRing ring = new PlotSampleRing(RING_CAPACITY);
+        PlotSampleBuffer buf = new PlotSampleBuffer(RING_CAPACITY);
+        long cursor = ring.getWriteCursor();
+
+        Thread writer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (long i = 0; i < num_samples; i++) {
+                    // Time and value both encode the sample number, so a torn sample shows up
+                    ring.add(i, i * 2.0 + 1.0);
+                }
+            }
+        });
+        writer.start();
+
+        long received = 0;
+        long dropped = 0;
+        long reads = 0;
+        boolean done = false;
+        while (!done) {
+            done = !writer.isAlive(); // One more read after the writer finishes picks up the tail
+            long expected = cursor;
+            cursor = ring.read(cursor, buf);
+            expected += buf.dropped;
+            for (int i = 0; i < buf.count; i++) {
+                if (buf.time[i] != expected + i || buf.value[i] != (expected + i) * 2.0 + 1.0) {
+                    check(false, "sample " + (expected + i) + " read back as (" + buf.time[i] + ", " + buf.value[i]
+                            + ")");
+                    break;
+                }
+            }
+            received += buf.count;
+            dropped += buf.dropped;
+            reads++;
+
+            // Fall behind now and then, so the writer laps us
+            if (reads % 64 == 0) {
+                Thread.sleep(1);
+            }
+        }
+        writer.join();
+
+        System.out.println(received + " received, " + dropped + " dropped in " + reads + " reads");
+        check(received + dropped == num_samples, "received plus dropped is " + (received + dropped) + ", wrote "
+                + num_samples);
+        check(cursor == num_samples, "reader cursor ended at " + cursor);
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.usfirst.frc.team1736.lib.WebServer;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 /*
  *******************************************************************************************
@@ -27,12 +28,12 @@ class DriverViewBoolean extends DriverViewObject {
     /** JSON object for initializing the Boolean indicator */
     private JSONObject boolJsonInitObj;
     
-    /** JSON object for Updating the Boolean indicator */
-    private JSONObject boolJsonUpdateObj;
+    /** Start of the JSON object for Updating the Boolean indicator, up to the value */
+    private String boolJsonUpdatePrefix;
     
 	String name;
 	String color;
-	boolean value;
+	volatile boolean value;
 	
 	public DriverViewBoolean(String name_in, String color_in){
 		
@@ -47,10 +48,7 @@ class DriverViewBoolean extends DriverViewObject {
         boolJsonInitObj.put("displayName", name_in);
         boolJsonInitObj.put("color", color_in);
         
-        boolJsonUpdateObj = new JSONObject();
-        boolJsonUpdateObj.put("type", "boolean");
-        boolJsonUpdateObj.put("name", name);
-        boolJsonUpdateObj.put("value", "False");
+        boolJsonUpdatePrefix = "{\"type\":\"boolean\",\"name\":\"" + JSONValue.escape(name) + "\",\"value\":";
 
 	}
 
@@ -61,17 +59,14 @@ class DriverViewBoolean extends DriverViewObject {
 	}
 
 	@Override
-	public JSONObject getUpdJsonObj() {
-		// TODO Auto-generated method stub
-		return boolJsonUpdateObj;
+	public void appendUpdJson(StringBuilder out) {
+		out.append(boolJsonUpdatePrefix).append(value ? "\"True\"}" : "\"False\"}");
 	}
 	
 	public void setVal(boolean value_in) {
-		value = value_in;
-		if(value){
-			boolJsonUpdateObj.put("value", "True");
-		} else {
-			boolJsonUpdateObj.put("value", "False");
+		if(value_in != value){
+			value = value_in;
+			markDirty();
 		}
 	}
 
@@ -1,6 +1,7 @@
 package org.usfirst.frc.team1736.lib.WebServer;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 /*
  *******************************************************************************************
@@ -25,12 +26,14 @@ import org.json.simple.JSONObject;
 class DriverViewDial extends DriverViewObject {
 	
     static final String VAL_DISPLAY_FORMATTER = "%5.2f";
+    /** Smallest change shown by VAL_DISPLAY_FORMATTER. Changes smaller than this aren't worth sending. */
+    static final double DEFAULT_DISPLAY_QUANTUM = 0.01;
 	
     /** JSON object for initializing the Dial */
     private JSONObject dialJsonInitObj;
     
-    /** JSON object for Updating the Dial */
-    private JSONObject dialJsonUpdateObj;
+    /** Start of the JSON object for Updating the Dial, up to the value */
+    private String dialJsonUpdatePrefix;
     
     /** Properties of this dial */
     private String name;
@@ -39,11 +42,23 @@ class DriverViewDial extends DriverViewObject {
     private double step;
     private double min_acceptable;
     private double max_acceptable;
+    private double display_quantum;
     
-    private double cur_val;
+    /** Written by the robot code, read when an update is sent. Volatile doubles are read and written whole. */
+    private volatile double cur_val;
+    /** Quantized value last set - only touched by the robot code */
+    private long cur_val_step;
+    
+    /** False if the constructor arguments were bad, and the dial shouldn't be shown */
+    private boolean valid = false;
 	
 	public DriverViewDial(String name_in, double min_in, double max_in, double step_in, double min_acceptable_in,
             double max_acceptable_in){
+		this(name_in, min_in, max_in, step_in, min_acceptable_in, max_acceptable_in, DEFAULT_DISPLAY_QUANTUM);
+	}
+	
+	public DriverViewDial(String name_in, double min_in, double max_in, double step_in, double min_acceptable_in,
+            double max_acceptable_in, double display_quantum_in){
 		
         // Sanitize user inputs
         if (min_in >= max_in) {
@@ -61,6 +76,11 @@ class DriverViewDial extends DriverViewObject {
                     + " has too small a step size. Make sure the step size is smaller than the range of the dial. Not adding dial.");
             return;
         }
+        if (!(display_quantum_in > 0)) {
+            System.out.println("WARNING: new dial " + name_in
+                    + " has a display quantum which is not positive. Using " + DEFAULT_DISPLAY_QUANTUM + " instead.");
+            display_quantum_in = DEFAULT_DISPLAY_QUANTUM;
+        }
         
         //save data
         name = Utils.nameTransform(name_in);
@@ -69,7 +89,9 @@ class DriverViewDial extends DriverViewObject {
         step = step_in;
         min_acceptable = min_acceptable_in;
         max_acceptable = max_acceptable_in;
+        display_quantum = display_quantum_in;
         cur_val = min_in;
+        cur_val_step = quantize(min_in, display_quantum);
         
         //Create the JSON object for defining the init data for the dial
         dialJsonInitObj = new JSONObject();
@@ -83,11 +105,9 @@ class DriverViewDial extends DriverViewObject {
         dialJsonInitObj.put("step", step);
         
         
-        //Create the JSON object for defining the update data for the dial
-        dialJsonUpdateObj = new JSONObject();
-        dialJsonUpdateObj.put("type", "dial");
-        dialJsonUpdateObj.put("name", name);
-        dialJsonUpdateObj.put("value", String.format(VAL_DISPLAY_FORMATTER, min_in));
+        //Pre-build the part of the update data for the dial which never changes
+        dialJsonUpdatePrefix = "{\"type\":\"dial\",\"name\":\"" + JSONValue.escape(name) + "\",\"value\":\"";
+        valid = true;
         return;
 	}
 	
@@ -106,13 +126,24 @@ class DriverViewDial extends DriverViewObject {
 	}
 
 	@Override
-	public JSONObject getUpdJsonObj(){
-		return dialJsonUpdateObj;
+	public void appendUpdJson(StringBuilder out){
+		out.append(dialJsonUpdatePrefix).append(String.format(VAL_DISPLAY_FORMATTER, cur_val)).append("\"}");
+	}
+
+	/**
+	 * @return false if the dial's settings were bad and it should not be displayed
+	 */
+	public boolean isValid(){
+		return valid;
 	}
 
 	public void setVal(double value) {
 		cur_val = value;
-		dialJsonUpdateObj.put("value", String.format(VAL_DISPLAY_FORMATTER, value));
+		long step_in = quantize(value, display_quantum);
+		if(step_in != cur_val_step){
+			cur_val_step = step_in;
+			markDirty();
+		}
 	}
 	
 	
@@ -24,6 +24,13 @@ import org.json.simple.JSONObject;
 
 abstract class DriverViewObject {
 	
+	/**
+	 * Set by the robot code whenever the displayed value changes by at least one display quantum,
+	 * cleared by the web stream thread when the change is sent. Starts out set so the first update
+	 * includes everything.
+	 */
+	private volatile boolean dirty = true;
+	
 	/**
 	 * Inteface to get the sent JSON object when the webpage asks for the initial defintion of what will be on the driverview
 	 * @return
@@ -31,9 +38,39 @@ abstract class DriverViewObject {
 	public abstract JSONObject getInitJsonObj();
 	
 	/**
-	 * Interface to get the sent JSON object when it is time to update the values displayed on the webpage
-	 * @return
+	 * Interface to add this object's update JSON ({"type":...,"name":...,<present value>}) to a message being built,
+	 * when it is time to update the values displayed on the webpage. Values are only formatted here, so this should
+	 * only be called on the web stream thread.
+	 * @param out message being built
+	 */
+	public abstract void appendUpdJson(StringBuilder out);
+	
+	/**
+	 * Mark this object as needing to be sent on the next update
+	 */
+	void markDirty(){
+		dirty = true;
+	}
+	
+	/**
+	 * Web stream thread only. Check whether the displayed value changed since the last time this
+	 * was called, and clear the flag. The flag is cleared before the value is read, so a change made
+	 * while the update is being built is sent again next time rather than lost.
+	 * @return true if the object should be included in this update
+	 */
+	boolean takeDirty(){
+		if(dirty){
+			dirty = false;
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * @return which step of size quantum the value falls in. Values in the same step look the same on the webpage.
 	 */
-	public abstract JSONObject getUpdJsonObj();
+	static long quantize(double value, double quantum){
+		return Math.round(value / quantum);
+	}
 
 }
@@ -1,6 +1,7 @@
 package org.usfirst.frc.team1736.lib.WebServer;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 /*
  *******************************************************************************************
@@ -28,11 +29,11 @@ class DriverViewStringBox extends DriverViewObject {
     /** JSON object for initializing the Stringbox */
     private JSONObject sbJsonInitObj;
     
-    /** JSON object for Updating the Stringbox */
-    private JSONObject sbJsonUpdateObj;
+    /** Start of the JSON object for Updating the Stringbox, up to the value */
+    private String sbJsonUpdatePrefix;
     
     String name;
-    String value;
+    volatile String value;
 	
 	public DriverViewStringBox(String name_in){
 		
@@ -46,11 +47,7 @@ class DriverViewStringBox extends DriverViewObject {
         sbJsonInitObj.put("displayName", name_in);
         sbJsonInitObj.put("value", value);
         
-        // Create new object
-        sbJsonUpdateObj = new JSONObject();
-        sbJsonUpdateObj.put("type", "stringbox");
-        sbJsonUpdateObj.put("name", name);
-        sbJsonUpdateObj.put("value", value);
+        sbJsonUpdatePrefix = "{\"type\":\"stringbox\",\"name\":\"" + JSONValue.escape(name) + "\",\"value\":";
 
 	}
 
@@ -60,13 +57,22 @@ class DriverViewStringBox extends DriverViewObject {
 	}
 
 	@Override
-	public JSONObject getUpdJsonObj() {
-		return sbJsonUpdateObj;
+	public void appendUpdJson(StringBuilder out) {
+		String cur_value = value;
+		out.append(sbJsonUpdatePrefix);
+		if(cur_value == null){
+			out.append("null}");
+		} else {
+			out.append('"').append(JSONValue.escape(cur_value)).append("\"}");
+		}
 	}
 
 	public void setVal(String value_in) {
-		value = value_in;
-		sbJsonUpdateObj.put("value", value);
+		String old_value = value;
+		if(value_in == null ? old_value != null : !value_in.equals(old_value)){
+			value = value_in;
+			markDirty();
+		}
 	}
 
 }
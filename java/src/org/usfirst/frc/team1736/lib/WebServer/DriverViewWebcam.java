@@ -1,6 +1,7 @@
 package org.usfirst.frc.team1736.lib.WebServer;
 
 import org.json.simple.JSONObject;
+import org.json.simple.JSONValue;
 
 /*
  *******************************************************************************************
@@ -24,18 +25,23 @@ import org.json.simple.JSONObject;
 
 class DriverViewWebcam extends DriverViewObject{
 	
+    /** Crosshair moves smaller than this many percent of the image aren't worth sending */
+    static final double CROSSHAIR_QUANTUM_PCT = 0.1;
 	
     /** JSON object for initializing the Webcam */
     private JSONObject webcamJsonInitObj;
     
-    /** JSON object for Updating the Webcam */
-    private JSONObject webcamJsonUpdateObj;
+    /** Start of the JSON object for Updating the Webcam, up to the marker position */
+    private String webcamJsonUpdatePrefix;
     
     String name;
     String url;
     double rotation_deg;
-    double marker_x;
-    double marker_y;
+    volatile double marker_x;
+    volatile double marker_y;
+    /** Quantized crosshair position last set - only touched by the robot code */
+    long marker_x_step;
+    long marker_y_step;
 
 	
 	public DriverViewWebcam(String name_in, String url_in, double marker_x_in, double marker_y_in,
@@ -45,6 +51,8 @@ class DriverViewWebcam extends DriverViewObject{
 		url = url_in;
 		marker_x = marker_x_in;
 		marker_y = marker_y_in;
+		marker_x_step = quantize(marker_x, CROSSHAIR_QUANTUM_PCT);
+		marker_y_step = quantize(marker_y, CROSSHAIR_QUANTUM_PCT);
 		rotation_deg = img_rotate_deg_in;
 
         // Create JSON object for initalizing the webcam on the driver view
@@ -56,12 +64,8 @@ class DriverViewWebcam extends DriverViewObject{
         webcamJsonInitObj.put("marker_x", marker_x);
         webcamJsonInitObj.put("marker_y", marker_y);
 
-        // Create JSON object for updapting the webcam on the driver view
-        webcamJsonUpdateObj = new JSONObject();
-        webcamJsonUpdateObj.put("type", "webcam");
-        webcamJsonUpdateObj.put("name", name);
-        webcamJsonUpdateObj.put("marker_x", marker_x);
-        webcamJsonUpdateObj.put("marker_y", marker_y);
+        // Pre-build the part of the update JSON for the webcam on the driver view which never changes
+        webcamJsonUpdatePrefix = "{\"type\":\"webcam\",\"name\":\"" + JSONValue.escape(name) + "\",\"marker_x\":";
         return;
 		
 	}
@@ -73,15 +77,19 @@ class DriverViewWebcam extends DriverViewObject{
 	}
 
 	@Override
-	public JSONObject getUpdJsonObj() {
-		return webcamJsonUpdateObj;
+	public void appendUpdJson(StringBuilder out) {
+		out.append(webcamJsonUpdatePrefix).append(marker_x).append(",\"marker_y\":").append(marker_y).append('}');
 	}
 
 	public void setCrosshairs(double x_pct, double y_pct) {
 		marker_x = Math.min(100.0, Math.max(0.0, x_pct));
 		marker_y = Math.min(100.0, Math.max(0.0, y_pct));
-        webcamJsonUpdateObj.put("marker_x", marker_x);
-        webcamJsonUpdateObj.put("marker_y", marker_y);
-		
+		long x_step = quantize(marker_x, CROSSHAIR_QUANTUM_PCT);
+		long y_step = quantize(marker_y, CROSSHAIR_QUANTUM_PCT);
+		if(x_step != marker_x_step || y_step != marker_y_step){
+			marker_x_step = x_step;
+			marker_y_step = y_step;
+			markDirty();
+		}
 	}
 }
@@ -0,0 +1,354 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.Arrays;
+
+/**
+ * Picks a small, representative subset of points out of a long signal, so it can be plotted
+ * without sending (or drawing) every sample. Samples are fed in one at a time as the log is read,
+ * and only a fixed number of buckets are ever held, so memory use doesn't depend on the log's
+ * length. Both methods keep the actual samples chosen (no averaging), and always keep the first and
+ * last points.
+ * <ul>
+ * <li>LTTB (Largest Triangle Three Buckets) keeps the point in each bucket which matters most to the
+ * shape of the line. Best looking plots for a given point count. This is an approximation of LTTB,
+ * see below.</li>
+ * <li>Min/max keeps the smallest and largest sample of each bucket. Guarantees no spike is ever
+ * hidden, at the cost of a busier looking plot.</li>
+ * </ul>
+ * Each bucket remembers its first, last, smallest and largest sample, plus running sums for its
+ * average. That's all min/max needs. LTTB only gets to choose among those four candidates, not every
+ * sample in the bucket, so it can pick a different point than true LTTB would. The biggest triangle
+ * usually sits on a peak or at an end of the bucket, so the plots look close, but they aren't
+ * guaranteed to match - a sample in the middle of a sloped bucket can occasionally win. <br>
+ * Buckets start one sample wide. Whenever they run out, neighboring pairs are merged and the width
+ * doubles, so there are always between one and two times the wanted number of buckets.
+ */
+class LogDownsampler {
+
+    private final boolean min_max;
+    private final int points;
+    private final int target_buckets;
+    private final int max_buckets;
+
+    // Per-bucket state
+    private final long[] count;
+    private final double[] sum_t;
+    private final double[] sum_v;
+    private final long[] first_i;
+    private final double[] first_t;
+    private final double[] first_v;
+    private final long[] last_i;
+    private final double[] last_t;
+    private final double[] last_v;
+    private final long[] min_i;
+    private final double[] min_t;
+    private final double[] min_v;
+    private final long[] max_i;
+    private final double[] max_t;
+    private final double[] max_v;
+
+    private int num_buckets = 0;
+    private long bucket_width = 1;
+    private long num_samples = 0;
+
+    // Filled in by finish()
+    private double[] out_t = null;
+    private double[] out_v = null;
+    private int out_count = 0;
+    private long out_last_i = -1;
+
+
+    /**
+     * @param points_in number of points wanted
+     * @param min_max_in true for min/max, false for LTTB
+     */
+    LogDownsampler(int points_in, boolean min_max_in) {
+        min_max = min_max_in;
+        points = Math.max(2, points_in);
+        // First and last points are kept on top of what the buckets give
+        target_buckets = Math.max(1, min_max ? (points - 2) / 2 : points - 2);
+        // Room for every sample, when there are few enough to return them all
+        max_buckets = Math.max(target_buckets * 2, points);
+        count = new long[max_buckets];
+        sum_t = new double[max_buckets];
+        sum_v = new double[max_buckets];
+        first_i = new long[max_buckets];
+        first_t = new double[max_buckets];
+        first_v = new double[max_buckets];
+        last_i = new long[max_buckets];
+        last_t = new double[max_buckets];
+        last_v = new double[max_buckets];
+        min_i = new long[max_buckets];
+        min_t = new double[max_buckets];
+        min_v = new double[max_buckets];
+        max_i = new long[max_buckets];
+        max_t = new double[max_buckets];
+        max_v = new double[max_buckets];
+    }
+
+
+    /**
+     * Add the next sample. Samples must come in time order. NaN or infinite samples are skipped.
+     * 
+     * @param t sample time
+     * @param v sample value
+     */
+    void add(double t, double v) {
+        if (Double.isNaN(v) || Double.isInfinite(v) || Double.isNaN(t)) {
+            return;
+        }
+        int b = num_buckets - 1;
+        if (b < 0 || count[b] >= bucket_width) {
+            if (num_buckets == max_buckets) {
+                mergePairs();
+            }
+            b = num_buckets++;
+            count[b] = 0;
+            sum_t[b] = 0;
+            sum_v[b] = 0;
+            first_i[b] = num_samples;
+            first_t[b] = t;
+            first_v[b] = v;
+            min_i[b] = num_samples;
+            min_t[b] = t;
+            min_v[b] = v;
+            max_i[b] = num_samples;
+            max_t[b] = t;
+            max_v[b] = v;
+        }
+        count[b]++;
+        sum_t[b] += t;
+        sum_v[b] += v;
+        last_i[b] = num_samples;
+        last_t[b] = t;
+        last_v[b] = v;
+        if (v < min_v[b]) {
+            min_i[b] = num_samples;
+            min_t[b] = t;
+            min_v[b] = v;
+        }
+        if (v > max_v[b]) {
+            max_i[b] = num_samples;
+            max_t[b] = t;
+            max_v[b] = v;
+        }
+        num_samples++;
+    }
+
+
+    /*
+     * Merge every bucket with its neighbor, halving the bucket count and doubling the width.
+     */
+    private void mergePairs() {
+        int merged = 0;
+        for (int b = 0; b < num_buckets; b += 2) {
+            mergeInto(merged, b, Math.min(b + 1, num_buckets - 1));
+            merged++;
+        }
+        num_buckets = merged;
+        bucket_width *= 2;
+    }
+
+
+    /*
+     * Combine buckets first..last (inclusive) into bucket dst. dst must not be after first.
+     */
+    private void mergeInto(int dst, int first, int last) {
+        if (dst != first) {
+            copyBucket(dst, first);
+        }
+        for (int b = first + 1; b <= last; b++) {
+            count[dst] += count[b];
+            sum_t[dst] += sum_t[b];
+            sum_v[dst] += sum_v[b];
+            last_i[dst] = last_i[b];
+            last_t[dst] = last_t[b];
+            last_v[dst] = last_v[b];
+            if (min_v[b] < min_v[dst]) {
+                min_i[dst] = min_i[b];
+                min_t[dst] = min_t[b];
+                min_v[dst] = min_v[b];
+            }
+            if (max_v[b] > max_v[dst]) {
+                max_i[dst] = max_i[b];
+                max_t[dst] = max_t[b];
+                max_v[dst] = max_v[b];
+            }
+        }
+    }
+
+
+    private void copyBucket(int dst, int src) {
+        count[dst] = count[src];
+        sum_t[dst] = sum_t[src];
+        sum_v[dst] = sum_v[src];
+        first_i[dst] = first_i[src];
+        first_t[dst] = first_t[src];
+        first_v[dst] = first_v[src];
+        last_i[dst] = last_i[src];
+        last_t[dst] = last_t[src];
+        last_v[dst] = last_v[src];
+        min_i[dst] = min_i[src];
+        min_t[dst] = min_t[src];
+        min_v[dst] = min_v[src];
+        max_i[dst] = max_i[src];
+        max_t[dst] = max_t[src];
+        max_v[dst] = max_v[src];
+    }
+
+
+    /**
+     * Pick the points to keep, once every sample has been added.
+     */
+    void finish() {
+        out_t = new double[points + 2];
+        out_v = new double[points + 2];
+        out_count = 0;
+        out_last_i = -1;
+        if (num_buckets == 0) {
+            return;
+        }
+
+        if (num_samples <= points) {
+            // Everything fits, and buckets are still one sample wide
+            for (int b = 0; b < num_buckets; b++) {
+                keep(first_i[b], first_t[b], first_v[b]);
+            }
+            return;
+        }
+
+        // Squeeze down to the wanted number of buckets, spreading the extras evenly
+        if (num_buckets > target_buckets) {
+            for (int b = 0; b < target_buckets; b++) {
+                int first = (int) ((long) b * num_buckets / target_buckets);
+                int last = (int) ((long) (b + 1) * num_buckets / target_buckets) - 1;
+                mergeInto(b, first, last);
+            }
+            num_buckets = target_buckets;
+        }
+
+        int end = num_buckets - 1;
+        keep(first_i[0], first_t[0], first_v[0]);
+        if (min_max) {
+            for (int b = 0; b < num_buckets; b++) {
+                // Keep them in time order
+                if (min_i[b] <= max_i[b]) {
+                    keep(min_i[b], min_t[b], min_v[b]);
+                    keep(max_i[b], max_t[b], max_v[b]);
+                } else {
+                    keep(max_i[b], max_t[b], max_v[b]);
+                    keep(min_i[b], min_t[b], min_v[b]);
+                }
+            }
+        } else {
+            double ax = first_t[0];
+            double ay = first_v[0];
+            for (int b = 0; b < num_buckets; b++) {
+                // Average of the next bucket is the third corner of the triangle
+                double cx;
+                double cy;
+                if (b < end) {
+                    cx = sum_t[b + 1] / count[b + 1];
+                    cy = sum_v[b + 1] / count[b + 1];
+                } else {
+                    cx = last_t[end];
+                    cy = last_v[end];
+                }
+
+                // Pick the candidate making the biggest triangle with the last kept point
+                long best_i = first_i[b];
+                double best_t = first_t[b];
+                double best_v = first_v[b];
+                double best_area = triangleArea(ax, ay, best_t, best_v, cx, cy);
+                double area = triangleArea(ax, ay, min_t[b], min_v[b], cx, cy);
+                if (area > best_area) {
+                    best_area = area;
+                    best_i = min_i[b];
+                    best_t = min_t[b];
+                    best_v = min_v[b];
+                }
+                area = triangleArea(ax, ay, max_t[b], max_v[b], cx, cy);
+                if (area > best_area) {
+                    best_area = area;
+                    best_i = max_i[b];
+                    best_t = max_t[b];
+                    best_v = max_v[b];
+                }
+                area = triangleArea(ax, ay, last_t[b], last_v[b], cx, cy);
+                if (area > best_area) {
+                    best_i = last_i[b];
+                    best_t = last_t[b];
+                    best_v = last_v[b];
+                }
+                keep(best_i, best_t, best_v);
+                ax = best_t;
+                ay = best_v;
+            }
+        }
+        keep(last_i[end], last_t[end], last_v[end]);
+    }
+
+
+    private static double triangleArea(double ax, double ay, double bx, double by, double cx, double cy) {
+        return Math.abs((ax - cx) * (by - ay) - (ax - bx) * (cy - ay));
+    }
+
+
+    /*
+     * Add a sample to the output, unless it was just added.
+     */
+    private void keep(long i, double t, double v) {
+        if (i == out_last_i) {
+            return;
+        }
+        out_t[out_count] = t;
+        out_v[out_count] = v;
+        out_count++;
+        out_last_i = i;
+    }
+
+
+    /**
+     * @return times of the points kept, after finish()
+     */
+    double[] getTimes() {
+        return Arrays.copyOf(out_t, out_count);
+    }
+
+
+    /**
+     * @return values of the points kept, after finish()
+     */
+    double[] getValues() {
+        return Arrays.copyOf(out_v, out_count);
+    }
+
+
+    /**
+     * @return number of valid samples added
+     */
+    long getSampleCount() {
+        return num_samples;
+    }
+
+}
@@ -0,0 +1,110 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.List;
+
+/**
+ * DESCRIPTION: <br>
+ * Packs real-time plot samples into the binary websocket message format read by rtplot.js. The old
+ * JSON format spent dozens of bytes and a few objects on every sample, which limited the plot page
+ * to a handful of signals. This format is 8 bytes per sample. <br>
+ * All numbers are little-endian. A message is:
+ * <ul>
+ * <li>u8 message type (MSG_TYPE_DAQ_UPDATE)</li>
+ * <li>u8 format version (FORMAT_VERSION)</li>
+ * <li>u16 number of signal blocks</li>
+ * <li>f64 base time in seconds. Sample times are offsets from this, so they fit in 32 bits without
+ * losing precision.</li>
+ * <li>then for each signal block: u16 signal ID (from the "id" field of the signal list), u16
+ * sample count N, N u32 time offsets from the base time in microseconds, then N f32 values.</li>
+ * </ul>
+ */
+class PlotDataFrameEncoder {
+
+    static final int MSG_TYPE_DAQ_UPDATE = 1;
+    static final int FORMAT_VERSION = 1;
+
+    static final int HEADER_LEN = 12;
+    static final int BLOCK_HEADER_LEN = 4;
+    static final int BYTES_PER_SAMPLE = 8;
+    static final int MAX_SAMPLES_PER_BLOCK = 0xFFFF;
+
+
+    /**
+     * Build one data message.
+     * 
+     * @param signals Signals to include, in order
+     * @param samples Samples for each signal, in the same order. Signals with a count of zero are
+     *        left out of the message.
+     * @return frame ready to send, or null if there are no samples at all.
+     */
+    static WebStreamFrame encode(List<PlotSignal> signals, List<PlotSampleBuffer> samples) {
+        // First pass - size the message and find the earliest sample to use as the base time
+        int len = HEADER_LEN;
+        int block_count = 0;
+        double base_time = Double.POSITIVE_INFINITY;
+        for (int s = 0; s < signals.size(); s++) {
+            PlotSampleBuffer sig_samples = samples.get(s);
+            if (sig_samples.count == 0) {
+                continue;
+            }
+            int count = Math.min(sig_samples.count, MAX_SAMPLES_PER_BLOCK);
+            len += BLOCK_HEADER_LEN + count * BYTES_PER_SAMPLE;
+            block_count++;
+            for (int i = 0; i < count; i++) {
+                base_time = Math.min(base_time, sig_samples.time[i]);
+            }
+        }
+        if (block_count == 0) {
+            return null;
+        }
+
+        byte[] data = new byte[len];
+        ByteBuffer buf = ByteBuffer.wrap(data);
+        buf.order(ByteOrder.LITTLE_ENDIAN);
+        buf.put((byte) MSG_TYPE_DAQ_UPDATE);
+        buf.put((byte) FORMAT_VERSION);
+        buf.putShort((short) block_count);
+        buf.putDouble(base_time);
+
+        for (int s = 0; s < signals.size(); s++) {
+            PlotSampleBuffer sig_samples = samples.get(s);
+            if (sig_samples.count == 0) {
+                continue;
+            }
+            int count = Math.min(sig_samples.count, MAX_SAMPLES_PER_BLOCK);
+            buf.putShort((short) signals.get(s).getId());
+            buf.putShort((short) count);
+            for (int i = 0; i < count; i++) {
+                buf.putInt((int) Math.round((sig_samples.time[i] - base_time) * 1e6));
+            }
+            for (int i = 0; i < count; i++) {
+                buf.putFloat((float) sig_samples.value[i]);
+            }
+        }
+
+        return WebStreamFrame.binary(data, len);
+    }
+
+}
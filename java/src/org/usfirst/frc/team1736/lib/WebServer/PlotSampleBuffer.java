@@ -0,0 +1,48 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Reusable holder for a batch of samples read out of a PlotSampleRing. Allocated once per reader
+ * and refilled on every read, so streaming plot data doesn't make garbage.
+ */
+class PlotSampleBuffer {
+
+    /** Sample times in seconds. Only the first count entries are valid. */
+    final double[] time;
+    /** Sample values. Only the first count entries are valid. */
+    final double[] value;
+    /** Number of valid samples from the last read */
+    int count = 0;
+    /** Number of samples the last read missed because the writer overwrote them first */
+    long dropped = 0;
+
+
+    /**
+     * @param capacity Most samples one read can return. Should match the ring it reads from.
+     */
+    PlotSampleBuffer(int capacity) {
+        time = new double[capacity];
+        value = new double[capacity];
+    }
+
+}
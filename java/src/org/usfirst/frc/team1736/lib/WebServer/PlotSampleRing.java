@@ -0,0 +1,129 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Fixed-size ring of (time, value) samples for one real-time plot signal, written by exactly one
+ * thread (the robot loop) and read by the web stream thread. Storage is two primitive arrays
+ * allocated up front, so adding a sample is two array stores and one volatile write - no objects,
+ * no locks. <br>
+ * When the reader falls behind, the writer keeps going and overwrites the oldest samples. The
+ * reader notices the overwrite and counts the lost samples, rather than sending torn data. <br>
+ * Readers keep their own cursor (the index of the next sample they want), so the ring itself never
+ * waits on or changes for a reader. <br>
+ * USAGE:
+ * <ol>
+ * <li>Writer: call add() with each new sample.</li>
+ * <li>Reader: start with getWriteCursor(), then repeatedly call read() with the cursor it returned
+ * last time.</li>
+ * </ol>
+ *
+ *
+ */
+class PlotSampleRing {
+
+    private final double[] times;
+    private final double[] values;
+    private final int capacity;
+
+    // Total number of samples ever written. Only written by the writer.
+    private volatile long head = 0;
+
+
+    /**
+     * @param capacity_in Number of most-recent samples kept for readers.
+     */
+    PlotSampleRing(int capacity_in) {
+        capacity = Math.max(1, capacity_in);
+        times = new double[capacity];
+        values = new double[capacity];
+    }
+
+
+    /**
+     * Writer side. Add a new sample, overwriting the oldest one if the ring is full.
+     * 
+     * @param time sample time in seconds
+     * @param value sample value
+     */
+    void add(double time, double value) {
+        long h = head;
+        int idx = (int) (h % capacity);
+        times[idx] = time;
+        values[idx] = value;
+        head = h + 1;
+    }
+
+
+    /**
+     * @return Cursor just past the newest sample. A reader starting here only sees new samples.
+     */
+    long getWriteCursor() {
+        return head;
+    }
+
+
+    /**
+     * Reader side. Copy every sample from the cursor up to the newest into a reusable buffer,
+     * replacing whatever was in the buffer. Doesn't allocate.
+     * 
+     * @param cursor Index of the next sample this reader wants (what the last read() returned)
+     * @param out Buffer to fill. Its capacity should be at least this ring's. Samples which were
+     *        overwritten before they could be read are counted in its dropped field.
+     * @return Cursor to pass to the next read()
+     */
+    long read(long cursor, PlotSampleBuffer out) {
+        long h = head;
+        long available = h - cursor;
+        int count = (int) Math.min(available, Math.min(capacity, out.time.length));
+        long start = h - count;
+        out.dropped = available - count;
+        for (int i = 0; i < count; i++) {
+            int idx = (int) ((start + i) % capacity);
+            out.time[i] = times[idx];
+            out.value[i] = values[idx];
+        }
+
+        // The writer may have lapped the first few samples while they were being copied. Those
+        // might be torn, so throw them out. The +1 covers the slot the writer may be in the middle
+        // of filling right now, before it has bumped head.
+        long overwritten = head + 1 - capacity - start;
+        if (overwritten > 0) {
+            int bad = (int) Math.min(overwritten, count);
+            System.arraycopy(out.time, bad, out.time, 0, count - bad);
+            System.arraycopy(out.value, bad, out.value, 0, count - bad);
+            count -= bad;
+            out.dropped += bad;
+        }
+        out.count = count;
+        return h;
+    }
+
+
+    /**
+     * @return Number of samples kept
+     */
+    int getCapacity() {
+        return capacity;
+    }
+
+}
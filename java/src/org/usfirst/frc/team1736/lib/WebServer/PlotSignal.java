@@ -1,7 +1,5 @@
 package org.usfirst.frc.team1736.lib.WebServer;
 
-import java.util.LinkedList;
-
 /*
  *******************************************************************************************
  * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
@@ -21,83 +19,92 @@ import java.util.LinkedList;
  *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
  *   if you would consider donating to our club to help further STEM education.
  */
-import java.util.Queue;
 
 class PlotSignal implements Comparable<PlotSignal> {
 
 	String name;
 	String display_name;
 	String units;
+	int id;
+	
+	/** Number of most-recent samples kept for the web page to read. At 50 Hz, this is about 40 seconds. */
+	static final int RING_CAPACITY = 2048;
+	
+	volatile boolean acq_active;
 	
-	boolean acq_active;
+	/** Number of clients watching this signal. Samples are only recorded while someone is. */
+	int subscriber_count;
 	
-	Queue<PlotSample> sample_queue;
+	PlotSampleRing sample_ring;
 	
 	/**
 	 * Class which describes one line on a plot
 	 * @param name_in String of what to call the signal
 	 * @param units_in units the signal is in.
+	 * @param id_in Number identifying this signal in binary data frames. Must be unique and never change.
 	 */
-	public PlotSignal(String name_in, String display_name_in, String units_in){
+	public PlotSignal(String name_in, String display_name_in, String units_in, int id_in){
 		display_name = display_name_in;
+		id = id_in;
 		name = name_in;
 		units = units_in;
 		
 		acq_active = false;
+		subscriber_count = 0;
 		
-		sample_queue = new LinkedList<PlotSample>();
+		sample_ring = new PlotSampleRing(RING_CAPACITY);
 	}
 	
 	/**
-	 * Adds a new sample to the signal queue. It is intended that
+	 * Adds a new sample to the signal's ring buffer. It is intended that
 	 * the controls code would call this once per loop to add a new
-	 * datapoint to the real-time graph.
+	 * datapoint to the real-time graph. Never blocks or allocates - if the web
+	 * page falls behind, the oldest samples get overwritten.
 	 * @param time_in
 	 * @param value_in
 	 */
 	public void addSample(double time_in, double value_in){
 		if(acq_active){
-			sample_queue.add(new PlotSample(time_in, value_in));
+			sample_ring.add(time_in, value_in);
 		}
 	}
 	
 	/**
-	 * Start acquiring data on this channel. Should be called before attempting to read info.
+	 * Start acquiring data on this channel for one more client. Should be called before attempting to read info.
 	 */
-	public void startAcq(){
+	public synchronized void startAcq(){
+		subscriber_count++;
 		acq_active = true;
 	}
 	/**
-	 * Stop acquiring data on this channel. Should be called when data no longer needs to be transmitted.
+	 * One client no longer needs this channel. Acquisition stops when no clients need it.
 	 */
-	public void stopAcq(){
-		acq_active = false;
+	public synchronized void stopAcq(){
+		if(subscriber_count > 0){
+			subscriber_count--;
+		}
+		acq_active = (subscriber_count > 0);
 	}
 	
 	/**
-	 * Returns an array of all the samples currently in the queue, and then clears it.
-	 * It is intended that the weberver would call this to transmit all available 
-	 * data from previous iterations. This might return null if the control code
-	 * has no new data.
+	 * @return Position just past the newest sample. A reader starting here only gets samples added from now on.
 	 */
-	public PlotSample[] getAllSamples(){
-		int size = sample_queue.size();
-		PlotSample[] retval;
-		if(size > 0){
-			retval = new PlotSample[size];
-			sample_queue.toArray(retval);
-			sample_queue.clear();
-		} else {
-			retval = null;
-		}
-		return retval;
+	public long getWriteCursor(){
+		return sample_ring.getWriteCursor();
 	}
 	
 	/**
-	 * Discards all samples from the buffer
+	 * Copies all the samples added since a reader's last call into its reusable buffer.
+	 * It is intended that the webserver would call this to transmit all available 
+	 * data from previous iterations. Doesn't allocate. The buffer's count will be 
+	 * zero if the control code has no new data. Each reader keeps its own cursor,
+	 * so any number of readers can watch the same signal.
+	 * @param cursor What this reader's last call returned (or getWriteCursor() at first)
+	 * @param out Buffer to fill. Should hold at least RING_CAPACITY samples.
+	 * @return Cursor to pass in on the reader's next call
 	 */
-	public void clearBuffer(){
-		sample_queue.clear();
+	public long readSamples(long cursor, PlotSampleBuffer out){
+		return sample_ring.read(cursor, out);
 	}
 	
 	/**
@@ -107,6 +114,13 @@ class PlotSignal implements Comparable<PlotSignal> {
 		return name;
 	}
 	
+	/**
+	 * @return The number identifying this signal in binary data frames
+	 */
+	public int getId(){
+		return id;
+	}
+	
 	/**
 	 * @return The User-friendly name of the signal
 	 */
@@ -0,0 +1,107 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * DESCRIPTION: <br>
+ * One real-time plot client's set of signals, along with its own read position in each signal's
+ * sample ring. Every client reads the same rings, so a signal is only sampled once no matter how
+ * many people are watching it, but one client starting, stopping or falling behind never affects
+ * another. <br>
+ * USAGE:
+ * <ol>
+ * <li>Create when a client starts an acquisition. Its signals start sampling (if they weren't
+ * already) and it only sees samples from then on.</li>
+ * <li>Call buildFrame() each stream tick to get the client's new data.</li>
+ * <li>Call close() when the client stops or disconnects.</li>
+ * </ol>
+ *
+ *
+ */
+class PlotSubscription {
+
+    private final List<PlotSignal> signals;
+    private final long[] cursors;
+    private final List<PlotSampleBuffer> buffers;
+    private boolean closed = false;
+
+    private volatile long dropped_samples = 0;
+
+
+    /**
+     * @param signals_in Signals this client wants, in the order it wants them.
+     */
+    PlotSubscription(List<PlotSignal> signals_in) {
+        signals = new ArrayList<PlotSignal>(signals_in);
+        cursors = new long[signals.size()];
+        buffers = new ArrayList<PlotSampleBuffer>(signals.size());
+        for (int i = 0; i < signals.size(); i++) {
+            PlotSignal sig = signals.get(i);
+            sig.startAcq();
+            cursors[i] = sig.getWriteCursor();
+            buffers.add(new PlotSampleBuffer(PlotSignal.RING_CAPACITY));
+        }
+    }
+
+
+    /**
+     * Read everything new on this client's signals into one binary data message. Only call from the
+     * stream thread.
+     * 
+     * @return message to send, or null if there's no new data.
+     */
+    WebStreamFrame buildFrame() {
+        long dropped = 0;
+        for (int i = 0; i < signals.size(); i++) {
+            PlotSampleBuffer buf = buffers.get(i);
+            cursors[i] = signals.get(i).readSamples(cursors[i], buf);
+            dropped += buf.dropped;
+        }
+        dropped_samples += dropped;
+        return PlotDataFrameEncoder.encode(signals, buffers);
+    }
+
+
+    /**
+     * Release this client's signals. Signals nobody else is watching stop sampling. Safe to call
+     * more than once.
+     */
+    synchronized void close() {
+        if (!closed) {
+            closed = true;
+            for (PlotSignal sig : signals) {
+                sig.stopAcq();
+            }
+        }
+    }
+
+
+    /**
+     * @return Number of samples this client missed because it fell too far behind.
+     */
+    long getDroppedSampleCount() {
+        return dropped_samples;
+    }
+
+}
@@ -0,0 +1,52 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * What the state streamer knows about one connected presentState page: the newest state version
+ * the page has confirmed it has, so each tick only needs to send what changed after that.
+ */
+class StateStreamClient {
+
+    /** Newest state version the client has (from its acks, or the last snapshot it was sent) */
+    volatile long acked_version = 0;
+
+    /** Set when the client needs every state sent (just connected, or asked to resync) */
+    volatile boolean needs_snapshot = true;
+
+    /** When this client was last sent anything. Only touched on the stream thread. */
+    long last_send_ms = 0;
+
+
+    /**
+     * Record the client's acknowledgment that it has applied everything up to a version.
+     * 
+     * @param version Version the client reported
+     */
+    void ack(long version) {
+        // Acks can't go backward, and can't be for versions which don't exist yet
+        if (version > acked_version && version <= CassesroleWebStates.state_version.get()) {
+            acked_version = version;
+        }
+    }
+
+}
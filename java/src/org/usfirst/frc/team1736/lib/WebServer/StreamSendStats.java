@@ -0,0 +1,115 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * DESCRIPTION: <br>
+ * Running statistics for one web data stream's outbound client queues: how much is waiting to go
+ * out, how much had to be thrown away because a client couldn't keep up, and how many clients got
+ * disconnected for being too slow. <br>
+ * USAGE:
+ * <ol>
+ * <li>Get from CasseroleWebStreamScheduler.getSendStats().</li>
+ * <li>Read the get* methods whenever.</li>
+ * </ol>
+ * 
+ *
+ */
+public class StreamSendStats {
+
+    private final String name;
+
+    private volatile int queue_depth = 0;
+    private volatile int max_queue_depth = 0;
+    private final AtomicLong dropped_frames = new AtomicLong();
+    private final AtomicLong slow_client_disconnects = new AtomicLong();
+
+
+    StreamSendStats(String name_in) {
+        name = name_in;
+    }
+
+
+    /**
+     * Record the number of messages waiting across all of the stream's clients. Only called from the
+     * shared stream thread.
+     */
+    void recordQueueDepth(int depth) {
+        queue_depth = depth;
+        if (depth > max_queue_depth) {
+            max_queue_depth = depth;
+        }
+    }
+
+
+    void recordDroppedFrames(int count) {
+        dropped_frames.addAndGet(count);
+    }
+
+
+    void recordSlowClientDisconnect() {
+        slow_client_disconnects.incrementAndGet();
+    }
+
+
+    /**
+     * @return Name of the stream
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * @return Messages waiting to be sent (including ones being sent) across all clients, as of
+     *         the last tick
+     */
+    public int getQueueDepth() {
+        return queue_depth;
+    }
+
+
+    /**
+     * @return Largest getQueueDepth() seen so far
+     */
+    public int getMaxQueueDepth() {
+        return max_queue_depth;
+    }
+
+
+    /**
+     * @return Messages thrown away without sending because a client was behind
+     */
+    public long getDroppedFrameCount() {
+        return dropped_frames.get();
+    }
+
+
+    /**
+     * @return Clients disconnected because a send didn't finish within the slow client timeout
+     */
+    public long getSlowClientDisconnectCount() {
+        return slow_client_disconnects.get();
+    }
+
+}
@@ -0,0 +1,119 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * DESCRIPTION: <br>
+ * Running timing statistics for one web data stream's periodic ticks. Only written from the
+ * shared stream thread (see CasseroleWebStreamScheduler), so reading from anywhere else just might
+ * see numbers a tick old. <br>
+ * USAGE:
+ * <ol>
+ * <li>Get from CasseroleWebStreamScheduler.getTickTimer().</li>
+ * <li>Read the get* methods whenever.</li>
+ * </ol>
+ * 
+ *
+ */
+public class StreamTickTimer {
+
+    private final String name;
+
+    private volatile long tick_count = 0;
+    private volatile long total_ns = 0;
+    private volatile long last_ns = 0;
+    private volatile long max_ns = 0;
+    private volatile long overrun_count = 0;
+
+
+    StreamTickTimer(String name_in) {
+        name = name_in;
+    }
+
+
+    /**
+     * Record one completed tick.
+     * 
+     * @param duration_ns How long the tick ran for
+     * @param period_ms How often the tick is supposed to run
+     */
+    void record(long duration_ns, long period_ms) {
+        tick_count++;
+        total_ns += duration_ns;
+        last_ns = duration_ns;
+        if (duration_ns > max_ns) {
+            max_ns = duration_ns;
+        }
+        if (duration_ns > period_ms * 1000000L) {
+            overrun_count++;
+        }
+    }
+
+
+    /**
+     * @return Name of the stream
+     */
+    public String getName() {
+        return name;
+    }
+
+
+    /**
+     * @return Total number of ticks run, across all clients of the stream
+     */
+    public long getTickCount() {
+        return tick_count;
+    }
+
+
+    /**
+     * @return Duration of the most recent tick in milliseconds
+     */
+    public double getLastTickMs() {
+        return last_ns / 1000000.0;
+    }
+
+
+    /**
+     * @return Longest tick so far in milliseconds
+     */
+    public double getMaxTickMs() {
+        return max_ns / 1000000.0;
+    }
+
+
+    /**
+     * @return Average tick duration in milliseconds, or 0 if no ticks have run.
+     */
+    public double getAvgTickMs() {
+        long count = tick_count;
+        return (count == 0) ? 0 : (total_ns / 1000000.0) / count;
+    }
+
+
+    /**
+     * @return Number of ticks which took longer than the stream's whole period
+     */
+    public long getOverrunCount() {
+        return overrun_count;
+    }
+
+}
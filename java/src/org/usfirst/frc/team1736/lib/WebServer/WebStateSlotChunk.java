@@ -0,0 +1,59 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * DESCRIPTION: <br>
+ * Fixed-size block of state slots for CassesroleWebStates. States are stored in a list of these
+ * rather than one big array, so adding states never moves existing slots - a robot thread writing
+ * a slot never has to worry about the storage being swapped out from under it. <br>
+ * Numbers (double bits, integers, booleans as 0/1) live in one atomic 64-bit word per slot, so
+ * they can't tear even on the RIO's 32-bit ARM. The version array records the state_version at
+ * which each slot last changed (0 for never set). <br>
+ * The formatted_* arrays belong to the stream thread only, and cache each slot's value as JSON
+ * text so a change is only formatted once no matter how many clients it gets sent to.
+ */
+class WebStateSlotChunk {
+
+    static final int CHUNK_BITS = 6;
+    static final int CHUNK_SIZE = 1 << CHUNK_BITS;
+    static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+    // Set once at registration, before the slot is published
+    final String[] names = new String[CHUNK_SIZE];
+    /** Also changed to TYPE_STRING if a string is set on a number slot, before the version bump */
+    final int[] types = new int[CHUNK_SIZE];
+    /** Start of each slot's JSON entry, name already escaped: {"name":"...","value": */
+    final String[] json_prefixes = new String[CHUNK_SIZE];
+
+    // Written by whatever thread sets the state
+    final AtomicLongArray bits = new AtomicLongArray(CHUNK_SIZE);
+    final AtomicReferenceArray<String> strings = new AtomicReferenceArray<String>(CHUNK_SIZE);
+    final AtomicLongArray versions = new AtomicLongArray(CHUNK_SIZE);
+
+    // Stream thread only
+    final String[] formatted_values = new String[CHUNK_SIZE];
+    final long[] formatted_versions = new long[CHUNK_SIZE];
+
+}
@@ -0,0 +1,124 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * DESCRIPTION: <br>
+ * One already-serialized websocket message, ready to be sent to any number of clients. The bytes
+ * are built once and never changed after, so the same frame can be handed to every connected
+ * session without copying or serializing again. <br>
+ * USAGE:
+ * <ol>
+ * <li>Build with text() (JSON strings) or binary().</li>
+ * <li>Hand to CasseroleBroadcastHub.sendFrame() or return from a WebStreamFrameSource.</li>
+ * </ol>
+ * 
+ *
+ */
+class WebStreamFrame {
+
+    private final ByteBuffer payload;
+    private final boolean binary;
+    private final boolean must_deliver;
+
+
+    private WebStreamFrame(ByteBuffer payload_in, boolean binary_in, boolean must_deliver_in) {
+        payload = payload_in.asReadOnlyBuffer();
+        binary = binary_in;
+        must_deliver = must_deliver_in;
+    }
+
+
+    /**
+     * @param text Message text (usually JSON). Encoded to UTF-8 once, here.
+     * @return new text frame
+     */
+    static WebStreamFrame text(String text) {
+        return text(text, false);
+    }
+
+
+    /**
+     * @param text Message text (usually JSON). Encoded to UTF-8 once, here.
+     * @param must_deliver true if later messages depend on this one (ex: a full snapshot which
+     *        following deltas build on), so a LATEST_WINS queue must not throw it away for a newer
+     *        ordinary message.
+     * @return new text frame
+     */
+    static WebStreamFrame text(String text, boolean must_deliver) {
+        return new WebStreamFrame(ByteBuffer.wrap(text.getBytes(StandardCharsets.UTF_8)), false, must_deliver);
+    }
+
+
+    /**
+     * @param data Message bytes. The frame keeps the array, so don't change it afterward.
+     * @param length number of bytes of data to send
+     * @return new binary frame
+     */
+    static WebStreamFrame binary(byte[] data, int length) {
+        return new WebStreamFrame(ByteBuffer.wrap(data, 0, length), true, false);
+    }
+
+
+    /**
+     * @return a fresh view of the message bytes. Each send needs its own view since sending moves
+     *         the buffer position, but the bytes underneath are shared.
+     */
+    ByteBuffer getPayload() {
+        return payload.duplicate();
+    }
+
+
+    /**
+     * @return true for a binary message, false for text
+     */
+    boolean isBinary() {
+        return binary;
+    }
+
+
+    /**
+     * @return true if only a newer must-deliver frame may replace this one in a send queue
+     */
+    boolean isMustDeliver() {
+        return must_deliver;
+    }
+
+
+    /**
+     * @return Size of the message in bytes
+     */
+    int getLength() {
+        return payload.remaining();
+    }
+
+
+    /**
+     * @return The message as a String. Only meant for text frames, and it makes a copy.
+     */
+    String getText() {
+        return StandardCharsets.UTF_8.decode(getPayload()).toString();
+    }
+
+}
@@ -20,21 +20,17 @@ package org.usfirst.frc.team1736.lib.WebServer;
  *   if you would consider donating to our club to help further STEM education.
  */
 
-class PlotSample {
-	double value;
-	double time;
-	
-	public PlotSample(double time_in, double val_in){
-		value = val_in;
-		time = time_in;
-	}
-	
-	public double getTime_sec(){
-		return time;
-	}
-	
-	public double getVal(){
-		return value;
-	}
+/**
+ * DESCRIPTION: <br>
+ * Something which can build the next message for a broadcast stream (see CasseroleBroadcastHub).
+ * Called once per stream tick on the shared stream thread, no matter how many clients are
+ * connected.
+ */
+interface WebStreamFrameSource {
+
+    /**
+     * @return The message to send to every subscribed client this tick, or null to send nothing.
+     */
+    WebStreamFrame buildFrame();
 
 }
@@ -0,0 +1,40 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+/**
+ * What a client's outbound queue (see WebStreamSendQueue) does with a new message when the client
+ * hasn't finished receiving the old ones.
+ *
+ */
+enum WebStreamQueuePolicy {
+    /**
+     * Throw away everything still waiting and keep only the newest message. For streams where each
+     * message supersedes the last (state, driver view), so a slow client just sees fewer updates.
+     * Frames marked must-deliver (ex: snapshots) are only replaced by newer must-deliver frames.
+     */
+    LATEST_WINS,
+    /**
+     * Keep up to the queue's depth of messages, throwing away the oldest one when full. For streams
+     * where each message carries new data (RT plot samples), so a brief stall loses nothing.
+     */
+    DROP_OLDEST
+}
@@ -0,0 +1,248 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+
+import org.eclipse.jetty.websocket.api.RemoteEndpoint;
+import org.eclipse.jetty.websocket.api.Session;
+import org.eclipse.jetty.websocket.api.StatusCode;
+import org.eclipse.jetty.websocket.api.WriteCallback;
+import org.eclipse.jetty.websocket.common.WebSocketRemoteEndpoint;
+import org.eclipse.jetty.websocket.common.frames.BinaryFrame;
+import org.eclipse.jetty.websocket.common.frames.TextFrame;
+
+/**
+ * DESCRIPTION: <br>
+ * Bounded outbound message queue for one client of one web data stream. Only one message per client
+ * is handed to Jetty at a time; the rest wait here, where the stream's WebStreamQueuePolicy decides
+ * what gets thrown away once the client falls behind. Otherwise Jetty would queue every message we
+ * gave it, so a half-dead laptop on a bad radio link would slowly eat the RIO's memory. <br>
+ * A client whose in-progress send hasn't finished within the slow client timeout is disconnected.
+ * The page's normal reconnect logic takes it from there. <br>
+ * USAGE:
+ * <ol>
+ * <li>CasseroleBroadcastHub makes one per subscribed client.</li>
+ * <li>Call offer() with each message. It never blocks.</li>
+ * <li>Call disconnectIfStalled() every tick.</li>
+ * </ol>
+ * 
+ *
+ */
+class WebStreamSendQueue {
+
+    private final Session session;
+    private final WebStreamQueuePolicy policy;
+    private final int max_depth;
+    private final StreamSendStats stats;
+    private final CasseroleBroadcastHub hub;
+
+    // All guarded by this
+    private final ArrayDeque<WebStreamFrame> pending;
+    private boolean in_flight = false;
+    private long in_flight_start_ms = 0;
+    private boolean closed = false;
+
+    /** Only one send is in flight at a time, so one callback does for all of them */
+    private final WriteCallback callback = new WriteCallback() {
+        @Override
+        public void writeSuccess() {
+            hub.recordSent();
+            sendNext();
+        }
+
+        @Override
+        public void writeFailed(Throwable x) {
+            hub.recordSendFailure();
+            sendNext();
+        }
+    };
+
+
+    /**
+     * @param session_in Client to send to
+     * @param policy_in What to throw away when the client falls behind
+     * @param max_depth_in Most messages to hold waiting (not counting the one being sent). Only
+     *        used by DROP_OLDEST - LATEST_WINS holds one.
+     * @param stats_in Where to record drops and disconnects
+     * @param hub_in Hub to report completed sends to
+     */
+    WebStreamSendQueue(Session session_in, WebStreamQueuePolicy policy_in, int max_depth_in, StreamSendStats stats_in,
+            CasseroleBroadcastHub hub_in) {
+        session = session_in;
+        policy = policy_in;
+        max_depth = Math.max(1, max_depth_in);
+        stats = stats_in;
+        hub = hub_in;
+        pending = new ArrayDeque<WebStreamFrame>(max_depth);
+    }
+
+
+    /**
+     * Queue a message to go to the client, and start sending it if nothing else is being sent.
+     * Never blocks.
+     * 
+     * @param frame Message to send
+     */
+    void offer(WebStreamFrame frame) {
+        WebStreamFrame next = null;
+        int dropped = 0;
+        synchronized (this) {
+            if (closed) {
+                return;
+            }
+            if (policy == WebStreamQueuePolicy.LATEST_WINS) {
+                if (frame.isMustDeliver()) {
+                    // Newer must-deliver frames supersede everything before them
+                    dropped = pending.size();
+                    pending.clear();
+                } else {
+                    // Ordinary frames only replace ordinary frames - anything waiting behind a
+                    // must-deliver frame still depends on it getting there
+                    Iterator<WebStreamFrame> it = pending.iterator();
+                    while (it.hasNext()) {
+                        if (!it.next().isMustDeliver()) {
+                            it.remove();
+                            dropped++;
+                        }
+                    }
+                }
+            } else if (pending.size() >= max_depth) {
+                pending.pollFirst();
+                dropped = 1;
+            }
+            pending.addLast(frame);
+            if (!in_flight) {
+                next = pending.pollFirst();
+                in_flight = true;
+                in_flight_start_ms = System.currentTimeMillis();
+            }
+        }
+        if (dropped > 0) {
+            stats.recordDroppedFrames(dropped);
+        }
+        if (next != null) {
+            write(next);
+        }
+    }
+
+
+    /**
+     * Called when a send finishes (either way). Start on the next waiting message, if any.
+     */
+    private void sendNext() {
+        WebStreamFrame next;
+        synchronized (this) {
+            next = closed ? null : pending.pollFirst();
+            if (next == null) {
+                in_flight = false;
+                return;
+            }
+            in_flight_start_ms = System.currentTimeMillis();
+        }
+        write(next);
+    }
+
+
+    /**
+     * Hand one message to Jetty without blocking. Completion comes back through the callback,
+     * possibly before this returns.
+     */
+    private void write(WebStreamFrame frame) {
+        if (!session.isOpen()) {
+            close();
+            return;
+        }
+        hub.recordBytes(frame.getLength());
+        try {
+            RemoteEndpoint remote = session.getRemote();
+            if (remote instanceof WebSocketRemoteEndpoint) {
+                // Jetty's own endpoint can send a frame around our shared buffer, skipping the copy
+                // and UTF-8 encode it does for every sendString() call.
+                if (frame.isBinary()) {
+                    BinaryFrame ws_frame = new BinaryFrame();
+                    ws_frame.setPayload(frame.getPayload());
+                    ((WebSocketRemoteEndpoint) remote).uncheckedSendFrame(ws_frame, callback);
+                } else {
+                    TextFrame ws_frame = new TextFrame();
+                    ws_frame.setPayload(frame.getPayload());
+                    ((WebSocketRemoteEndpoint) remote).uncheckedSendFrame(ws_frame, callback);
+                }
+            } else if (frame.isBinary()) {
+                remote.sendBytes(frame.getPayload(), callback);
+            } else {
+                remote.sendString(frame.getText(), callback);
+            }
+        } catch (RuntimeException e) {
+            // Session closed out from under us between the check and the send
+            callback.writeFailed(e);
+        }
+    }
+
+
+    /**
+     * Disconnect the client if its in-progress send has been going for too long.
+     * 
+     * @param now_ms Present time
+     * @param timeout_ms Longest a single send may take
+     * @return true if the client was disconnected
+     */
+    boolean disconnectIfStalled(long now_ms, long timeout_ms) {
+        synchronized (this) {
+            if (closed || !in_flight || now_ms - in_flight_start_ms <= timeout_ms) {
+                return false;
+            }
+        }
+        close();
+        stats.recordSlowClientDisconnect();
+        System.out.println("WARNING: Web stream client " + session.getRemoteAddress() + " fell more than "
+                + timeout_ms + " ms behind. Disconnecting it.");
+        session.close(StatusCode.TRY_AGAIN_LATER, "Client too slow");
+        return true;
+    }
+
+
+    /**
+     * Throw away anything waiting, and ignore anything offered from now on.
+     */
+    synchronized void close() {
+        closed = true;
+        pending.clear();
+    }
+
+
+    /**
+     * @return Messages waiting to be sent, plus the one being sent.
+     */
+    synchronized int getDepth() {
+        return pending.size() + (in_flight ? 1 : 0);
+    }
+
+
+    /**
+     * @return Client this queue sends to
+     */
+    Session getSession() {
+        return session;
+    }
+
+}
@@ -0,0 +1,39 @@
+package org.usfirst.frc.team1736.lib.WebServer;
+
+/*
+ *******************************************************************************************
+ * Copyright (C) 2017 FRC Team 1736 Robot Casserole - www.robotcasserole.org
+ *******************************************************************************************
+ *
+ * This software is released under the MIT Licence - see the license.txt
+ *  file in the root of this repo.
+ *
+ * Non-legally-binding statement from Team 1736:
+ *  Thank you for taking the time to read through our software! We hope you
+ *   find it educational and informative! 
+ *  Please feel free to snag our software for your own use in whatever project
+ *   you have going on right now! We'd love to be able to help out! Shoot us 
+ *   any questions you may have, all our contact info should be on our website
+ *   (listed above).
+ *  If you happen to end up using our software to make money, that is wonderful!
+ *   Robot Casserole is always looking for more sponsors, so we'd be very appreciative
+ *   if you would consider donating to our club to help further STEM education.
+ */
+
+import org.eclipse.jetty.websocket.api.Session;
+
+/**
+ * DESCRIPTION: <br>
+ * Builds the next message for one particular client of a broadcast stream, for streams where each
+ * client asked for something different (ex: its own set of plot signals). Called once per client
+ * per stream tick, on the shared stream thread.
+ */
+interface WebStreamSessionFrameSource {
+
+    /**
+     * @param session Client the message is for
+     * @return The message to send to that client this tick, or null to send nothing.
+     */
+    WebStreamFrame buildFrame(Session session);
+
+}
@@ -4,8 +4,10 @@
 #   FileName: snag_files.py
 #
 #   Description: 
-#       Script to connect to an FRC roboRIO via FTP, and grab all log files
-#       generated into a known directory.
+#       Script to connect to an FRC roboRIO's web server, and grab all log files
+#       generated into a known directory. Only files which are new (or only
+#       partially downloaded last time) are fetched, partial downloads are
+#       resumed with HTTP range requests, and text logs are gzipped in transit.
 #
 #   Assumptions:
 #       - Python 3.4 or later used
@@ -15,12 +17,12 @@
 #
 ################################################################################
 
-from ftplib import FTP
-import sys, os, time
+import sys, os, time, json, gzip, shutil
+import urllib.request
 
 TEAM_NUMBER_STR = '1736'
 RIO_ADDRESS = 'roboRIO-'+TEAM_NUMBER_STR+'-FRC.local'
-RIO_LOG_FPATH = '/media/sda1/data_captures/'
+RIO_LOG_URL = 'http://'+RIO_ADDRESS+':5805/logs/'
 LOCAL_PATH = '.\\downloaded_logs\\'
 LOG_LOGS_DIR = '.\\file_snagger\\logs\\'
 
@@ -49,42 +51,79 @@ def log_log_result(fsnag_list):
     tempf.close()
     return
 
-# Attempt an FTP connection. Retry if we can't. User may do a ctrl-c to exit if needed.
+# Attempt to get the list of logs. Retry if we can't. User may do a ctrl-c to exit if needed.
 failed = 1;
 while(failed == 1):
-    print('Attempting to connect to roboRIO on ftp://' + RIO_ADDRESS + " ...")
+    print('Attempting to connect to roboRIO on ' + RIO_LOG_URL + " ...")
     failed = 0;
     try:
-        ftp = FTP(RIO_ADDRESS)
-        ftp.login()
+        with urllib.request.urlopen(RIO_LOG_URL, timeout=10) as resp:
+            file_list = json.loads(resp.read().decode('utf-8'))
     except:
         failed = 1;
         print('Error - could not connect to roboRIO! Retrying...')
-    
-# FTP Connected! Change to correct working proper working directory
-# and snag the list of files
-ftp.cwd(RIO_LOG_FPATH)
-filenames = ftp.nlst() # get filenames within the directory
+
+# Don't touch anything the robot is still writing
+file_list = [f for f in file_list if not f['in_use']]
 
 # Inform user what files were found
-print("Found "+ str(len(filenames)) +" Files.")
+print("Found "+ str(len(file_list)) +" Files.")
 
 #make local dir if doesn't exist yet.
 if not os.path.isdir(LOCAL_PATH):
     os.mkdir(LOCAL_PATH)
 
+def download(entry, local_filename):
+    url = RIO_LOG_URL + urllib.request.quote(entry['name'])
+    have = os.path.getsize(local_filename) if os.path.isfile(local_filename) else 0
+    if have > entry['size']:
+        have = 0
+
+    if have == entry['size']:
+        print("    Already have it.")
+        return True
+
+    req = urllib.request.Request(url)
+    if have > 0:
+        # Pick up where the last (interrupted) download left off
+        print("    Resuming from byte " + str(have))
+        req.add_header('Range', 'bytes=' + str(have) + '-')
+        req.add_header('If-Range', entry['etag'])
+    else:
+        req.add_header('Accept-Encoding', 'gzip')
+
+    with urllib.request.urlopen(req, timeout=30) as resp:
+        if resp.status == 206:
+            mode = 'ab'
+        else:
+            mode = 'wb'
+        src = resp
+        if resp.headers.get('Content-Encoding') == 'gzip':
+            src = gzip.GzipFile(fileobj=resp)
+        with open(local_filename, mode) as file:
+            shutil.copyfileobj(src, file)
+
+    return os.path.getsize(local_filename) == entry['size']
+
 # Copy each file over
 i = 1
-for filename in filenames:
-    print("Copying "+ filename + " (" + str(i) + "/" + str(len(filenames)) + ") ")
+filenames = []
+for entry in file_list:
+    filename = entry['name']
+    print("Copying "+ filename + " (" + str(i) + "/" + str(len(file_list)) + ") ")
     local_filename = os.path.join(LOCAL_PATH, filename)
-    file = open(local_filename, 'wb')
-    ftp.retrbinary('RETR '+ filename, file.write)
-    file.close()
-    ftp.delete(filename)
+    try:
+        if download(entry, local_filename):
+            # Safely on this computer, clear it off the robot
+            req = urllib.request.Request(RIO_LOG_URL + urllib.request.quote(filename), method='DELETE')
+            urllib.request.urlopen(req, timeout=10).close()
+            filenames.append(filename)
+        else:
+            print("    Error - incomplete download, will resume next time.")
+    except Exception as e:
+        print("    Error - could not copy " + filename + ": " + str(e))
     i = i+1
-    
+
 #We're Done!
-ftp.quit()
 log_log_result(filenames)
 sys.exit(0)
\ No newline at end of file
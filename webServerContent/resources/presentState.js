@@ -6,12 +6,19 @@ var hostname = window.location.hostname+":"+port;
 var dataSocket = new WebSocket("ws://"+hostname+"/statestream")
 var numTransmissions = 0;
 
+//Local copy of all states. The robot sends everything once on connect (a "snapshot"), then
+// only the states which changed (a "delta"). We ack each one so the robot knows where we're at.
+var state_version = -1;
+var state_names = [];
+var state_values = {};
+var state_index = {};
+
 dataSocket.onopen = function (event) {
   document.getElementById("id01").innerHTML = "Socket Open";
 };
 
 dataSocket.onmessage = function (event) {
-  genTable(event.data);
+  handleStateMsg(event.data);
   numTransmissions = numTransmissions + 1;
   document.getElementById("id01").innerHTML = "COM Status: Socket Open. RX Count:" + numTransmissions; 
 };
@@ -26,16 +33,55 @@ dataSocket.onclose = function (error) {
   alert("ERROR from Present State: Robot Disconnected!!!\n\nAfter connecting to the robot, open the driver station, then refresh this page.");
 };
 
-function genTable(json_data) {
-    var arr = JSON.parse(json_data);
+function handleStateMsg(json_data) {
+    var msg = JSON.parse(json_data);
+    var i;
+    var new_state = false;
+
+    if(msg.type == "snapshot"){
+        state_names = [];
+        state_values = {};
+        state_index = {};
+    } else if(msg.type == "delta" && msg.base > state_version){
+        //Missed something - ask for everything again
+        dataSocket.send("resync:");
+        return;
+    }
+
+    for(i = 0; i < msg.state_array.length; i++) {
+        var name = msg.state_array[i].name;
+        if(!(name in state_index)){
+            state_index[name] = state_names.length;
+            state_names.push(name);
+            new_state = true;
+        }
+        state_values[name] = msg.state_array[i].value;
+    }
+
+    if(msg.type == "snapshot" || new_state){
+        genTable();
+    } else {
+        //Just poke the new values into the existing table cells
+        for(i = 0; i < msg.state_array.length; i++) {
+            document.getElementById("state_val_" + state_index[msg.state_array[i].name]).innerHTML = msg.state_array[i].value;
+        }
+    }
+
+    if(msg.version > state_version){
+        state_version = msg.version;
+    }
+    dataSocket.send("ack:" + state_version);
+}
+
+function genTable() {
     var i;
     var out = "<table border=\"1\">";
 
-    for(i = 0; i < arr.state_array.length; i++) {
+    for(i = 0; i < state_names.length; i++) {
         out += "<tr><td>" +
-        arr.state_array[i].name +
-        "</td><td style=\"width: 200px;\">" +
-        arr.state_array[i].value +
+        state_names[i] +
+        "</td><td id=\"state_val_" + i + "\" style=\"width: 200px;\">" +
+        state_values[state_names[i]] +
         "</td></tr>";
     }
     out += "</table>";
@@ -9,10 +9,20 @@ var hostname = window.location.hostname+":"+port;
 
 //Set up the web socket
 var dataSocket = new WebSocket("ws://"+hostname+"/rtplot")
+//Plot data arrives as binary messages (see decodeDaqUpdate), everything else as JSON text
+dataSocket.binaryType = "arraybuffer";
 
 var signal_names = []
 var signal_units = []
 var signal_display_names = []
+var signal_ids = []
+
+//Maps a signal's ID (from the server's signal list) to its series index in the present chart
+var series_index_by_id = {};
+
+//Binary data message constants - must stay aligned with PlotDataFrameEncoder.java
+var MSG_TYPE_DAQ_UPDATE = 1;
+var FORMAT_VERSION = 1;
 
 var allow_scroll_zoom = true;
 
@@ -163,10 +173,14 @@ dataSocket.onclose = function (error) {
 };
 
 dataSocket.onmessage = function (event) {
+    if(event.data instanceof ArrayBuffer){
+        addDataToPlot(decodeDaqUpdate(event.data));
+        return;
+    }
+    
+    // Samples only ever come in binary frames (above). Text frames are control messages.
     var data = JSON.parse(event.data);
-    if(data.type == "daq_update"){
-        addDataToPlot(data.samples);
-    } else if(data.type == "signal_list"){
+    if(data.type == "signal_list"){
         genSignalListTable(data.signals);
     }
 
@@ -174,22 +188,69 @@ dataSocket.onmessage = function (event) {
 
 // The following are utility functions to handle data received over the dataSocket or from user inputs.
 
-//Given a chunk of json data which is presumed to represent a set of 
+//Unpack one binary data message from the robot. Layout (all little-endian):
+// u8 message type, u8 format version, u16 number of signal blocks, f64 base time (sec),
+// then per block: u16 signal ID, u16 sample count N, N u32 time offsets from the base time (usec),
+// N f32 values.
+//Returns an array of {id, time[], val[]} objects, one per signal block.
+function decodeDaqUpdate(buffer){
+    var view = new DataView(buffer);
+    var blocks = [];
+    var offset = 0;
+    
+    if(view.getUint8(0) != MSG_TYPE_DAQ_UPDATE || view.getUint8(1) != FORMAT_VERSION){
+        console.log("RT Plot: ignoring unknown binary message type " + view.getUint8(0) + " version " + view.getUint8(1));
+        return blocks;
+    }
+    
+    var block_count = view.getUint16(2, true);
+    var base_time = view.getFloat64(4, true);
+    offset = 12;
+    
+    for(var b = 0; b < block_count; b++){
+        var id = view.getUint16(offset, true);
+        var count = view.getUint16(offset + 2, true);
+        offset += 4;
+        
+        var times = new Array(count);
+        var vals = new Array(count);
+        for(var i = 0; i < count; i++){
+            times[i] = base_time + view.getUint32(offset + i*4, true) / 1e6;
+            vals[i] = view.getFloat32(offset + count*4 + i*4, true);
+        }
+        offset += count*8;
+        
+        blocks.push({id:id, time:times, val:vals});
+    }
+    
+    return blocks;
+}
+
+//Given a set of decoded signal blocks which are presumed to represent 
 // samples for the currently-plotted signals, add that data to the plot.
 function addDataToPlot(data){
     var sig_iter;
     var samp_iter;
     var samp_time;
     var samp_val;
+    var series_idx;
     var newest_timestamp = 0;
     
+    if(!global_chart || data.length == 0){
+        return;
+    }
+    
     //Iterate over all samples in all signals recieved
     for(sig_iter = 0; sig_iter < data.length; sig_iter++){
-        for(samp_iter = 0; samp_iter < data[sig_iter].samples.length; samp_iter++){
+        series_idx = series_index_by_id[data[sig_iter].id];
+        if(series_idx === undefined){
+            continue; //Not a signal on this chart
+        }
+        
+        for(samp_iter = 0; samp_iter < data[sig_iter].time.length; samp_iter++){
             
-            //Parse each sample time&value
-            samp_time = parseFloat(data[sig_iter].samples[samp_iter].time);
-            samp_val = parseFloat(data[sig_iter].samples[samp_iter].val);
+            samp_time = data[sig_iter].time[samp_iter];
+            samp_val = data[sig_iter].val[samp_iter];
             
             //Keep track of the most recent sample of all the data
             if(samp_time > newest_timestamp){
@@ -197,7 +258,7 @@ function addDataToPlot(data){
             }
             
             //Add the saple to the plot
-            global_chart.series[sig_iter].addPoint([samp_time,samp_val],false,false,true);
+            global_chart.series[series_idx].addPoint([samp_time,samp_val],false,false,true);
         }
     }
     
@@ -212,6 +273,9 @@ function genSignalListTable(arr){
     var col_counter = 0;
     var SIGNALS_PER_ROW = 1; //meh. html is hard.
     signal_names = [];
+    signal_units = [];
+    signal_display_names = [];
+    signal_ids = [];
     var checked_state = ""; //String to be injected into the html of the checkbox declaration if the checkbox should start checked
     
     //Init some content for the dynamic HTML which will show checkboxes for each signal
@@ -230,6 +294,7 @@ function genSignalListTable(arr){
         signal_names.push(arr[i].name);
         signal_units.push(arr[i].units);
         signal_display_names.push(arr[i].display_name);
+        signal_ids.push(arr[i].id);
         
         //See if this signal's name is in the local storage list
         if(ls_sel_signals.indexOf(arr[i].name) > -1){
@@ -256,6 +321,8 @@ function handleStartBtnClick(){
     var units_to_yaxis_index = [];
     var yaxis_index = 0;
     
+    series_index_by_id = {};
+    
     
     if(local_storage_available){
         //Clear local storage if available
@@ -332,6 +399,7 @@ function handleStartBtnClick(){
                 }
                 
                 // set up chart for signals
+                series_index_by_id[signal_ids[i]] = temp_series.length;
                 temp_series.push({name:signal_display_names[i],
                                   data:[],
                                   visible:true,